@@ -0,0 +1,71 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.core.os.CancellationSignal;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the budget of the {@link ArticlePrefetcher} is saved in the SharedPreferences, so a
+ * new process doesn't get a new one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArticlePrefetcherBudgetTest {
+
+    private static final long BUDGET = 100 * 1024;
+
+    private SharedPreferences prefs;
+    private File directory;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        prefs = context.getSharedPreferences("article_prefetch_test", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+        // A new cache every time, so the article is never cached already.
+        directory = new File(context.getCacheDir(), "article_prefetch_test_" + System.nanoTime());
+    }
+
+    @Test
+    public void budget_isKeptByTheNextProcess() throws IOException {
+        newPrefetcher().prefetchNow(
+                Collections.singletonList("https://www.theguardian.com/technology/a"), 3,
+                new CancellationSignal());
+
+        assertEquals(BUDGET - 20000, newPrefetcher().remainingBudget());
+    }
+
+    // A prefetcher as a new process creates it, whose responses cost 20000 bytes.
+    private ArticlePrefetcher newPrefetcher() {
+        return new ArticlePrefetcher(new ArticleBodyCache(directory, 1024 * 1024),
+                new ArticlePrefetcher.Source() {
+                    @Override
+                    public Map<String, String> request(List<String> articleUrls,
+                                                       CancellationSignal signal,
+                                                       AtomicLong received) {
+                        received.addAndGet(20000);
+                        Map<String, String> texts = new LinkedHashMap<>();
+                        for (String url : articleUrls) {
+                            texts.put(url, "The text of " + url + ".");
+                        }
+                        return texts;
+                    }
+                }, MultiTopicFetcher.newExecutor("test-prefetch", 1), BUDGET, prefs);
+    }
+}
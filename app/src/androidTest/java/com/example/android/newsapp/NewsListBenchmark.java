@@ -0,0 +1,109 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.widget.FrameLayout;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Device benchmark of the rows of the list: creating and binding a row of the
+ * {@link NewsAdapter}, and the date handling a bind used to do, with the 50 articles of a
+ * recorded response. Run it on a real device against the benchmark build:
+ * {@code ./gradlew connectedAndroidTest -PtestBuildType=benchmark}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsListBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private List<News> news;
+
+    @Before
+    public void setUp() throws IOException {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        news = NewsRequestBenchmark.parseFixture("guardian_search_50.json");
+    }
+
+    @Test
+    @UiThreadTest
+    public void createViewHolder() {
+        NewsAdapter adapter = newAdapter();
+        FrameLayout parent = new FrameLayout(context);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            adapter.onCreateViewHolder(parent, 0);
+        }
+    }
+
+    @Test
+    @UiThreadTest
+    public void bindViewHolder() {
+        NewsAdapter adapter = newAdapter();
+        NewsAdapter.NewsViewHolder holder = adapter.onCreateViewHolder(new FrameLayout(context), 0);
+        int position = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            adapter.onBindViewHolder(holder, position);
+            position = (position + 1) % news.size();
+        }
+    }
+
+    // What every bind did before the date was formatted once per article.
+    @Test
+    public void bindDateWithSimpleDateFormat() throws ParseException {
+        int position = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            SimpleDateFormat originalDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ",
+                    Locale.US);
+            Date date = originalDateFormat.parse(
+                    news.get(position).getTime().replaceAll("Z$", "+0000"));
+            new SimpleDateFormat("yyyy-MM-dd").format(date);
+            position = (position + 1) % news.size();
+        }
+    }
+
+    // What every bind does now.
+    @Test
+    public void bindDateWithDisplayDate() {
+        int position = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            news.get(position).getDisplayDate();
+            position = (position + 1) % news.size();
+        }
+    }
+
+    // The first list submitted to the adapter is set right away, without a diff.
+    private NewsAdapter newAdapter() {
+        NewsAdapter adapter = new NewsAdapter(ImageLoader.getInstance(context),
+                new NewsAdapter.OnNewsClickListener() {
+                    @Override
+                    public void onNewsClick(News news) {
+                    }
+                });
+        adapter.submitList(news);
+        assertEquals(news.size(), adapter.getItemCount());
+        return adapter;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.android.newsapp;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Device benchmark of building the request URLs (done by onCreateLoader before, by the
+ * {@link NewsQueryBuilder} now) and of decoding the recorded responses at three page sizes.
+ * The JVM side of the decoding is measured by QueryUtilsJmh. Run it on a real device against
+ * the benchmark build: {@code ./gradlew connectedAndroidTest -PtestBuildType=benchmark}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsRequestBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void buildUrls_threeTopics() {
+        NewsQuery query = new NewsQuery(Arrays.asList("Android", "Apple", "Samsung"), "newest",
+                10, 1);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            NewsQueryBuilder.buildUrls(query);
+        }
+    }
+
+    @Test
+    public void extractFeatureFromStream_10() throws IOException {
+        measureDecoding("guardian_search_10.json");
+    }
+
+    @Test
+    public void extractFeatureFromStream_50() throws IOException {
+        measureDecoding("guardian_search_50.json");
+    }
+
+    @Test
+    public void extractFeatureFromStream_200() throws IOException {
+        measureDecoding("guardian_search_200.json");
+    }
+
+    /**
+     * Returns the articles of the given recorded response, from the test resources.
+     */
+    static List<News> parseFixture(String name) throws IOException {
+        return QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(readFixture(name)));
+    }
+
+    private void measureDecoding(String fixture) throws IOException {
+        byte[] response = readFixture(fixture);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(response));
+        }
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        InputStream in = NewsRequestBenchmark.class.getClassLoader().getResourceAsStream(name);
+        assertNotNull("Missing test fixture " + name, in);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
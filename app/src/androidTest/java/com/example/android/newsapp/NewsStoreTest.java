@@ -0,0 +1,110 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the local queries of {@link NewsStore} on a database in memory.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsStoreTest {
+
+    private static final News OLD = new News("Technology", "Old", "2020-04-19T10:00:00Z",
+            "Alex Hern", "https://www.theguardian.com/old");
+    private static final News MIDDLE = new News("Business", "Middle", "2020-04-20T10:00:00Z",
+            "Kari Paul", "https://www.theguardian.com/middle");
+    private static final News NEW = new News("Technology", "New", "2020-04-21T10:00:00Z",
+            "Alex Hern", "https://www.theguardian.com/new");
+
+    private NewsStore store;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        store = new NewsStore(new NewsDbHelper(context, null));
+    }
+
+    @Test
+    public void query_sortsAndPagesLocally() {
+        store.upsert("android", Arrays.asList(MIDDLE, NEW, OLD), false, 0, 1000);
+
+        assertEquals(titles(NEW, MIDDLE, OLD), titles(store.query(query("newest", 10, 1))));
+        assertEquals(titles(OLD, MIDDLE, NEW), titles(store.query(query("oldest", 10, 1))));
+        assertEquals(titles(NEW, MIDDLE), titles(store.query(query("newest", 2, 1))));
+        assertEquals(titles(OLD), titles(store.query(query("newest", 2, 2))));
+    }
+
+    @Test
+    public void query_sortsByTheRankOfTheLastRelevanceResponse() {
+        store.upsert("android", Arrays.asList(NEW, MIDDLE, OLD), false, 0, 1000);
+        store.upsert("android", Arrays.asList(OLD, NEW), true, 0, 2000);
+
+        // The article that was never ranked comes last.
+        assertEquals(titles(OLD, NEW, MIDDLE), titles(store.query(query("relevance", 10, 1))));
+    }
+
+    @Test
+    public void upsert_updatesArticlesByUrl() {
+        store.upsert("android", Collections.singletonList(NEW), false, 0, 1000);
+        News edited = new News("Technology", "New, edited", NEW.getTime(), "Kari Paul",
+                NEW.getUrl(), "https://media.guim.co.uk/new/500.jpg");
+        store.upsert("android", Collections.singletonList(edited), false, 0, 2000);
+
+        List<News> news = store.query(query("newest", 10, 1));
+        assertEquals(1, news.size());
+        assertEquals("New, edited", news.get(0).getTitle());
+        assertEquals("Kari Paul", news.get(0).getAuthor());
+        assertEquals("https://media.guim.co.uk/new/500.jpg", news.get(0).getThumbnail());
+    }
+
+    @Test
+    public void query_mergesTopicsWithoutDuplicates() {
+        store.upsert("android", Arrays.asList(NEW, OLD), false, 0, 1000);
+        store.upsert("Apple", Arrays.asList(NEW, MIDDLE), false, 0, 2000);
+
+        NewsQuery both = new NewsQuery(Arrays.asList("Android", "apple"), "newest", 10, 1);
+        assertEquals(titles(NEW, MIDDLE, OLD), titles(store.query(both)));
+        assertEquals(1000, store.getSyncedAt(both.getTopics()));
+        assertEquals(0, store.getSyncedAt(Arrays.asList("android", "windows")));
+    }
+
+    @Test
+    public void upsert_readsTopicAndPageFromTheUrl() {
+        store.upsert("https://content.guardianapis.com/search?q=android%20apps&order-by=relevance"
+                + "&page-size=2&page=2", Arrays.asList(NEW, OLD), 1000);
+        store.upsert("android apps", Collections.singletonList(MIDDLE), true, 0, 1000);
+
+        NewsQuery query = new NewsQuery(Collections.singletonList("Android apps"), "relevance",
+                10, 1);
+        assertEquals(titles(MIDDLE, NEW, OLD), titles(store.query(query)));
+    }
+
+    private static NewsQuery query(String orderBy, int pageSize, int page) {
+        return new NewsQuery(Collections.singletonList("android"), orderBy, pageSize, page);
+    }
+
+    private static List<String> titles(News... news) {
+        return titles(Arrays.asList(news));
+    }
+
+    private static List<String> titles(List<News> news) {
+        List<String> titles = new ArrayList<>();
+        for (News item : news) {
+            titles.add(item.getTitle());
+        }
+        return titles;
+    }
+}
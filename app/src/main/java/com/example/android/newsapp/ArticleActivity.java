@@ -0,0 +1,139 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.os.CancellationSignal;
+
+import com.example.android.newsappproject.R;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Shows the text of an article inside the app, from the {@link ArticleBodyCache} when the
+ * {@link ArticlePrefetcher} downloaded it ahead, so it opens right away and offline. Otherwise the
+ * text is downloaded first, and the article can still be opened in the browser.
+ */
+public class ArticleActivity extends AppCompatActivity {
+
+    private static final String LOG_TAG = ArticleActivity.class.getSimpleName();
+
+    private static final String EXTRA_SECTION = "section";
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_TIME = "time";
+    private static final String EXTRA_AUTHOR = "author";
+    private static final String EXTRA_URL = "url";
+
+    // Reads the cache and downloads the text, one article at a time.
+    private static final ExecutorService LOADER =
+            MultiTopicFetcher.newExecutor("article-load", 1);
+
+    private News news;
+    private TextView bodyView;
+    private TextView messageView;
+    private ProgressBar spinner;
+
+    // Cancels the load when the activity is destroyed.
+    private final CancellationSignal loadSignal = new CancellationSignal();
+
+    /**
+     * Returns the intent that shows the given article in the reader.
+     */
+    static Intent newIntent(Context context, News news) {
+        return new Intent(context, ArticleActivity.class)
+                .putExtra(EXTRA_SECTION, news.getSection())
+                .putExtra(EXTRA_TITLE, news.getTitle())
+                .putExtra(EXTRA_TIME, news.getTime())
+                .putExtra(EXTRA_AUTHOR, news.getAuthor())
+                .putExtra(EXTRA_URL, news.getUrl());
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_article);
+
+        Intent intent = getIntent();
+        news = new News(intent.getStringExtra(EXTRA_SECTION),
+                intent.getStringExtra(EXTRA_TITLE), intent.getStringExtra(EXTRA_TIME),
+                intent.getStringExtra(EXTRA_AUTHOR), intent.getStringExtra(EXTRA_URL));
+
+        ((TextView) findViewById(R.id.article_section)).setText(news.getSection());
+        ((TextView) findViewById(R.id.article_title)).setText(news.getTitle());
+        ((TextView) findViewById(R.id.article_byline)).setText(
+                getString(R.string.article_byline, news.getAuthor(), news.getDisplayDate()));
+        bodyView = (TextView) findViewById(R.id.article_body);
+        messageView = (TextView) findViewById(R.id.article_message);
+        spinner = (ProgressBar) findViewById(R.id.article_spinner);
+
+        final ArticlePrefetcher prefetcher = ArticlePrefetcher.getInstance(this);
+        final String url = news.getUrl();
+        LOADER.execute(new Runnable() {
+            @Override
+            public void run() {
+                String body = null;
+                long start = Metrics.begin("body.load");
+                try {
+                    body = prefetcher.load(url, loadSignal);
+                } catch (IOException e) {
+                    if (!loadSignal.isCanceled()) {
+                        Log.e(LOG_TAG, "Problem loading the article " + url, e);
+                    }
+                } finally {
+                    Metrics.end("body.load", start);
+                }
+                final String loadedBody = body;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isFinishing()) {
+                            showBody(loadedBody);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        loadSignal.cancel();
+        super.onDestroy();
+    }
+
+    // Show the text, or tell the user it can't be read without a connection.
+    private void showBody(String body) {
+        spinner.setVisibility(View.GONE);
+        if (body == null) {
+            messageView.setVisibility(View.VISIBLE);
+        } else {
+            bodyView.setText(body);
+            bodyView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.article, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_open_in_browser) {
+            startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(news.getUrl())));
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Disk cache of the text of the articles, one gzip compressed file per article URL, so the
+ * reader shows an article right away, even offline.
+ * <p>
+ * Text compresses about four times, so the budget holds a few hundred articles. When the cache
+ * grows over its byte budget, the least recently used articles are deleted, like the images of
+ * the {@link ImageDiskCache}.
+ */
+final class ArticleBodyCache {
+
+    private static final String LOG_TAG = ArticleBodyCache.class.getSimpleName();
+
+    // Name of the directory inside the app cache directory.
+    private static final String DIRECTORY_NAME = "article-bodies";
+
+    // Default budget for all the articles together. An article is about 5 KB compressed.
+    static final long DEFAULT_MAX_BYTES = 5 * 1024 * 1024;
+
+    private static final String BODY_SUFFIX = ".gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // A temporary file this old isn't being written anymore. Younger ones may be in progress.
+    private static final long STALE_TEMP_MILLIS = 60 * 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static ArticleBodyCache instance;
+
+    private final File directory;
+    private final long maxBytes;
+
+    // Size of every body file, in least recently used order, built on first use.
+    private LinkedHashMap<String, Long> lruIndex;
+    private long size;
+
+    /**
+     * Returns the cache shared by the whole app, stored in the app cache directory.
+     */
+    static synchronized ArticleBodyCache getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(),
+                    DIRECTORY_NAME);
+            instance = new ArticleBodyCache(directory, DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Constructs a new {@link ArticleBodyCache}.
+     *
+     * @param directory is where the articles are stored. It is created if it doesn't exist.
+     * @param maxBytes  is the byte budget for all the articles together, compressed.
+     */
+    ArticleBodyCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the text of the article with the given URL, or null if it isn't cached. A file
+     * that can't be read is removed.
+     */
+    String get(String url) {
+        File file;
+        synchronized (this) {
+            file = bodyFile(url);
+            if (!file.exists()) {
+                return null;
+            }
+            // The modification time keeps the LRU order for the next time the app starts.
+            file.setLastModified(System.currentTimeMillis());
+            index().get(file.getName());
+        }
+        // Decompressed without holding the cache lock, it may take a few milliseconds.
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(file)),
+                    UTF_8);
+            StringBuilder body = new StringBuilder();
+            char[] buffer = new char[4096];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                body.append(buffer, 0, count);
+            }
+            return body.toString();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the article " + url, e);
+            remove(url);
+            return null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the text of the article with the given URL is cached, without reading it.
+     */
+    synchronized boolean contains(String url) {
+        return bodyFile(url).exists();
+    }
+
+    /**
+     * Saves the text of the article with the given URL, then trims the cache back under its
+     * byte budget. The text is compressed without holding the cache lock.
+     *
+     * @throws IOException if the file couldn't be written. Nothing is saved.
+     */
+    void put(String url, String body) throws IOException {
+        synchronized (this) {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Problem creating the cache directory " + directory);
+            }
+        }
+        File tempFile = File.createTempFile("body", TEMP_SUFFIX, directory);
+        OutputStream out = null;
+        try {
+            out = new GZIPOutputStream(new FileOutputStream(tempFile));
+            out.write(body.getBytes(UTF_8));
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            if (out != null) {
+                out.close();
+            }
+            tempFile.delete();
+            throw e;
+        }
+
+        synchronized (this) {
+            File file = bodyFile(url);
+            // Replace the old text in one step, so a reader never sees a half written file.
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Problem renaming " + tempFile);
+            }
+            Long previousLength = index().put(file.getName(), file.length());
+            size += file.length() - (previousLength == null ? 0 : previousLength);
+            trimToSize();
+        }
+    }
+
+    /**
+     * Removes the text of the article with the given URL.
+     */
+    synchronized void remove(String url) {
+        File file = bodyFile(url);
+        file.delete();
+        Long length = index().remove(file.getName());
+        if (length != null) {
+            size -= length;
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by all the articles, compressed.
+     */
+    synchronized long size() {
+        index();
+        return size;
+    }
+
+    // Deletes the least recently used articles until the cache is back under its budget.
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> eldest = index().entrySet().iterator();
+        while (size > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (new File(directory, entry.getKey()).delete()) {
+                size -= entry.getValue();
+                eldest.remove();
+            }
+        }
+    }
+
+    // Returns the LRU index, reading it from the body files the first time.
+    private LinkedHashMap<String, Long> index() {
+        if (lruIndex != null) {
+            return lruIndex;
+        }
+        lruIndex = new LinkedHashMap<>(16, 0.75f, true);
+        size = 0;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return lruIndex;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long firstModified = first.lastModified();
+                long secondModified = second.lastModified();
+                return firstModified < secondModified ? -1
+                        : (firstModified == secondModified ? 0 : 1);
+            }
+        });
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (file.getName().endsWith(BODY_SUFFIX)) {
+                lruIndex.put(file.getName(), file.length());
+                size += file.length();
+            } else if (file.getName().endsWith(TEMP_SUFFIX)
+                    && now - file.lastModified() > STALE_TEMP_MILLIS) {
+                // Left over from a write that never finished.
+                file.delete();
+            }
+        }
+        return lruIndex;
+    }
+
+    // The URL is hashed so any URL gives a valid and short file name.
+    private File bodyFile(String url) {
+        return new File(directory, NewsDiskCache.sha1Hex(url) + BODY_SUFFIX);
+    }
+}
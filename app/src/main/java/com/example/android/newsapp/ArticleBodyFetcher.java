@@ -0,0 +1,155 @@
+package com.example.android.newsapp;
+
+import androidx.core.os.CancellationSignal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Helper methods that download the text of articles for the reader, several articles in one
+ * request.
+ * <p>
+ * The search endpoint finds articles by their id ("ids" parameter), which is the path of their
+ * URL, and sends their text as the "bodyText" field when {@link NewsProjection#BODIES} asks for
+ * it. The text is plain, without the HTML of the page, so it is much smaller than the page and
+ * can be shown in a TextView as it is.
+ */
+final class ArticleBodyFetcher {
+
+    /**
+     * Create a private constructor because no one should ever create a
+     * {@link ArticleBodyFetcher} object.
+     */
+    private ArticleBodyFetcher() {
+    }
+
+    /**
+     * Returns the id of the article with the given URL, like "technology/2020/apr/21/title" for
+     * "https://www.theguardian.com/technology/2020/apr/21/title", or null if it has none.
+     */
+    static String articleId(String webUrl) {
+        String path;
+        try {
+            path = new URL(webUrl).getPath();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return path.isEmpty() ? null : path;
+    }
+
+    /**
+     * Downloads the bodies asked for by the given request URL.
+     *
+     * @param signal   is cancelled to stop the request, or null if it can't be.
+     * @param received counts the bytes received, even when the request fails or is cancelled
+     *                 halfway, or null.
+     * @return the bodies by the URL of their article, in the order of the response.
+     * @throws QueryUtils.HttpStatusException if the server answered with an error status.
+     * @throws InterruptedIOException         if the request was cancelled.
+     * @throws IOException                    if the connection failed or timed out.
+     */
+    static Map<String, String> requestBodies(String requestUrl, CancellationSignal signal,
+                                             AtomicLong received) throws IOException {
+        URL url = new URL(requestUrl);
+        long start = Metrics.begin("body.request");
+        try {
+            // The text is asked for compressed, it compresses about four times.
+            return QueryUtils.makeHttpRequest(url, null, null, signal, "body",
+                    new QueryUtils.BodyDecoder<Map<String, String>>() {
+                        @Override
+                        public Map<String, String> decode(InputStream body) throws IOException {
+                            return extractBodies(body);
+                        }
+                    }, received).getBody();
+        } finally {
+            Metrics.end("body.request", start);
+        }
+    }
+
+    /**
+     * Returns the bodies of the articles of the given search response, by the URL of their
+     * article. The articles without a body are left out.
+     *
+     * @throws IOException if the stream can't be read or the JSON is malformed.
+     */
+    static Map<String, String> extractBodies(InputStream inputStream) throws IOException {
+        Map<String, String> bodies = new LinkedHashMap<>();
+        JsonStreamReader reader = new JsonStreamReader(
+                new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        if (reader.peek() == JsonStreamReader.Token.END_DOCUMENT) {
+            return bodies;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("response")
+                    && reader.peek() == JsonStreamReader.Token.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("results")
+                            && reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readBody(reader, bodies);
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return bodies;
+    }
+
+    // Reads one element of the results array, and adds its body if it has one.
+    private static void readBody(JsonStreamReader reader, Map<String, String> bodies)
+            throws IOException {
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        String url = null;
+        String body = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("webUrl") && reader.peek() == JsonStreamReader.Token.STRING) {
+                url = reader.nextString();
+            } else if (name.equals("fields")
+                    && reader.peek() == JsonStreamReader.Token.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("bodyText")
+                            && reader.peek() == JsonStreamReader.Token.STRING) {
+                        body = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        // Live blogs and galleries have no text.
+        if (url != null && body != null && !body.isEmpty()) {
+            bodies.put(url, body);
+        }
+    }
+}
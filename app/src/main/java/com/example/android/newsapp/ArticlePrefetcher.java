@@ -0,0 +1,287 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.core.os.CancellationSignal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads the text of the articles on screen into the {@link ArticleBodyCache} while the list
+ * is idle, so the reader opens them right away and offline.
+ * <p>
+ * Only the first articles on screen are prefetched, as many as the {@link FetchPolicy} allows on
+ * the current connection (none on a slow one or with the battery saver on), all in one request.
+ * The prefetch downloads no more than a daily byte budget, because most of the articles are
+ * never opened. A new prefetch, or scrolling away, cancels the one that is pending or running.
+ * What a cancelled prefetch received is charged too, and the budget is saved in the
+ * SharedPreferences, so restarting the app doesn't give it a new one.
+ */
+final class ArticlePrefetcher {
+
+    private static final String LOG_TAG = ArticlePrefetcher.class.getSimpleName();
+
+    // Default budget for the prefetch over the last 24 hours, about 300 articles.
+    static final long DEFAULT_DAILY_BUDGET_BYTES = 2 * 1024 * 1024;
+
+    // An article is about 5 KB compressed, a long read about 8 KB.
+    static final long ESTIMATED_BODY_BYTES = 8 * 1024;
+
+    private static final long BUDGET_WINDOW_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // Where the budget is saved.
+    private static final String PREFS_NAME = "article_prefetch";
+    private static final String KEY_WINDOW_START = "budget_window_start";
+    private static final String KEY_SPENT_BYTES = "budget_spent_bytes";
+
+    private static ArticlePrefetcher instance;
+
+    /**
+     * Downloads the text of a few articles in one request.
+     */
+    interface Source {
+        /**
+         * Returns the bodies of the articles with the given URLs that have one, by the URL of
+         * their article.
+         *
+         * @param signal   is cancelled to stop the request.
+         * @param received counts the bytes received, by every try of the request, even when it
+         *                 fails or is cancelled halfway.
+         * @throws IOException if the request failed or was cancelled.
+         */
+        Map<String, String> request(List<String> articleUrls, CancellationSignal signal,
+                                    AtomicLong received) throws IOException;
+    }
+
+    private final ArticleBodyCache cache;
+    private final Source source;
+    private final ExecutorService executor;
+    private final long dailyBudgetBytes;
+    private final SharedPreferences budgetPrefs;
+
+    // When the current 24 hours of the budget started, and what the prefetch received since.
+    private long windowStart;
+    private long spentBytes;
+
+    // The prefetch pending or running, cancelled by the next one.
+    private Future<?> pending;
+    private CancellationSignal pendingSignal;
+
+    /**
+     * Returns the prefetcher shared by the whole app.
+     */
+    static synchronized ArticlePrefetcher getInstance(Context context) {
+        if (instance == null) {
+            // The bodies come from the same server as the lists, so they share its fetcher.
+            Source network = networkSource(NewsRepository.getInstance(context).getFetcher());
+            instance = new ArticlePrefetcher(ArticleBodyCache.getInstance(context), network,
+                    MultiTopicFetcher.newExecutor("body-prefetch", 1),
+                    DEFAULT_DAILY_BUDGET_BYTES,
+                    context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a source that asks the search endpoint, with the API key of the app. The requests
+     * go through the given fetcher, which retries them and stops them while the server fails.
+     */
+    static Source networkSource(final ResilientFetcher fetcher) {
+        return new Source() {
+            @Override
+            public Map<String, String> request(List<String> articleUrls,
+                                               CancellationSignal signal,
+                                               final AtomicLong received) throws IOException {
+                final String requestUrl = NewsQueryBuilder.buildBodiesUrl(articleUrls);
+                if (requestUrl == null) {
+                    return new LinkedHashMap<>();
+                }
+                return fetcher.fetch(new ResilientFetcher.Call<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> call(CancellationSignal attemptSignal)
+                            throws IOException {
+                        return ArticleBodyFetcher.requestBodies(requestUrl, attemptSignal,
+                                received);
+                    }
+                }, signal);
+            }
+        };
+    }
+
+    /**
+     * Constructs a new {@link ArticlePrefetcher}.
+     *
+     * @param cache            is where the bodies are stored.
+     * @param source           downloads the bodies.
+     * @param executor         runs the prefetch, one at a time.
+     * @param dailyBudgetBytes is how many bytes the prefetch may download in 24 hours.
+     * @param budgetPrefs      is where the budget is saved, or null to keep it in memory.
+     */
+    ArticlePrefetcher(ArticleBodyCache cache, Source source, ExecutorService executor,
+                      long dailyBudgetBytes, SharedPreferences budgetPrefs) {
+        this.cache = cache;
+        this.source = source;
+        this.executor = executor;
+        this.dailyBudgetBytes = dailyBudgetBytes;
+        this.budgetPrefs = budgetPrefs;
+        if (budgetPrefs != null) {
+            windowStart = budgetPrefs.getLong(KEY_WINDOW_START, 0);
+            spentBytes = budgetPrefs.getLong(KEY_SPENT_BYTES, 0);
+        }
+    }
+
+    /**
+     * Prefetches the bodies of the first of the given articles in the background, and cancels
+     * the previous prefetch. Must be called on the main thread.
+     *
+     * @param articleUrls are the URLs of the articles on screen, from the top.
+     */
+    void prefetch(final List<String> articleUrls) {
+        cancel();
+        final CancellationSignal signal = new CancellationSignal();
+        pendingSignal = signal;
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                // The list and the images come first.
+                Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+                int limit = FetchPolicy.getInstance().current().getBodyPrefetchCount();
+                try {
+                    prefetchNow(articleUrls, limit, signal);
+                } catch (IOException e) {
+                    if (!signal.isCanceled()) {
+                        Log.e(LOG_TAG, "Problem prefetching the article bodies.", e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the prefetch pending or running, because the articles left the screen. Must be
+     * called on the main thread.
+     */
+    void cancel() {
+        if (pending != null) {
+            if (!pending.isDone()) {
+                Metrics.count("body.prefetch.cancelled");
+            }
+            pending.cancel(false);
+            pendingSignal.cancel();
+            pending = null;
+            pendingSignal = null;
+        }
+    }
+
+    /**
+     * Prefetches the bodies of the first of the given articles on the calling thread.
+     *
+     * @param limit is how many of the articles may be prefetched, the cached ones aside.
+     * @return the number of bodies saved.
+     * @throws IOException if the request failed or was cancelled.
+     */
+    int prefetchNow(List<String> articleUrls, int limit, CancellationSignal signal)
+            throws IOException {
+        List<String> missing = new ArrayList<>();
+        for (String url : articleUrls) {
+            if (missing.size() >= limit) {
+                break;
+            }
+            if (!cache.contains(url)) {
+                missing.add(url);
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        // Leave the articles that wouldn't fit in what is left of the budget.
+        long affordable = remainingBudget() / ESTIMATED_BODY_BYTES;
+        if (affordable == 0) {
+            Metrics.count("body.prefetch.overBudget");
+            return 0;
+        }
+        if (missing.size() > affordable) {
+            missing = missing.subList(0, (int) affordable);
+        }
+        if (signal.isCanceled()) {
+            return 0;
+        }
+
+        AtomicLong received = new AtomicLong();
+        Map<String, String> bodies;
+        try {
+            bodies = source.request(missing, signal, received);
+        } finally {
+            // The bytes of a cancelled or failed download were used all the same.
+            charge(received.get());
+        }
+        int saved = 0;
+        for (Map.Entry<String, String> body : bodies.entrySet()) {
+            cache.put(body.getKey(), body.getValue());
+            saved++;
+        }
+        Metrics.count("body.prefetch", saved);
+        return saved;
+    }
+
+    /**
+     * Returns the text of the article with the given URL, from the cache or else from the
+     * network, or null if it has none. Must be called on a background thread.
+     *
+     * @param signal is cancelled to stop the request.
+     * @throws IOException if the article isn't cached and the request failed.
+     */
+    String load(String url, CancellationSignal signal) throws IOException {
+        String body = cache.get(url);
+        if (body != null) {
+            Metrics.count("body.cache.hit");
+            return body;
+        }
+        Metrics.count("body.cache.miss");
+        // The user asked for it, so it isn't charged to the prefetch budget.
+        body = source.request(Collections.singletonList(url), signal, new AtomicLong())
+                .get(url);
+        if (body != null) {
+            cache.put(url, body);
+        }
+        return body;
+    }
+
+    /**
+     * Returns how many bytes the prefetch may still download in the current 24 hours.
+     */
+    synchronized long remainingBudget() {
+        startNewWindowIfOver();
+        return Math.max(0, dailyBudgetBytes - spentBytes);
+    }
+
+    private synchronized void charge(long bytes) {
+        startNewWindowIfOver();
+        spentBytes += bytes;
+        if (budgetPrefs != null) {
+            budgetPrefs.edit()
+                    .putLong(KEY_WINDOW_START, windowStart)
+                    .putLong(KEY_SPENT_BYTES, spentBytes)
+                    .apply();
+        }
+    }
+
+    // The budget starts again 24 hours after it started, or if the clock was set back.
+    private void startNewWindowIfOver() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= BUDGET_WINDOW_MILLIS || now < windowStart) {
+            windowStart = now;
+            spentBytes = 0;
+        }
+    }
+}
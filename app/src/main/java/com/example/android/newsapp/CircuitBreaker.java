@@ -0,0 +1,125 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+
+/**
+ * Stops sending requests to a server that keeps failing, so the app shows what it has cached
+ * right away instead of waiting for every request to time out.
+ * <p>
+ * The breaker starts closed, and every request goes through. After a number of failed requests
+ * in a row it opens: requests are refused without touching the network for a while. Then it is
+ * half open, and lets a single trial request through. If the trial succeeds the breaker closes
+ * again, if it fails the breaker opens for another while.
+ * <p>
+ * Every method may be called from several threads at once.
+ */
+final class CircuitBreaker {
+
+    /**
+     * Whether requests go through.
+     */
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // Failed requests in a row that open the breaker.
+    static final int DEFAULT_FAILURE_THRESHOLD = 3;
+
+    // How long the breaker stays open before it lets a trial request through.
+    static final long DEFAULT_OPEN_MILLIS = 30 * 1000;
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int failures = 0;
+
+    // When the breaker opened, from System.nanoTime().
+    private long openedAt;
+
+    // Set while the trial request of the half open breaker runs.
+    private boolean trialRunning = false;
+
+    /**
+     * Constructs a new {@link CircuitBreaker}.
+     *
+     * @param failureThreshold is the number of failed requests in a row that opens it.
+     * @param openMillis       is how long it stays open before a trial request.
+     */
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1000000L;
+    }
+
+    /**
+     * Returns true if a request may be sent now. Every request it allows must then report how
+     * it ended with {@link #onSuccess()}, {@link #onFailure()} or {@link #onAbandoned()}.
+     */
+    synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                // Only one trial at a time, the others are refused until it ends.
+                if (trialRunning) {
+                    return false;
+                }
+                trialRunning = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The server answered, even if with an error that isn't its fault.
+     */
+    synchronized void onSuccess() {
+        failures = 0;
+        trialRunning = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * The request failed in a way that says the server is unreachable or in trouble.
+     */
+    synchronized void onFailure() {
+        failures++;
+        trialRunning = false;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                Metrics.count("fetch.circuit.opened");
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * The request was cancelled before it ended, so it says nothing about the server.
+     */
+    synchronized void onAbandoned() {
+        trialRunning = false;
+    }
+
+    synchronized State getState() {
+        // Report the half open state as soon as it is due, not only on the next request.
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Thrown instead of sending a request while the breaker is open.
+     */
+    static final class OpenException extends IOException {
+
+        OpenException() {
+            super("The server keeps failing, the request wasn't sent");
+        }
+    }
+}
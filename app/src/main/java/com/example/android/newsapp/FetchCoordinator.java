@@ -0,0 +1,139 @@
+package com.example.android.newsapp;
+
+import androidx.core.os.CancellationSignal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Makes sure the same request only runs once at a time.
+ * <p>
+ * Every request has a key, normally its normalized URL. When a request is asked for while the
+ * same key is already running, the caller waits for the running one and gets its result instead
+ * of starting another HTTP call and parse. The requests run on their own executor, so a request
+ * that nobody waits for anymore (because the load that asked for it was cancelled when the
+ * query changed) is cancelled as well, and its signal stops the HTTP read.
+ *
+ * @param <V> is the result of a request.
+ */
+final class FetchCoordinator<V> {
+
+    private final ExecutorService executor;
+
+    // The requests running now, by key.
+    private final Map<String, InFlight> inFlight = new HashMap<>();
+
+    /**
+     * One request, run once for all the callers waiting for it.
+     *
+     * @param <V> is the result of the request.
+     */
+    interface Task<V> {
+        /**
+         * Runs the request and returns its result.
+         *
+         * @param signal is cancelled when no caller waits for the result anymore.
+         */
+        V run(CancellationSignal signal) throws Exception;
+    }
+
+    /**
+     * Constructs a new {@link FetchCoordinator}.
+     *
+     * @param executor runs the requests.
+     */
+    FetchCoordinator(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the result of the request with the given key, running the task only if that
+     * request isn't already running.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while it waits. The
+     *                              request is cancelled if no one else waits for it.
+     * @throws ExecutionException   if the task failed. Every waiting caller gets the failure.
+     */
+    V fetch(String key, Task<V> task) throws InterruptedException, ExecutionException {
+        InFlight call;
+        synchronized (inFlight) {
+            call = inFlight.get(key);
+            // A request that just finished may not be forgotten yet, don't reuse its result.
+            if (call == null || call.isDone()) {
+                call = new InFlight(key, task, new CancellationSignal());
+                inFlight.put(key, call);
+                executor.execute(call);
+            }
+            call.waiters++;
+        }
+        try {
+            return call.get();
+        } finally {
+            synchronized (inFlight) {
+                call.waiters--;
+                if (call.waiters == 0) {
+                    // Nobody wants the result anymore, so stop the request if it still runs.
+                    if (!call.isDone()) {
+                        call.cancel(true);
+                    }
+                    forget(call);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests running now.
+     */
+    int inFlightCount() {
+        synchronized (inFlight) {
+            return inFlight.size();
+        }
+    }
+
+    // Remove the request from the running ones, unless it was already replaced.
+    private void forget(InFlight call) {
+        synchronized (inFlight) {
+            if (inFlight.get(call.key) == call) {
+                inFlight.remove(call.key);
+            }
+        }
+    }
+
+    // One running request, its cancellation signal and the number of callers waiting for it.
+    private final class InFlight extends FutureTask<V> {
+        final String key;
+        final CancellationSignal signal;
+        int waiters = 0;
+
+        InFlight(String key, final Task<V> task, final CancellationSignal signal) {
+            super(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    return task.run(signal);
+                }
+            });
+            this.key = key;
+            this.signal = signal;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            // Interrupting the thread doesn't stop a blocked socket read, the signal does.
+            if (cancelled) {
+                signal.cancel();
+            }
+            return cancelled;
+        }
+
+        @Override
+        protected void done() {
+            forget(this);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.android.newsapp;
+
+/**
+ * Decides how much to download and how long to wait for it, from the {@link NetworkProfile} of
+ * the connection and from the bandwidth and latency measured on the last responses.
+ * <p>
+ * A fast connection gets full pages, thumbnails and an early prefetch of the next page. A slow
+ * or metered one gets smaller pages that arrive before the timeouts, longer timeouts, and fewer
+ * downloads ahead of the user. The battery saver turns off the thumbnail downloads and most of
+ * the prefetch, of the next page and of the article bodies.
+ * <p>
+ * What was measured is more reliable than the type of the connection (a Wi-Fi hotspot can be
+ * slower than a 3G network), so it wins once there is a measure. The measures are forgotten when
+ * the device changes network.
+ */
+final class FetchPolicy {
+
+    // How good the connection is, from the best to the worst.
+    static final int TIER_FAST = 0;
+    static final int TIER_MODERATE = 1;
+    static final int TIER_SLOW = 2;
+
+    // Below this bandwidth (kilobits per second) or above this latency, the connection is slow.
+    static final double SLOW_BANDWIDTH_KBPS = 250;
+    static final double SLOW_LATENCY_MILLIS = 2000;
+
+    // Below this bandwidth or above this latency, the connection is moderate.
+    static final double MODERATE_BANDWIDTH_KBPS = 2000;
+    static final double MODERATE_LATENCY_MILLIS = 700;
+
+    // Smaller responses take about as long whatever the bandwidth, so they don't measure it.
+    static final long MIN_BANDWIDTH_SAMPLE_BYTES = 8 * 1024;
+
+    // Weight of the newest measure in the averages, so one odd response doesn't decide alone.
+    private static final double SMOOTHING = 0.3;
+
+    // A read may wait this many times the usual latency, but never longer than the maximum.
+    private static final int LATENCY_TIMEOUT_FACTOR = 8;
+    private static final int MAX_TIMEOUT_MILLIS = 30000;
+
+    private static final FetchPolicy INSTANCE = new FetchPolicy();
+
+    private NetworkProfile profile =
+            new NetworkProfile(NetworkProfile.TYPE_UNKNOWN, false, false);
+
+    // Averages of the measures on the current network, or -1 before the first one.
+    private double bandwidthKbps = -1;
+    private double latencyMillis = -1;
+
+    /**
+     * Returns the policy shared by the whole app.
+     */
+    static FetchPolicy getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the profile of the connection the device uses now.
+     */
+    synchronized void setNetworkProfile(NetworkProfile profile) {
+        if (profile.getType() != this.profile.getType()) {
+            // Another network, what was measured on the old one doesn't tell anything.
+            bandwidthKbps = -1;
+            latencyMillis = -1;
+        }
+        this.profile = profile;
+    }
+
+    /**
+     * Adds the measures of one response.
+     *
+     * @param bytes         is the number of bytes received for the body, 0 if there is none.
+     * @param latencyNanos  is the time from sending the request to receiving the status line.
+     * @param downloadNanos is the time it took to receive the body.
+     */
+    synchronized void onResponse(long bytes, long latencyNanos, long downloadNanos) {
+        latencyMillis = average(latencyMillis, latencyNanos / 1e6);
+        if (bytes >= MIN_BANDWIDTH_SAMPLE_BYTES && downloadNanos > 0) {
+            bandwidthKbps = average(bandwidthKbps, bytes * 8 / 1000.0 / (downloadNanos / 1e9));
+        }
+    }
+
+    /**
+     * Adds a request that timed out, as a response that took as long as the timeout.
+     */
+    synchronized void onTimeout() {
+        latencyMillis = average(latencyMillis, current().getReadTimeoutMillis());
+    }
+
+    synchronized double getBandwidthKbps() {
+        return bandwidthKbps;
+    }
+
+    synchronized double getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Returns the limits for the requests sent now.
+     */
+    synchronized Limits current() {
+        return decide(profile, bandwidthKbps, latencyMillis);
+    }
+
+    /**
+     * Returns the limits for the given connection and measures.
+     *
+     * @param bandwidthKbps is the measured bandwidth, or -1 if it is unknown.
+     * @param latencyMillis is the measured latency, or -1 if it is unknown.
+     */
+    static Limits decide(NetworkProfile profile, double bandwidthKbps, double latencyMillis) {
+        int tier;
+        if (bandwidthKbps >= 0 || latencyMillis >= 0) {
+            tier = measuredTier(bandwidthKbps, latencyMillis);
+        } else {
+            tier = typeTier(profile.getType());
+        }
+        // The user may pay for every byte, so don't download as much ahead.
+        if (profile.isMetered()) {
+            tier = Math.max(tier, TIER_MODERATE);
+        }
+
+        Limits limits;
+        switch (tier) {
+            case TIER_FAST:
+                limits = new Limits(tier, 50, 10000, 10000, true, 10, 8);
+                break;
+            case TIER_MODERATE:
+                limits = new Limits(tier, 20, 15000, 15000, true, 5, 3);
+                break;
+            default:
+                limits = new Limits(tier, 10, 20000, 20000, false, 2, 0);
+                break;
+        }
+
+        // Leave a slow server the time to answer, instead of giving up and asking again.
+        if (latencyMillis > 0) {
+            int timeout = (int) Math.min(MAX_TIMEOUT_MILLIS,
+                    latencyMillis * LATENCY_TIMEOUT_FACTOR);
+            limits = new Limits(limits.tier, limits.maxPageSize,
+                    Math.max(limits.connectTimeoutMillis, timeout),
+                    Math.max(limits.readTimeoutMillis, timeout),
+                    limits.downloadThumbnails, limits.prefetchDistance,
+                    limits.bodyPrefetchCount);
+        }
+
+        if (profile.isPowerSave()) {
+            limits = new Limits(limits.tier, limits.maxPageSize, limits.connectTimeoutMillis,
+                    limits.readTimeoutMillis, false, Math.min(limits.prefetchDistance, 2), 0);
+        }
+        return limits;
+    }
+
+    private static int measuredTier(double bandwidthKbps, double latencyMillis) {
+        boolean bandwidthKnown = bandwidthKbps >= 0;
+        if ((bandwidthKnown && bandwidthKbps < SLOW_BANDWIDTH_KBPS)
+                || latencyMillis > SLOW_LATENCY_MILLIS) {
+            return TIER_SLOW;
+        }
+        if ((bandwidthKnown && bandwidthKbps < MODERATE_BANDWIDTH_KBPS)
+                || latencyMillis > MODERATE_LATENCY_MILLIS) {
+            return TIER_MODERATE;
+        }
+        return TIER_FAST;
+    }
+
+    private static int typeTier(int type) {
+        switch (type) {
+            case NetworkProfile.TYPE_WIFI:
+            case NetworkProfile.TYPE_CELLULAR_4G:
+                return TIER_FAST;
+            case NetworkProfile.TYPE_CELLULAR_2G:
+                return TIER_SLOW;
+            default:
+                return TIER_MODERATE;
+        }
+    }
+
+    // Exponential moving average, starting at the first value.
+    private static double average(double average, double value) {
+        return average < 0 ? value : average + SMOOTHING * (value - average);
+    }
+
+    /**
+     * What the requests may download and how long they may wait.
+     */
+    static final class Limits {
+
+        private final int tier;
+        private final int maxPageSize;
+        private final int connectTimeoutMillis;
+        private final int readTimeoutMillis;
+        private final boolean downloadThumbnails;
+        private final int prefetchDistance;
+        private final int bodyPrefetchCount;
+
+        Limits(int tier, int maxPageSize, int connectTimeoutMillis, int readTimeoutMillis,
+               boolean downloadThumbnails, int prefetchDistance, int bodyPrefetchCount) {
+            this.tier = tier;
+            this.maxPageSize = maxPageSize;
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            this.readTimeoutMillis = readTimeoutMillis;
+            this.downloadThumbnails = downloadThumbnails;
+            this.prefetchDistance = prefetchDistance;
+            this.bodyPrefetchCount = bodyPrefetchCount;
+        }
+
+        /**
+         * Returns one of the TIER_ constants.
+         */
+        int getTier() {
+            return tier;
+        }
+
+        /**
+         * Returns the page size the user asked for, or less if the connection is too slow.
+         */
+        int limitPageSize(int requested) {
+            return Math.min(requested, maxPageSize);
+        }
+
+        int getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        int getReadTimeoutMillis() {
+            return readTimeoutMillis;
+        }
+
+        /**
+         * Returns true if the thumbnails that aren't cached yet may be downloaded.
+         */
+        boolean shouldDownloadThumbnails() {
+            return downloadThumbnails;
+        }
+
+        /**
+         * Returns how many rows before the end of the list the next page starts loading.
+         */
+        int getPrefetchDistance() {
+            return prefetchDistance;
+        }
+
+        /**
+         * Returns how many of the articles on screen get their body downloaded ahead, for the
+         * reader. 0 turns the prefetch of the bodies off.
+         */
+        int getBodyPrefetchCount() {
+            return bodyPrefetchCount;
+        }
+    }
+}
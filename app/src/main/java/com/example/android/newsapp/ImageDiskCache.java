@@ -0,0 +1,200 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Disk cache of the downloaded thumbnail images, one file per image URL, as sent by the server.
+ * <p>
+ * The files are decoded by the {@link ImageLoader} at the size of the view that shows them, so
+ * the same file serves every size. When the cache grows over its byte budget, the least recently
+ * used images are deleted.
+ */
+final class ImageDiskCache {
+
+    // Name of the directory inside the app cache directory.
+    private static final String DIRECTORY_NAME = "image-cache";
+
+    // Default budget for all the images together. A thumbnail is about 20 KB.
+    static final long DEFAULT_MAX_BYTES = 20 * 1024 * 1024;
+
+    private static final String IMAGE_SUFFIX = ".img";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // A temporary file this old isn't being written anymore. Younger ones may be downloading.
+    private static final long STALE_TEMP_MILLIS = 60 * 1000;
+
+    private static ImageDiskCache instance;
+
+    private final File directory;
+    private final long maxBytes;
+
+    // Size of every image file, in least recently used order, built on first use.
+    private LinkedHashMap<String, Long> lruIndex;
+    private long size;
+
+    /**
+     * Returns the cache shared by the whole app, stored in the app cache directory.
+     */
+    static synchronized ImageDiskCache getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(),
+                    DIRECTORY_NAME);
+            instance = new ImageDiskCache(directory, DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Constructs a new {@link ImageDiskCache}.
+     *
+     * @param directory is where the images are stored. It is created if it doesn't exist.
+     * @param maxBytes  is the byte budget for all the images together.
+     */
+    ImageDiskCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the file of the image with the given URL, or null if it isn't cached.
+     */
+    synchronized File get(String url) {
+        File file = imageFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+        // The modification time keeps the LRU order for the next time the app starts.
+        file.setLastModified(System.currentTimeMillis());
+        index().get(file.getName());
+        return file;
+    }
+
+    /**
+     * Saves the image read from the given stream for the given URL, then trims the cache back
+     * under its byte budget. The stream is read without holding the cache lock, so several
+     * images can be saved at the same time.
+     *
+     * @return the file of the image.
+     * @throws IOException if the stream couldn't be read or the file written. Nothing is saved.
+     */
+    File put(String url, InputStream in) throws IOException {
+        synchronized (this) {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Problem creating the cache directory " + directory);
+            }
+        }
+        File tempFile = File.createTempFile("image", TEMP_SUFFIX, directory);
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tempFile);
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            if (out != null) {
+                out.close();
+            }
+            tempFile.delete();
+            throw e;
+        }
+
+        synchronized (this) {
+            File file = imageFile(url);
+            // Replace the old image in one step, so a reader never sees a half written file.
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Problem renaming " + tempFile);
+            }
+            Long previousLength = index().put(file.getName(), file.length());
+            size += file.length() - (previousLength == null ? 0 : previousLength);
+            trimToSize();
+            return file;
+        }
+    }
+
+    /**
+     * Removes the image with the given URL, for example because it couldn't be decoded.
+     */
+    synchronized void remove(String url) {
+        File file = imageFile(url);
+        file.delete();
+        Long length = index().remove(file.getName());
+        if (length != null) {
+            size -= length;
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by all the images.
+     */
+    synchronized long size() {
+        index();
+        return size;
+    }
+
+    // Deletes the least recently used images until the cache is back under its budget.
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> eldest = index().entrySet().iterator();
+        while (size > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (new File(directory, entry.getKey()).delete()) {
+                size -= entry.getValue();
+                eldest.remove();
+            }
+        }
+    }
+
+    // Returns the LRU index, reading it from the image files the first time.
+    private LinkedHashMap<String, Long> index() {
+        if (lruIndex != null) {
+            return lruIndex;
+        }
+        lruIndex = new LinkedHashMap<>(16, 0.75f, true);
+        size = 0;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return lruIndex;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long firstModified = first.lastModified();
+                long secondModified = second.lastModified();
+                return firstModified < secondModified ? -1
+                        : (firstModified == secondModified ? 0 : 1);
+            }
+        });
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (file.getName().endsWith(IMAGE_SUFFIX)) {
+                lruIndex.put(file.getName(), file.length());
+                size += file.length();
+            } else if (file.getName().endsWith(TEMP_SUFFIX)
+                    && now - file.lastModified() > STALE_TEMP_MILLIS) {
+                // Left over from a download that never finished.
+                file.delete();
+            }
+        }
+        return lruIndex;
+    }
+
+    // The URL is hashed so any URL gives a valid and short file name.
+    private File imageFile(String url) {
+        return new File(directory, NewsDiskCache.sha1Hex(url) + IMAGE_SUFFIX);
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.android.newsapp;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.collection.LruCache;
+import androidx.core.os.CancellationSignal;
+
+import com.example.android.newsappproject.R;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the thumbnail images into the views of the list.
+ * <p>
+ * An image is downloaded once into the {@link ImageDiskCache}, then decoded in the background at
+ * the size of the view that shows it, so a 500 pixel wide thumbnail doesn't take the memory of a
+ * 500 pixel bitmap in a 90dp view. The decoded bitmaps are kept in a memory cache sized to the
+ * memory the device gives the app, and trimmed when the system runs low on memory.
+ * <p>
+ * Every view shows the image of its last request. When a view is bound to another article or
+ * recycled, its previous request is cancelled: a queued decode never runs and a download stops
+ * reading from the network.
+ */
+final class ImageLoader implements ComponentCallbacks2 {
+
+    private static final String LOG_TAG = ImageLoader.class.getSimpleName();
+
+    // No more than this many images are downloaded or decoded at the same time.
+    private static final int MAX_PARALLEL_LOADS = 3;
+
+    // Part of the memory class of the app used for the bitmaps.
+    private static final int MEMORY_CACHE_FRACTION = 8;
+
+    private static ImageLoader instance;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ImageDiskCache diskCache;
+    private final ExecutorService executor =
+            MultiTopicFetcher.newExecutor("image-load", MAX_PARALLEL_LOADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Returns the image loader shared by the whole app.
+     */
+    static synchronized ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ImageLoader(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = activityManager == null ? 16 : activityManager.getMemoryClass();
+        int maxBytes = memoryClass * 1024 * 1024 / MEMORY_CACHE_FRACTION;
+        memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        diskCache = ImageDiskCache.getInstance(context);
+        context.registerComponentCallbacks(this);
+    }
+
+    /**
+     * Shows the image at the given URL in the view, decoded at the size of the view. Cancels
+     * the previous request of the view. Must be called on the main thread.
+     *
+     * @param url  is the URL of the image, or null to clear the view.
+     * @param view has a fixed size in its layout, or is already laid out.
+     */
+    void load(String url, ImageView view) {
+        cancel(view);
+        if (url == null) {
+            view.setImageDrawable(null);
+            return;
+        }
+        int width = targetSize(view.getLayoutParams().width, view.getWidth());
+        int height = targetSize(view.getLayoutParams().height, view.getHeight());
+        String key = url + "@" + width + "x" + height;
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            Metrics.count("image.memory.hit");
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        Metrics.count("image.memory.miss");
+        view.setImageDrawable(null);
+        Request request = new Request(key, url, width, height, view);
+        view.setTag(R.id.image_request, request);
+        request.future = executor.submit(request);
+    }
+
+    /**
+     * Cancels the request of the view, if it has one, because it shows something else now.
+     */
+    void cancel(ImageView view) {
+        Request request = (Request) view.getTag(R.id.image_request);
+        if (request != null) {
+            view.setTag(R.id.image_request, null);
+            request.cancel();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            memoryCache.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND) {
+            memoryCache.trimToSize(memoryCache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        memoryCache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * Returns the largest power of two by which an image of the given size can be divided and
+     * still cover the required size. The decoder then reads only every n-th pixel.
+     */
+    static int calculateInSampleSize(int width, int height, int requiredWidth,
+                                     int requiredHeight) {
+        int inSampleSize = 1;
+        if (requiredWidth <= 0 || requiredHeight <= 0) {
+            return inSampleSize;
+        }
+        while (width / (inSampleSize * 2) >= requiredWidth
+                && height / (inSampleSize * 2) >= requiredHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    // The size of the layout when it is fixed, else the size of the view, 0 if it has none yet.
+    private static int targetSize(int layoutSize, int viewSize) {
+        if (layoutSize > 0) {
+            return layoutSize;
+        }
+        return layoutSize == ViewGroup.LayoutParams.WRAP_CONTENT ? 0 : viewSize;
+    }
+
+    // Returns the image from the disk cache or the network, decoded at the given size.
+    private Bitmap loadBitmap(String url, int width, int height, CancellationSignal signal) {
+        File file = diskCache.get(url);
+        if (file == null) {
+            Metrics.count("image.disk.miss");
+            // On a slow connection or with the battery saver on, only the cached images show.
+            if (!FetchPolicy.getInstance().current().shouldDownloadThumbnails()) {
+                Metrics.count("image.download.skipped");
+                return null;
+            }
+            long requestStart = Metrics.begin("image.request");
+            try {
+                file = download(url, signal);
+            } finally {
+                Metrics.end("image.request", requestStart);
+            }
+        } else {
+            Metrics.count("image.disk.hit");
+        }
+        if (file == null || signal.isCanceled()) {
+            return null;
+        }
+
+        // Read the size of the image first, then decode only as many pixels as the view shows.
+        Bitmap bitmap;
+        long decodeStart = Metrics.begin("image.decode");
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(file.getPath(), options);
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                    width, height);
+            options.inJustDecodeBounds = false;
+            // Thumbnails have no transparency, so use half the memory of the default format.
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        } finally {
+            Metrics.end("image.decode", decodeStart);
+        }
+        if (bitmap == null) {
+            Log.e(LOG_TAG, "Problem decoding the image " + url);
+            diskCache.remove(url);
+        }
+        return bitmap;
+    }
+
+    /* Downloads the image into the disk cache. Cancelling the signal stops the read. It goes
+     * through the same code as the other requests, which keeps the connection reusable after an
+     * error and reports the time and size of the download to the FetchPolicy.
+     */
+    private File download(final String url, CancellationSignal signal) {
+        try {
+            return QueryUtils.makeHttpRequest(new URL(url), null, null, signal, "image",
+                    new QueryUtils.BodyDecoder<File>() {
+                        @Override
+                        public File decode(InputStream body) throws IOException {
+                            return diskCache.put(url, body);
+                        }
+                    }, null).getBody();
+        } catch (IOException e) {
+            // Already logged.
+            return null;
+        }
+    }
+
+    // One image to load into one view.
+    private final class Request implements Runnable {
+        final String key;
+        final String url;
+        final int width;
+        final int height;
+
+        // The view may be recycled or its activity destroyed before the image is loaded.
+        final WeakReference<ImageView> view;
+        final CancellationSignal signal = new CancellationSignal();
+        volatile Future<?> future;
+
+        Request(String key, String url, int width, int height, ImageView view) {
+            this.key = key;
+            this.url = url;
+            this.width = width;
+            this.height = height;
+            this.view = new WeakReference<>(view);
+        }
+
+        @Override
+        public void run() {
+            if (signal.isCanceled()) {
+                return;
+            }
+            final Bitmap bitmap = loadBitmap(url, width, height, signal);
+            if (bitmap == null) {
+                return;
+            }
+            // Keep the bitmap even if the view moved on, it is likely to be shown again soon.
+            memoryCache.put(key, bitmap);
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    ImageView imageView = view.get();
+                    if (imageView != null && imageView.getTag(R.id.image_request) == Request.this) {
+                        imageView.setTag(R.id.image_request, null);
+                        imageView.setImageBitmap(bitmap);
+                    }
+                }
+            });
+        }
+
+        void cancel() {
+            signal.cancel();
+            Future<?> running = future;
+            if (running != null) {
+                running.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A small pull-based JSON tokenizer. It reads the JSON document one token at a time straight
+ * from a {@link Reader}, so values the caller is not interested in can be skipped without ever
+ * being turned into objects or strings.
+ * <p>
+ * The API mirrors {@code android.util.JsonReader}, but this class has no Android dependencies
+ * so it can be used (and tested) on the JVM.
+ */
+final class JsonStreamReader {
+
+    /**
+     * The type of the next token in the JSON document.
+     */
+    enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL,
+        END_DOCUMENT
+    }
+
+    // Lexical scopes, kept on a stack so the reader knows which separator to expect next.
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int DANGLING_NAME = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+
+    private int[] stack = new int[32];
+    private int stackSize = 0;
+
+    // The token that has been peeked but not consumed yet, or null.
+    private Token peeked;
+
+    // Reused for every string that is actually returned to the caller.
+    private final StringBuilder stringBuilder = new StringBuilder();
+
+    /**
+     * Constructs a new {@link JsonStreamReader}.
+     *
+     * @param in is the source of the JSON document. It is read lazily and is not buffered again.
+     */
+    JsonStreamReader(Reader in) {
+        this.in = in;
+        push(EMPTY_DOCUMENT);
+    }
+
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        peeked = null;
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        peeked = null;
+        stackSize--;
+    }
+
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        peeked = null;
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        peeked = null;
+        stackSize--;
+    }
+
+    /**
+     * Returns true if the current array or object has another element.
+     */
+    boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY
+                && token != Token.END_DOCUMENT;
+    }
+
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        peeked = null;
+        return readString();
+    }
+
+    /**
+     * Returns the next value as a String. Numbers and booleans are returned as they appear in the
+     * document and a JSON null is returned as null.
+     */
+    String nextString() throws IOException {
+        Token token = peek();
+        peeked = null;
+        switch (token) {
+            case STRING:
+                return readString();
+            case NUMBER:
+            case BOOLEAN:
+                return readLiteral();
+            case NULL:
+                readLiteral();
+                return null;
+            default:
+                throw syntaxError("Expected a value but was " + token);
+        }
+    }
+
+    /**
+     * Skips the next value, including any nested arrays and objects, without building it.
+     */
+    void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case NAME:
+                case STRING:
+                    peeked = null;
+                    skipString();
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of document");
+                default:
+                    peeked = null;
+                    skipLiteral();
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+
+        int scope = stack[stackSize - 1];
+        if (scope == EMPTY_ARRAY) {
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+        } else if (scope == NONEMPTY_ARRAY) {
+            int c = nextNonWhitespace();
+            if (c == ']') {
+                return peeked = Token.END_ARRAY;
+            } else if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            stack[stackSize - 1] = DANGLING_NAME;
+            if (scope == NONEMPTY_OBJECT) {
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                } else if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+            }
+            int c = nextNonWhitespace();
+            if (c == '"') {
+                return peeked = Token.NAME;
+            } else if (c == '}' && scope == EMPTY_OBJECT) {
+                return peeked = Token.END_OBJECT;
+            }
+            throw syntaxError("Expected name");
+        } else if (scope == DANGLING_NAME) {
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+        } else if (scope == EMPTY_DOCUMENT) {
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+            if (nextNonWhitespace() == -1) {
+                return peeked = Token.END_DOCUMENT;
+            }
+            pos--;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            if (nextNonWhitespace() == -1) {
+                return peeked = Token.END_DOCUMENT;
+            }
+            throw syntaxError("Expected end of document");
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case ']':
+                if (scope == EMPTY_ARRAY) {
+                    return peeked = Token.END_ARRAY;
+                }
+                throw syntaxError("Unexpected ']'");
+            case '[':
+                return peeked = Token.BEGIN_ARRAY;
+            case '{':
+                return peeked = Token.BEGIN_OBJECT;
+            case '"':
+                return peeked = Token.STRING;
+            case 't':
+            case 'f':
+                pos--;
+                return peeked = Token.BOOLEAN;
+            case 'n':
+                pos--;
+                return peeked = Token.NULL;
+            case -1:
+                throw syntaxError("Unexpected end of document");
+            default:
+                pos--;
+                return peeked = Token.NUMBER;
+        }
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    /**
+     * Returns the next character that is not whitespace, or -1 at the end of the input.
+     */
+    private int nextNonWhitespace() throws IOException {
+        while (pos < limit || fillBuffer()) {
+            char c = buffer[pos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private boolean fillBuffer() throws IOException {
+        pos = 0;
+        limit = 0;
+        int read = in.read(buffer, 0, buffer.length);
+        if (read > 0) {
+            limit = read;
+            return true;
+        }
+        return false;
+    }
+
+    // Reads the rest of a string whose opening quote has already been consumed.
+    private String readString() throws IOException {
+        stringBuilder.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == '"') {
+                    stringBuilder.append(buffer, start, pos - start - 1);
+                    return stringBuilder.toString();
+                } else if (c == '\\') {
+                    stringBuilder.append(buffer, start, pos - start - 1);
+                    stringBuilder.append(readEscapeCharacter());
+                    start = pos;
+                }
+            }
+            stringBuilder.append(buffer, start, pos - start);
+            if (!fillBuffer()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    // Skips the rest of a string whose opening quote has already been consumed.
+    private void skipString() throws IOException {
+        while (pos < limit || fillBuffer()) {
+            char c = buffer[pos++];
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                readEscapeCharacter();
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private char readEscapeCharacter() throws IOException {
+        int escaped = nextChar();
+        switch (escaped) {
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(nextChar(), 16);
+                    if (digit == -1) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case '"':
+            case '\\':
+            case '/':
+                return (char) escaped;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    private int nextChar() throws IOException {
+        if (pos < limit || fillBuffer()) {
+            return buffer[pos++];
+        }
+        throw syntaxError("Unexpected end of document");
+    }
+
+    // Reads a number, boolean or null literal.
+    private String readLiteral() throws IOException {
+        stringBuilder.setLength(0);
+        while (pos < limit || fillBuffer()) {
+            char c = buffer[pos];
+            if (isLiteralEnd(c)) {
+                break;
+            }
+            stringBuilder.append(c);
+            pos++;
+        }
+        if (stringBuilder.length() == 0) {
+            throw syntaxError("Expected a literal");
+        }
+        return stringBuilder.toString();
+    }
+
+    private void skipLiteral() throws IOException {
+        while (pos < limit || fillBuffer()) {
+            if (isLiteralEnd(buffer[pos])) {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private static boolean isLiteralEnd(char c) {
+        switch (c) {
+            case ',':
+            case ']':
+            case '}':
+            case ':':
+            case ' ':
+            case '\n':
+            case '\r':
+            case '\t':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException("Malformed JSON: " + message);
+    }
+
+    /**
+     * Thrown when the document isn't what was expected, so the caller can tell it apart from
+     * the other {@link IOException}s, thrown when the stream itself can't be read.
+     */
+    static final class MalformedJsonException extends IOException {
+
+        MalformedJsonException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,51 +1,106 @@
 package com.example.android.newsapp;
 
-import android.app.LoaderManager;
-import android.app.LoaderManager.LoaderCallbacks;
-import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.Loader;
 import android.content.SharedPreferences;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import androidx.appcompat.app.AppCompatActivity;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
+
 import com.example.android.newsappproject.BuildConfig;
 import com.example.android.newsappproject.R;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
-public class MainActivity extends AppCompatActivity implements LoaderCallbacks<List<News>> {
+public class MainActivity extends AppCompatActivity implements
+        SharedPreferences.OnSharedPreferenceChangeListener {
+
+    // The bodies are prefetched once the list stays still this long, not between two flings.
+    private static final long BODY_PREFETCH_DELAY_MILLIS = 500;
 
     private TextView emptyStateTextView;
+    private TextView newArticlesView;
+    private SwipeRefreshLayout swipeRefresh;
+    private RecyclerView newsListView;
+    private LinearLayoutManager layoutManager;
     private NewsAdapter adapter;
     private ProgressBar spinner;
-    private static final int NEWS_LOADER_ID = 1;
 
-    //URL for news data from the guardian open platform.
-    private static final String GUARDIAN_REQUEST_URL = "https://content.guardianapis.com/search";
+    // Prefetches the text of the articles on screen, for the reader.
+    private final Runnable bodyPrefetch = new Runnable() {
+        @Override
+        public void run() {
+            int first = layoutManager.findFirstVisibleItemPosition();
+            int last = layoutManager.findLastVisibleItemPosition();
+            if (first == RecyclerView.NO_POSITION) {
+                return;
+            }
+            List<News> newsItem = adapter.getCurrentList();
+            List<String> urls = new ArrayList<>();
+            for (int i = first; i <= last && i < newsItem.size(); i++) {
+                urls.add(newsItem.get(i).getUrl());
+            }
+            ArticlePrefetcher.getInstance(MainActivity.this).prefetch(urls);
+        }
+    };
 
-    /**
-     * Please put your API key here.
-     **/
-    private static final String API_KEY = BuildConfig.THE_GUARDIAN_API_KEY;
+    // Loads the news and keeps them while the activity is recreated.
+    private NewsViewModel viewModel;
+
+    // Set when the settings changed while the activity was in the background.
+    private boolean preferencesChanged = false;
+
+    // Set once the first list is on screen, the end of the startup.
+    private boolean fullyDrawnReported = false;
+
+    // Close to when the process started, on the versions that can't tell.
+    private static final long CLASS_LOADED_AT = SystemClock.elapsedRealtime();
+
+    // The startup is only measured for the first activity of the process, not after a rotation.
+    private static boolean initialDisplayRecorded = false;
+    private static boolean fullDisplayRecorded = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long onCreateStart = Metrics.begin("startup.onCreate");
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Work that isn't needed to show the list waits until the first frame is drawn.
+        runAfterFirstFrame(new Runnable() {
+            @Override
+            public void run() {
+                if (!initialDisplayRecorded) {
+                    initialDisplayRecorded = true;
+                    Metrics.recordTime("startup.initial_display", timeSinceProcessStart());
+                }
+
+                // Keep the followed topics up to date in the background for the next start.
+                NewsSyncWorker.schedule(MainActivity.this);
+            }
+        });
+
         //Set up the spinner to show that data are being loaded, then hide it temporarily.
         spinner = (ProgressBar) findViewById(R.id.loading_spinner);
         spinner.setVisibility(View.GONE);
@@ -53,114 +108,274 @@ public class MainActivity extends AppCompatActivity implements LoaderCallbacks<L
         //Set up the empty TextView that is displayed when the list is empty.
         emptyStateTextView = (TextView) findViewById(R.id.empty_view);
 
-        /* Check if the device is connected to the internet.
-         * If there is no connection, set the empty TextView to display the message "No internet
-         * connection" .
-         * If the device has an internet connection, set up the ListView and its adapter,
-         * to prepare to receive the news data.
+        /* Pulling the list down adds the articles published since the newest one, and a button
+         * tells how many were added above the ones on screen. Tapping it scrolls up to them.
          */
-        ConnectivityManager cm =
-                (ConnectivityManager) this.getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-                //cm.getActiveNetworkInfo();
-        boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
-        if (isConnected == false) {
-            emptyStateTextView.setText(R.string.no_internet_connection);
-        } else {
-            ListView newsListView = (ListView) findViewById(R.id.list);
-            newsListView.setEmptyView(emptyStateTextView);
-            adapter = new NewsAdapter(this, new ArrayList<News>());
-            newsListView.setAdapter(adapter);
-
-            /* Make the list of news article clickable.
-             * When the user clicks on the item, it uses an intent to open the article in the
-             * user's browser.
-             */
-            newsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-                @Override
-                public void onItemClick(AdapterView<?> adapterView, View view, int position,
-                                        long l) {
-                    News currentNews = adapter.getItem(position);
-                    Uri newsUri = Uri.parse(currentNews.getUrl());
-                    Intent websiteIntent = new Intent(Intent.ACTION_VIEW, newsUri);
-                    startActivity(websiteIntent);
+        swipeRefresh = (SwipeRefreshLayout) findViewById(R.id.swipe_refresh);
+        newArticlesView = (TextView) findViewById(R.id.new_articles);
+        newArticlesView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                newsListView.smoothScrollToPosition(0);
+                viewModel.clearNewCount();
+            }
+        });
+
+        /* Set up the RecyclerView and its adapter, to prepare to receive the news data. The
+         * list is loaded even without an internet connection, because the articles downloaded
+         * by the background sync are shown from the cache.
+         */
+        newsListView = (RecyclerView) findViewById(R.id.list);
+        layoutManager = new LinearLayoutManager(this);
+        newsListView.setLayoutManager(layoutManager);
+        newsListView.addItemDecoration(new DividerItemDecoration(this,
+                DividerItemDecoration.VERTICAL));
+
+        /* Make the list of news article clickable.
+         * When the user clicks on the item, it uses an intent to open the article in the
+         * reader of the app.
+         */
+        adapter = new NewsAdapter(ImageLoader.getInstance(this),
+                new NewsAdapter.OnNewsClickListener() {
+                    @Override
+                    public void onNewsClick(News currentNews) {
+                        startActivity(ArticleActivity.newIntent(MainActivity.this,
+                                currentNews));
+                    }
+                });
+        newsListView.setAdapter(adapter);
+
+        /* Get the view model of this activity. After a rotation, it is the same one as before,
+         * with the list and the loads that are running.
+         */
+        viewModel = new ViewModelProvider(this,
+                ViewModelProvider.AndroidViewModelFactory.getInstance(getApplication()))
+                .get(NewsViewModel.class);
+
+        /* Prefetch the next page before the user reaches the end of the list. The faster the
+         * connection, the earlier it starts.
+         */
+        newsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // The new articles at the top are on screen, the button isn't needed anymore.
+                if (layoutManager.findFirstVisibleItemPosition() == 0) {
+                    viewModel.clearNewCount();
+                }
+                int totalItemCount = adapter.getItemCount();
+                if (viewModel.hasMorePages() && totalItemCount > 0
+                        && layoutManager.findLastVisibleItemPosition()
+                        >= totalItemCount - 1 - prefetchDistance()) {
+                    viewModel.loadNextPage();
                 }
-            });
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+            }
 
-            /* Initialize the loader. Pass in the int ID constant defined above and pass in null
-             *  for the bundle. Pass in this activity for the LoaderCallbacks parameter.
+            /* Prefetch the text of the articles on screen once the list stops, and stop the
+             * prefetch as soon as the user scrolls away from them.
              */
-            loaderManager.initLoader(NEWS_LOADER_ID, null, this);
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    scheduleBodyPrefetch();
+                } else {
+                    cancelBodyPrefetch();
+                }
+            }
+        });
 
-            //Make the spinner appear to show the user the data are loading.
-            spinner.setVisibility(View.VISIBLE);
-        }
+        //Make the spinner appear to show the user the data are loading, until the first page.
+        viewModel.isLoading().observe(this, new Observer<Boolean>() {
+            @Override
+            public void onChanged(Boolean loading) {
+                spinner.setVisibility(Boolean.TRUE.equals(loading) ? View.VISIBLE : View.GONE);
+            }
+        });
+
+        swipeRefresh.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
+            @Override
+            public void onRefresh() {
+                viewModel.refresh();
+                // Nothing started if the first page is still loading.
+                if (!Boolean.TRUE.equals(viewModel.isRefreshing().getValue())) {
+                    swipeRefresh.setRefreshing(false);
+                }
+            }
+        });
+        viewModel.isRefreshing().observe(this, new Observer<Boolean>() {
+            @Override
+            public void onChanged(Boolean refreshing) {
+                swipeRefresh.setRefreshing(Boolean.TRUE.equals(refreshing));
+            }
+        });
+        viewModel.getNewCount().observe(this, new Observer<Integer>() {
+            @Override
+            public void onChanged(Integer count) {
+                showNewCount(count == null ? 0 : count);
+            }
+        });
+
+        // Show the list every time it changes.
+        viewModel.getNews().observe(this, new Observer<List<News>>() {
+            @Override
+            public void onChanged(List<News> newsItem) {
+                onNewsChanged(newsItem);
+            }
+        });
+
+        /* Show the saved list, then load the first page, unless the view model already has it.
+         * Nothing is requested from the network before the saved list is on screen.
+         */
+        viewModel.start();
+
+        // Reload the list when the user comes back from the settings.
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .registerOnSharedPreferenceChangeListener(this);
+        Metrics.end("startup.onCreate", onCreateStart);
     }
 
-    // Create a new loader for the given URL
     @Override
-    public Loader<List<News>> onCreateLoader(int i, Bundle bundle) {
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        preferencesChanged = true;
+    }
 
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // The device may have changed network while the app was in the background.
+        FetchPolicy.getInstance().setNetworkProfile(NetworkProfile.read(this));
+        if (preferencesChanged) {
+            preferencesChanged = false;
+            viewModel.reload();
+        } else {
+            // Only reload the list we already have if it is stale.
+            viewModel.refreshIfStale();
+        }
+        // The prefetch was cancelled when the activity was stopped.
+        scheduleBodyPrefetch();
+    }
 
-        // Get the String values for the preference menu.
-        String orderBy = sharedPrefs.getString(getString(R.string.settings_order_by_key),
-                getString(R.string.settings_order_by_default));
+    @Override
+    protected void onStop() {
+        // Nothing is on screen anymore.
+        cancelBodyPrefetch();
+        super.onStop();
+    }
 
-        String articleNumber =
-                sharedPrefs.getString(getString(R.string.settings_article_number_key),
-                        getString(R.string.settings_article_number_default));
+    @Override
+    protected void onDestroy() {
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .unregisterOnSharedPreferenceChangeListener(this);
+        super.onDestroy();
+    }
 
-        String searchContent = sharedPrefs.getString(getString(R.string.settings_edit_text_key),
-                getString(R.string.settings_edit_text_default));
-        //If the topic preference is left empty, the default topic is Android.
-        if (searchContent.replaceAll(" ", "").isEmpty()) {
-            searchContent = getString(R.string.settings_edit_text_default);
+    // Show the articles loaded so far, or why there are none.
+    private void onNewsChanged(List<News> newsItem) {
+        if (newsItem == null) {
+            return;
         }
-        ;
 
-        // Parse the URL for the news data, to prepare for the URI builder method.
-        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
+        /* Set empty TextView to display "No news found.", or "No internet connection" if nothing
+         * was cached and the device is offline. It will be covered by the news data if they
+         * exist. If there is no news data, it will stay visible.
+         */
+        emptyStateTextView.setText(newsItem.isEmpty() && !isConnected()
+                ? R.string.no_internet_connection : R.string.no_news);
 
-        // Use the URI builder method to add parameters to the URL.
-        Uri.Builder uriBuilder = baseUri.buildUpon();
-        uriBuilder.appendQueryParameter("q", searchContent);
-        uriBuilder.appendQueryParameter("tag", "technology/technology");
-        uriBuilder.appendQueryParameter("order-by", orderBy);
-        uriBuilder.appendQueryParameter("page-size", articleNumber);
-        uriBuilder.appendQueryParameter("show-tags", "contributor");
-        uriBuilder.appendQueryParameter("api-key", API_KEY);
+        /* Replace the adapter's data set with the new list of {@link News}. Only the articles
+         * that changed are updated in the RecyclerView.
+         */
+        showNews(newsItem);
+    }
 
-        // Return the final URL and load the information required from it.
-        return new NewsLoader(this, uriBuilder.toString());
+    /* Submit the list to the adapter. The difference with the current list is computed in the
+     * background, then the empty TextView is shown if the list is empty.
+     */
+    private void showNews(List<News> newsItem) {
+        adapter.submitList(newsItem, new Runnable() {
+            @Override
+            public void run() {
+                emptyStateTextView.setVisibility(
+                        adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+                onFullyDrawn();
+                // Other articles may be on screen now.
+                scheduleBodyPrefetch();
+            }
+        });
     }
 
-    @Override
-    public void onLoadFinished(Loader<List<News>> loader, List<News> newsItem) {
-        //Clear the adapter of previous data.
-        adapter.clear();
+    /* The first list is on screen, from the snapshot, the store or the network. Tell the system,
+     * which logs the time to full display ("Fully drawn" in logcat) for the startup benchmark.
+     */
+    private void onFullyDrawn() {
+        if (fullyDrawnReported) {
+            return;
+        }
+        fullyDrawnReported = true;
+        if (!fullDisplayRecorded) {
+            fullDisplayRecorded = true;
+            Metrics.recordTime("startup.full_display", timeSinceProcessStart());
+        }
+        // The method only exists since Android 4.4.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            try {
+                reportFullyDrawn();
+            } catch (SecurityException e) {
+                // Android 4.4 wrongly asks for the UPDATE_DEVICE_STATS permission.
+            }
+        }
+    }
 
-        /* Set empty TextView to display "No news found.". It will be covered by the news data if
-         * they exist. If there is no news data, it will stay visible.
-         */
-        emptyStateTextView.setText(R.string.no_news);
+    // Runs the given task right after the first frame of the activity is drawn.
+    private void runAfterFirstFrame(final Runnable task) {
+        final View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        // Posted, so it runs once the frame about to be drawn is done.
+                        decorView.post(task);
+                        return true;
+                    }
+                });
+    }
 
-        /* If there is a valid list of {@link News}, then add them to the adapter's
-         * data set. This will trigger the ListView to update.
-         */
-        if (newsItem != null && !newsItem.isEmpty()) {
-            adapter.addAll(newsItem);
+    // Returns the time since the process started, in nanoseconds.
+    private static long timeSinceProcessStart() {
+        long startedAt = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? Process.getStartElapsedRealtime() : CLASS_LOADED_AT;
+        return (SystemClock.elapsedRealtime() - startedAt) * 1000000L;
+    }
+
+    // Show how many articles a refresh added above the ones on screen, if any.
+    private void showNewCount(int count) {
+        if (count <= 0) {
+            newArticlesView.setVisibility(View.GONE);
+            return;
         }
-        //Make the spinner disappear because the loading is finished.
-        spinner.setVisibility(View.GONE);
+        newArticlesView.setText(getResources().getQuantityString(R.plurals.new_articles, count,
+                count));
+        newArticlesView.setVisibility(View.VISIBLE);
     }
 
-    // Reset loader, clear out the existing data.
-    @Override
-    public void onLoaderReset(Loader<List<News>> loader) {
-        adapter.clear();
+    private void scheduleBodyPrefetch() {
+        newsListView.removeCallbacks(bodyPrefetch);
+        newsListView.postDelayed(bodyPrefetch, BODY_PREFETCH_DELAY_MILLIS);
+    }
+
+    private void cancelBodyPrefetch() {
+        newsListView.removeCallbacks(bodyPrefetch);
+        ArticlePrefetcher.getInstance(this).cancel();
+    }
+
+    // Check if the device is connected to the internet.
+    private boolean isConnected() {
+        return NetworkProfile.read(this).isConnected();
+    }
+
+    // How many rows before the end of the list the next page starts loading.
+    private static int prefetchDistance() {
+        return FetchPolicy.getInstance().current().getPrefetchDistance();
     }
 
     @Override
@@ -168,6 +383,8 @@ public class MainActivity extends AppCompatActivity implements LoaderCallbacks<L
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the Options Menu we specified in XML
         getMenuInflater().inflate(R.menu.main, menu);
+        // The performance report is only for the developers.
+        menu.findItem(R.id.action_metrics).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -180,6 +397,39 @@ public class MainActivity extends AppCompatActivity implements LoaderCallbacks<L
             startActivity(settingsIntent);
             return true;
         }
+        if (id == R.id.action_metrics) {
+            showMetricsReport();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
+
+    // Show the timers, counters and hit rates recorded since the app started.
+    private void showMetricsReport() {
+        View reportView = getLayoutInflater().inflate(R.layout.metrics_report, null);
+        ((TextView) reportView.findViewById(R.id.metrics_report)).setText(Metrics.report());
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.metrics_menu_item)
+                .setView(reportView)
+                .setPositiveButton(android.R.string.ok, null)
+                .setNeutralButton(R.string.metrics_reset, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Metrics.reset();
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Adds the performance report to the state of the activity written by
+     * {@code adb shell dumpsys activity com.example.android.newsapp}, so the metrics of a build
+     * can be collected from a device without the debug menu.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.println();
+        writer.print(Metrics.report());
+    }
 }
\ No newline at end of file
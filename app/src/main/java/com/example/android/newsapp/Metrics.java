@@ -0,0 +1,299 @@
+package com.example.android.newsapp;
+
+import androidx.core.os.TraceCompat;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timers, counters and histograms of the hot paths of the app: the requests, the parsing, the
+ * caches and the binding of the list, so we can see where the time goes on a real device.
+ * <p>
+ * Every timer is also an Android trace section, so it shows up with its name in a system trace
+ * (Perfetto or systrace). Outside of a trace, recording a value costs a map lookup and a short
+ * synchronized update, so the metrics are always on, in release builds too.
+ * <p>
+ * Everything recorded since the app started is written by {@link #report()}, which is shown by
+ * the debug menu of the {@link MainActivity} and by
+ * {@code adb shell dumpsys activity com.example.android.newsapp}.
+ */
+final class Metrics {
+
+    private static final ConcurrentHashMap<String, Histogram> HISTOGRAMS =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AtomicLong> COUNTERS =
+            new ConcurrentHashMap<>();
+
+    // Counters named "<name>.hit" and "<name>.miss" are reported as a hit rate too.
+    private static final String HIT_SUFFIX = ".hit";
+    private static final String MISS_SUFFIX = ".miss";
+
+    /**
+     * Create a private constructor because no one should ever create a {@link Metrics} object.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Starts the timer with the given name, and its trace section. Must be followed by
+     * {@link #end} on the same thread, in a finally block so the trace sections stay nested.
+     *
+     * @return the start time to give to {@link #end}.
+     */
+    static long begin(String name) {
+        TraceCompat.beginSection(name);
+        return System.nanoTime();
+    }
+
+    /**
+     * Stops the timer with the given name and records how long it ran.
+     *
+     * @param startNanos is the time returned by {@link #begin}.
+     */
+    static void end(String name, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        TraceCompat.endSection();
+        histogram(name, true).record(elapsed);
+    }
+
+    /**
+     * Records a duration measured some other way than with {@link #begin}, like the time since
+     * the process started, in the timer with the given name.
+     */
+    static void recordTime(String name, long nanos) {
+        histogram(name, true).record(nanos);
+    }
+
+    /**
+     * Records a value, like a number of bytes or of articles, in the histogram with the given
+     * name.
+     */
+    static void record(String name, long value) {
+        histogram(name, false).record(value);
+    }
+
+    /**
+     * Adds one to the counter with the given name.
+     */
+    static void count(String name) {
+        count(name, 1);
+    }
+
+    /**
+     * Adds the given number to the counter with the given name.
+     */
+    static void count(String name, long delta) {
+        AtomicLong counter = COUNTERS.get(name);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = COUNTERS.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.addAndGet(delta);
+    }
+
+    /**
+     * Returns the value of the counter with the given name, 0 if it was never counted.
+     */
+    static long counter(String name) {
+        AtomicLong counter = COUNTERS.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Returns the timer or histogram with the given name, or null if nothing was recorded in it.
+     */
+    static Histogram histogram(String name) {
+        return HISTOGRAMS.get(name);
+    }
+
+    /**
+     * Forgets everything recorded so far, for example before measuring one scenario.
+     */
+    static void reset() {
+        HISTOGRAMS.clear();
+        COUNTERS.clear();
+    }
+
+    /**
+     * Returns a plain text report of every timer, histogram and counter, sorted by name.
+     */
+    static String report() {
+        StringBuilder report = new StringBuilder();
+        Map<String, Histogram> histograms = new TreeMap<String, Histogram>(HISTOGRAMS);
+        report.append(String.format(Locale.US, "%-24s %7s %9s %9s %9s %9s %9s%n",
+                "Timers (ms)", "count", "mean", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            if (entry.getValue().isTimer()) {
+                appendHistogram(report, entry.getKey(), entry.getValue());
+            }
+        }
+        report.append(String.format(Locale.US, "%n%-24s %7s %9s %9s %9s %9s %9s%n",
+                "Values", "count", "mean", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            if (!entry.getValue().isTimer()) {
+                appendHistogram(report, entry.getKey(), entry.getValue());
+            }
+        }
+
+        report.append(String.format(Locale.US, "%n%-24s %7s%n", "Counters", "count"));
+        Map<String, Long> counters = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : COUNTERS.entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            report.append(String.format(Locale.US, "%-24s %7d%n", entry.getKey(),
+                    entry.getValue()));
+        }
+
+        report.append(String.format(Locale.US, "%n%-24s %7s%n", "Hit rates", "%"));
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            String name = entry.getKey();
+            if (name.endsWith(HIT_SUFFIX)) {
+                String cache = name.substring(0, name.length() - HIT_SUFFIX.length());
+                Long misses = counters.get(cache + MISS_SUFFIX);
+                appendHitRate(report, cache, entry.getValue(), misses == null ? 0 : misses);
+            }
+        }
+        StringPool strings = StringPool.newsFields();
+        appendHitRate(report, "strings", strings.hitCount(), strings.missCount());
+        return report.toString();
+    }
+
+    private static void appendHistogram(StringBuilder report, String name, Histogram histogram) {
+        // The timers are recorded in nanoseconds and reported in milliseconds.
+        double scale = histogram.isTimer() ? 1e-6 : 1;
+        synchronized (histogram) {
+            report.append(String.format(Locale.US, "%-24s %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    name, histogram.getCount(), histogram.getMean() * scale,
+                    histogram.getPercentile(0.5) * scale, histogram.getPercentile(0.9) * scale,
+                    histogram.getPercentile(0.99) * scale, histogram.getMax() * scale));
+        }
+    }
+
+    private static void appendHitRate(StringBuilder report, String name, long hits,
+                                      long misses) {
+        long total = hits + misses;
+        if (total > 0) {
+            report.append(String.format(Locale.US, "%-24s %7.1f  (%d of %d)%n", name,
+                    100.0 * hits / total, hits, total));
+        }
+    }
+
+    // Returns the histogram with the given name, creating it the first time.
+    private static Histogram histogram(String name, boolean timer) {
+        Histogram histogram = HISTOGRAMS.get(name);
+        if (histogram == null) {
+            Histogram newHistogram = new Histogram(timer);
+            histogram = HISTOGRAMS.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * The distribution of the values recorded under one name. The exact count, mean, minimum
+     * and maximum are kept, and the percentiles are read from buckets that are at most 25% wide,
+     * so a histogram takes the same small memory however many values it records.
+     */
+    static final class Histogram {
+
+        // Four buckets for every power of two, up to the largest long.
+        private static final int BUCKET_COUNT = 248;
+
+        private final boolean timer;
+        private final long[] buckets = new long[BUCKET_COUNT];
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        Histogram(boolean timer) {
+            this.timer = timer;
+        }
+
+        /**
+         * Returns true if the values are durations in nanoseconds.
+         */
+        boolean isTimer() {
+            return timer;
+        }
+
+        synchronized void record(long value) {
+            buckets[bucketOf(value)]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        synchronized long getMin() {
+            return count == 0 ? 0 : min;
+        }
+
+        synchronized long getMax() {
+            return count == 0 ? 0 : max;
+        }
+
+        /**
+         * Returns the value under which the given part of the values are, rounded up to the
+         * top of its bucket.
+         *
+         * @param fraction is between 0 and 1, for example 0.9 for the 90th percentile.
+         */
+        synchronized long getPercentile(double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, upperBound(bucket)));
+                }
+            }
+            return max;
+        }
+
+        /* The values 0 to 3 have a bucket each, then every power of two is split into four
+         * buckets: 4, 5, 6, 7, then 8-9, 10-11, 12-13, 14-15, then 16-19, and so on.
+         */
+        static int bucketOf(long value) {
+            if (value < 4) {
+                return (int) Math.max(value, 0);
+            }
+            int powerOfTwo = 63 - Long.numberOfLeadingZeros(value);
+            int quarter = (int) ((value >>> (powerOfTwo - 2)) & 3);
+            return powerOfTwo * 4 + quarter - 4;
+        }
+
+        // The largest value that falls in the given bucket.
+        static long upperBound(int bucket) {
+            if (bucket < 4) {
+                return bucket;
+            }
+            int powerOfTwo = (bucket + 4) / 4;
+            int quarter = (bucket + 4) % 4;
+            if (powerOfTwo == 62 && quarter == 3) {
+                return Long.MAX_VALUE;
+            }
+            return ((5L + quarter) << (powerOfTwo - 2)) - 1;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the news for several topics at the same time and merges them into one list.
+ * <p>
+ * Every topic has its own request URL. The requests run in parallel on a small, bounded pool of
+ * threads, so loading several topics takes about as long as the slowest request. The results are
+ * merged by publication date and articles that appear under more than one topic are only kept
+ * once.
+ */
+final class MultiTopicFetcher {
+
+    private static final String LOG_TAG = MultiTopicFetcher.class.getSimpleName();
+
+    // No more than this many requests run at the same time.
+    static final int MAX_PARALLEL_REQUESTS = 4;
+
+    private static MultiTopicFetcher instance;
+
+    /**
+     * Loads the list of {@link News} for one request URL.
+     */
+    interface Source {
+        /**
+         * Returns the list of {@link News} for the given URL, or null if it could not be loaded.
+         */
+        List<News> load(String url);
+    }
+
+    // Loads every URL straight from the network.
+    static final Source NETWORK = new Source() {
+        @Override
+        public List<News> load(String url) {
+            return QueryUtils.fetchNewsData(url);
+        }
+    };
+
+    private final ExecutorService executor;
+
+    /**
+     * Returns the fetcher shared by the whole app.
+     */
+    static synchronized MultiTopicFetcher getInstance() {
+        if (instance == null) {
+            instance = new MultiTopicFetcher(newExecutor(MAX_PARALLEL_REQUESTS));
+        }
+        return instance;
+    }
+
+    /**
+     * Constructs a new {@link MultiTopicFetcher}.
+     *
+     * @param executor runs the requests. Its size is the number of requests run in parallel.
+     */
+    MultiTopicFetcher(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns a fixed size pool of background threads for running the requests.
+     */
+    static ExecutorService newExecutor(int threads) {
+        return newExecutor("news-fetch", threads);
+    }
+
+    /**
+     * Returns a fixed size pool of background threads, named after the given prefix.
+     */
+    static ExecutorService newExecutor(final String name, int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Loads every URL from the given source and returns the merged list of {@link News}, or null
+     * if none of them could be loaded. A single URL is loaded on the calling thread and its
+     * results are returned in the order the server sent them.
+     *
+     * @param urls        is one request URL per topic.
+     * @param source      loads the list for one URL.
+     * @param newestFirst is true to sort the merged list from the newest to the oldest article.
+     */
+    List<News> fetch(List<String> urls, final Source source, boolean newestFirst) {
+        if (urls.isEmpty()) {
+            return null;
+        }
+        if (urls.size() == 1) {
+            return source.load(urls.get(0));
+        }
+
+        // Start every request first, then wait for all of them.
+        List<Future<List<News>>> futures = new ArrayList<>(urls.size());
+        for (final String url : urls) {
+            futures.add(executor.submit(new Callable<List<News>>() {
+                @Override
+                public List<News> call() {
+                    return source.load(url);
+                }
+            }));
+        }
+
+        List<List<News>> results = new ArrayList<>(urls.size());
+        try {
+            for (Future<List<News>> future : futures) {
+                try {
+                    List<News> result = future.get();
+                    if (result != null) {
+                        results.add(result);
+                    }
+                } catch (ExecutionException e) {
+                    Log.e(LOG_TAG, "Problem loading the news for a topic", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            // The load was cancelled, so the other requests are not needed anymore.
+            for (Future<List<News>> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (results.isEmpty()) {
+            return null;
+        }
+        return merge(results, newestFirst);
+    }
+
+    /**
+     * Merges the given lists of {@link News} into one list sorted by publication date, keeping
+     * only the first article found for every URL.
+     */
+    static List<News> merge(List<List<News>> lists, boolean newestFirst) {
+        Map<String, News> byUrl = new LinkedHashMap<>();
+        for (List<News> list : lists) {
+            for (News news : list) {
+                if (!byUrl.containsKey(news.getUrl())) {
+                    byUrl.put(news.getUrl(), news);
+                }
+            }
+        }
+        List<News> merged = new ArrayList<>(byUrl.values());
+
+        Comparator<News> byDate = new Comparator<News>() {
+            @Override
+            public int compare(News first, News second) {
+                long firstTime = first.getTimeInMillis();
+                long secondTime = second.getTimeInMillis();
+                return firstTime < secondTime ? -1 : (firstTime == secondTime ? 0 : 1);
+            }
+        };
+        Collections.sort(merged, newestFirst ? Collections.reverseOrder(byDate) : byDate);
+        return merged;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.os.PowerManager;
+import android.telephony.TelephonyManager;
+
+import androidx.core.net.ConnectivityManagerCompat;
+
+/**
+ * What the device tells about its connection: whether there is one, its type, whether it is
+ * metered, and whether the battery saver is on. The {@link FetchPolicy} adds what it measured
+ * to decide how much to download.
+ */
+final class NetworkProfile {
+
+    // The type of connection: Wi-Fi (or Ethernet), the generation of a cellular network, or none.
+    static final int TYPE_WIFI = 0;
+    static final int TYPE_CELLULAR_4G = 1;
+    static final int TYPE_CELLULAR_3G = 2;
+    static final int TYPE_CELLULAR_2G = 3;
+    static final int TYPE_UNKNOWN = 4;
+    static final int TYPE_NONE = 5;
+
+    private final int type;
+    private final boolean metered;
+    private final boolean powerSave;
+
+    /**
+     * Constructs a new {@link NetworkProfile}.
+     *
+     * @param type      is one of the TYPE_ constants.
+     * @param metered   is true if the user may pay for the data.
+     * @param powerSave is true if the battery saver is on.
+     */
+    NetworkProfile(int type, boolean metered, boolean powerSave) {
+        this.type = type;
+        this.metered = metered;
+        this.powerSave = powerSave;
+    }
+
+    /**
+     * Returns the profile of the connection the device uses now.
+     */
+    static NetworkProfile read(Context context) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        boolean powerSave = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && powerManager != null && powerManager.isPowerSaveMode();
+
+        ConnectivityManager cm =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) {
+            return new NetworkProfile(TYPE_UNKNOWN, true, powerSave);
+        }
+        boolean metered = ConnectivityManagerCompat.isActiveNetworkMetered(cm);
+
+        /* The network capabilities are used where they exist to tell if there is a connection,
+         * because getActiveNetworkInfo() is deprecated. It is still the only way to know the
+         * generation of a cellular network without asking for the phone permission.
+         */
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            NetworkCapabilities capabilities = cm.getNetworkCapabilities(cm.getActiveNetwork());
+            if (capabilities == null
+                    || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+                return new NetworkProfile(TYPE_NONE, metered, powerSave);
+            }
+        }
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        if (activeNetwork == null || !activeNetwork.isConnectedOrConnecting()) {
+            return new NetworkProfile(TYPE_NONE, metered, powerSave);
+        }
+        switch (activeNetwork.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+            case ConnectivityManager.TYPE_ETHERNET:
+                return new NetworkProfile(TYPE_WIFI, metered, powerSave);
+            case ConnectivityManager.TYPE_MOBILE:
+                return new NetworkProfile(cellularType(activeNetwork.getSubtype()), metered,
+                        powerSave);
+            default:
+                return new NetworkProfile(TYPE_UNKNOWN, metered, powerSave);
+        }
+    }
+
+    // The generation of a cellular network, from its TelephonyManager.NETWORK_TYPE_.
+    static int cellularType(int networkType) {
+        switch (networkType) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return TYPE_CELLULAR_2G;
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+            case TelephonyManager.NETWORK_TYPE_EVDO_0:
+            case TelephonyManager.NETWORK_TYPE_EVDO_A:
+            case TelephonyManager.NETWORK_TYPE_EVDO_B:
+            case TelephonyManager.NETWORK_TYPE_HSDPA:
+            case TelephonyManager.NETWORK_TYPE_HSUPA:
+            case TelephonyManager.NETWORK_TYPE_HSPA:
+            case TelephonyManager.NETWORK_TYPE_HSPAP:
+            case TelephonyManager.NETWORK_TYPE_EHRPD:
+                return TYPE_CELLULAR_3G;
+            case TelephonyManager.NETWORK_TYPE_UNKNOWN:
+                return TYPE_UNKNOWN;
+            default:
+                // LTE and every generation after it.
+                return TYPE_CELLULAR_4G;
+        }
+    }
+
+    int getType() {
+        return type;
+    }
+
+    boolean isConnected() {
+        return type != TYPE_NONE;
+    }
+
+    boolean isMetered() {
+        return metered;
+    }
+
+    boolean isPowerSave() {
+        return powerSave;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof NetworkProfile)) {
+            return false;
+        }
+        NetworkProfile profile = (NetworkProfile) other;
+        return type == profile.type && metered == profile.metered
+                && powerSave == profile.powerSave;
+    }
+
+    @Override
+    public int hashCode() {
+        return type * 4 + (metered ? 2 : 0) + (powerSave ? 1 : 0);
+    }
+}
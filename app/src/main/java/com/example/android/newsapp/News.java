@@ -1,5 +1,7 @@
 package com.example.android.newsapp;
 
+import java.util.TimeZone;
+
 public class News {
 
     private String section;
@@ -8,6 +10,13 @@ public class News {
     private String author;
     private String url;
 
+    // The URL of the thumbnail image of the article, or null if it has none.
+    private String thumbnail;
+
+    // The publication time, parsed once when the article is created.
+    private long timeInMillis;
+    private String displayDate;
+
     /**
      * Constructs a new {@link News} object.
      *
@@ -18,11 +27,25 @@ public class News {
      * @param url     is the url linking to the full news article page.
      */
     public News(String section, String title, String time, String author, String url) {
-        this.section = section;
+        this(section, title, time, author, url, null);
+    }
+
+    /**
+     * Constructs a new {@link News} object with a thumbnail image.
+     *
+     * @param thumbnail is the url of the thumbnail image of the article, or null.
+     */
+    public News(String section, String title, String time, String author, String url,
+                String thumbnail) {
+        // A page repeats the same few sections and contributors, so the articles share them.
+        this.section = StringPool.newsFields().intern(section);
         this.title = title;
         this.time = time;
-        this.author = author;
+        this.author = StringPool.newsFields().intern(author);
         this.url = url;
+        this.thumbnail = thumbnail;
+        this.timeInMillis = NewsDates.parse(time);
+        this.displayDate = NewsDates.formatDate(timeInMillis, TimeZone.getDefault());
     }
 
     public String getSection() {
@@ -37,6 +60,21 @@ public class News {
         return time;
     }
 
+    /**
+     * Returns the publication time in milliseconds since the epoch, or
+     * {@link NewsDates#UNKNOWN_TIME} if it couldn't be parsed.
+     */
+    public long getTimeInMillis() {
+        return timeInMillis;
+    }
+
+    /**
+     * Returns the publication date formatted for display ("yyyy-MM-dd" in the local time zone).
+     */
+    public String getDisplayDate() {
+        return displayDate;
+    }
+
     public String getAuthor() {
         return author;
     }
@@ -44,5 +82,12 @@ public class News {
     public String getUrl() {
         return url;
     }
+
+    /**
+     * Returns the URL of the thumbnail image, or null if the article has none.
+     */
+    public String getThumbnail() {
+        return thumbnail;
+    }
 }
 
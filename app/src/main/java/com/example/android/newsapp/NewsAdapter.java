@@ -1,99 +1,172 @@
 package com.example.android.newsapp;
 
-import android.content.Context;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.text.TextUtils;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.example.android.newsappproject.R;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
+import com.example.android.newsappproject.R;
 
 /**
  * The {@link NewsAdapter} creates a list item layout for each news article
  * in the data source (a list of {@link News} objects).
- * These list item layouts will be provided to the ListView to be displayed to the user.
+ * These list item layouts will be provided to the RecyclerView to be displayed to the user.
+ * <p>
+ * When a new list is submitted, the difference with the current list is computed on a
+ * background thread, so only the articles that were inserted, removed or changed are rebound
+ * and animated.
+ * <p>
+ * The thumbnails are loaded by the {@link ImageLoader}. The load of a row that is recycled is
+ * cancelled, so fast scrolling only decodes the images that are still on screen.
  */
-public class NewsAdapter extends ArrayAdapter<News> {
+public class NewsAdapter extends ListAdapter<News, NewsAdapter.NewsViewHolder> {
+
+    /**
+     * Called when the user clicks on a news article.
+     */
+    public interface OnNewsClickListener {
+        void onNewsClick(News news);
+    }
+
+    // Two articles are the same item if they link to the same page.
+    private static final DiffUtil.ItemCallback<News> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<News>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull News oldItem, @NonNull News newItem) {
+                    return oldItem.getUrl().equals(newItem.getUrl());
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull News oldItem, @NonNull News newItem) {
+                    return oldItem.getTitle().equals(newItem.getTitle())
+                            && oldItem.getSection().equals(newItem.getSection())
+                            && oldItem.getAuthor().equals(newItem.getAuthor())
+                            && oldItem.getDisplayDate().equals(newItem.getDisplayDate())
+                            && TextUtils.equals(oldItem.getThumbnail(), newItem.getThumbnail());
+                }
+            };
+
+    private final ImageLoader imageLoader;
+    private final OnNewsClickListener listener;
 
     /**
      * Constructs a new {@link NewsAdapter}.
      *
-     * @param context of the app
-     * @param news    is the list of news articles, which is the data source of the adapter
+     * @param imageLoader loads the thumbnails
+     * @param listener    is called when the user clicks on a news article
      */
-    public NewsAdapter(Context context, List<News> news) {
-        super(context, 0, news);
+    NewsAdapter(ImageLoader imageLoader, OnNewsClickListener listener) {
+        super(DIFF_CALLBACK);
+        this.imageLoader = imageLoader;
+        this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableId(getItem(position).getUrl());
+    }
+
+    @NonNull
+    @Override
+    public NewsViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        long start = Metrics.begin("adapter.create");
+        try {
+            View listItemView = LayoutInflater.from(parent.getContext()).inflate(
+                    R.layout.news_list_item, parent, false);
+            return new NewsViewHolder(listItemView);
+        } finally {
+            Metrics.end("adapter.create", start);
+        }
     }
 
     /**
-     * Returns a list item view that displays information about the earthquake at the given position
-     * in the list of news article.
+     * Updates the list item view of the view holder to display the news article at the given
+     * position in the list.
      */
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        // Check if there is an existing list item view (called convertView) that we can reuse,
-        // otherwise, if convertView is null, then inflate a new list item layout.
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(R.layout.news_list_item,
-                    parent, false);
-        }
-        // Find the current position in the list.
-        News currentNewsItem = getItem(position);
-
-        /* Find the TextView for the section information. Update it to display the section data
-         * for the current position in the list.
-         */
-        TextView sectionTextView = (TextView) listItemView.findViewById(R.id.news_item_section);
-        sectionTextView.setText(currentNewsItem.getSection());
-
-        /* Find the TextView for the title information. Update it to display the title data for the
-         * current position in the list.
-         */
-        TextView titleTextView = (TextView) listItemView.findViewById(R.id.news_item_title);
-        titleTextView.setText(currentNewsItem.getTitle());
-
-        /* Find the TextView for the author/contributor information. Update it to display the
-         * author data for the current position in the list.
-         */
-        TextView authorTextView = (TextView) listItemView.findViewById(R.id.textview_author);
-        authorTextView.setText(currentNewsItem.getAuthor());
-
-        // Find the TextViews for the data and time information.
-        TextView dateTextView = (TextView) listItemView.findViewById(R.id.textview_date);
-
-        // Get the day and time information for the current position.
-        String originalTime = currentNewsItem.getTime();
-
-        /* This is the day and time information format used on the guardian open platform. The
-         * data received will be in this format, so we need to convert them to another format.
-         */
-        SimpleDateFormat originalDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ",
-                Locale.US);
-        Date myDate = null;
+    public void onBindViewHolder(@NonNull NewsViewHolder holder, int position) {
+        long start = Metrics.begin("adapter.bind");
         try {
-            /* SimpleDateFormat can't parse the original format if we don't change the "Z" in the
-             * end, so we manually replace it.
+            holder.bind(getItem(position));
+        } finally {
+            Metrics.end("adapter.bind", start);
+        }
+    }
+
+    // The row is off screen, so its thumbnail is not needed anymore.
+    @Override
+    public void onViewRecycled(@NonNull NewsViewHolder holder) {
+        holder.unbind();
+    }
+
+    /**
+     * Returns a 64-bit hash (FNV-1a) of the article URL, used as its stable id.
+     */
+    static long stableId(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Holds the views of one list item, so they are only looked up once when the item is
+     * created, and not every time it is bound to another news article.
+     */
+    class NewsViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+
+        private final TextView sectionTextView;
+        private final TextView titleTextView;
+        private final TextView authorTextView;
+        private final TextView dateTextView;
+        private final ImageView thumbnailImageView;
+
+        NewsViewHolder(View listItemView) {
+            super(listItemView);
+            sectionTextView = (TextView) listItemView.findViewById(R.id.news_item_section);
+            titleTextView = (TextView) listItemView.findViewById(R.id.news_item_title);
+            authorTextView = (TextView) listItemView.findViewById(R.id.textview_author);
+            dateTextView = (TextView) listItemView.findViewById(R.id.textview_date);
+            thumbnailImageView =
+                    (ImageView) listItemView.findViewById(R.id.news_item_thumbnail);
+            listItemView.setOnClickListener(this);
+        }
+
+        void bind(News currentNewsItem) {
+            sectionTextView.setText(currentNewsItem.getSection());
+            titleTextView.setText(currentNewsItem.getTitle());
+            authorTextView.setText(currentNewsItem.getAuthor());
+
+            /* The date was parsed and formatted once when the article was created, so there is
+             * no date work to do while scrolling.
              */
-            myDate = originalDateFormat.parse(originalTime.replaceAll("Z$", "+0000"));
-        } catch (ParseException e) {
-            Log.e("NewsAdapter", "Problem parsing the date string");
+            dateTextView.setText(currentNewsItem.getDisplayDate());
+
+            // Articles without a thumbnail keep the space, so all the titles stay aligned.
+            imageLoader.load(currentNewsItem.getThumbnail(), thumbnailImageView);
         }
 
-        // Format the date and update the TextView to display the date information.
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        String formattedDate = dateFormat.format(myDate);
-        dateTextView.setText(formattedDate);
+        void unbind() {
+            imageLoader.cancel(thumbnailImageView);
+            thumbnailImageView.setImageDrawable(null);
+        }
 
-        // Return the list item view that is now showing the appropriate data
-        return listItemView;
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                listener.onNewsClick(getItem(position));
+            }
+        }
     }
 }
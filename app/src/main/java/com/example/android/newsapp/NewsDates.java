@@ -0,0 +1,169 @@
+package com.example.android.newsapp;
+
+import java.util.TimeZone;
+
+/**
+ * Helper methods to parse the publication dates of the guardian open platform and format them
+ * for display.
+ * <p>
+ * The dates look like "2020-04-21T10:00:00Z". They are parsed by hand instead of with a
+ * {@link java.text.SimpleDateFormat}, which is slow, allocates a lot and can't be shared between
+ * threads. Every method here is thread-safe.
+ */
+final class NewsDates {
+
+    // Returned when a date can't be parsed.
+    static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsDates} object.
+     */
+    private NewsDates() {
+    }
+
+    /**
+     * Returns the given ISO 8601 date and time ("yyyy-MM-dd'T'HH:mm:ss" followed by "Z" or an
+     * offset like "+01:00" or "+0100", with optional fractions of a second) in milliseconds
+     * since the epoch, or {@link #UNKNOWN_TIME} if it can't be parsed.
+     */
+    static long parse(String time) {
+        if (time == null || time.length() < 20 || time.charAt(4) != '-'
+                || time.charAt(7) != '-' || time.charAt(10) != 'T' || time.charAt(13) != ':'
+                || time.charAt(16) != ':') {
+            return UNKNOWN_TIME;
+        }
+        int year = digits(time, 0, 4);
+        int month = digits(time, 5, 2);
+        int day = digits(time, 8, 2);
+        int hour = digits(time, 11, 2);
+        int minute = digits(time, 14, 2);
+        int second = digits(time, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return UNKNOWN_TIME;
+        }
+
+        // Fractions of a second.
+        int pos = 19;
+        int millis = 0;
+        if (time.charAt(pos) == '.') {
+            pos++;
+            int scale = 100;
+            while (pos < time.length() && Character.isDigit(time.charAt(pos))) {
+                millis += (time.charAt(pos) - '0') * scale;
+                scale /= 10;
+                pos++;
+            }
+        }
+
+        // Time zone: "Z", "+hh:mm", "+hhmm" or "+hh".
+        if (pos >= time.length()) {
+            return UNKNOWN_TIME;
+        }
+        int offsetMinutes;
+        char zone = time.charAt(pos);
+        if (zone == 'Z' && pos == time.length() - 1) {
+            offsetMinutes = 0;
+        } else if (zone == '+' || zone == '-') {
+            String offset = time.substring(pos + 1).replace(":", "");
+            if (offset.length() != 2 && offset.length() != 4) {
+                return UNKNOWN_TIME;
+            }
+            int offsetHours = digits(offset, 0, 2);
+            int offsetMins = offset.length() == 4 ? digits(offset, 2, 2) : 0;
+            if (offsetHours < 0 || offsetMins < 0) {
+                return UNKNOWN_TIME;
+            }
+            offsetMinutes = (offsetHours * 60 + offsetMins) * (zone == '-' ? -1 : 1);
+        } else {
+            return UNKNOWN_TIME;
+        }
+
+        long days = daysFromCivil(year, month, day);
+        return days * MILLIS_PER_DAY + ((hour * 60L + minute - offsetMinutes) * 60 + second) * 1000
+                + millis;
+    }
+
+    /**
+     * Returns the date ("yyyy-MM-dd") of the given time in the given time zone, or an empty
+     * String if the time is {@link #UNKNOWN_TIME}.
+     */
+    static String formatDate(long timeInMillis, TimeZone timeZone) {
+        if (timeInMillis == UNKNOWN_TIME) {
+            return "";
+        }
+        long localMillis = timeInMillis + timeZone.getOffset(timeInMillis);
+        long days = localMillis / MILLIS_PER_DAY;
+        if (localMillis % MILLIS_PER_DAY < 0) {
+            days--;
+        }
+
+        // Convert the day number back to a year, month and day.
+        days += 719468;
+        long era = (days >= 0 ? days : days - 146096) / 146097;
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] date = new char[10];
+        date[0] = (char) ('0' + year / 1000 % 10);
+        date[1] = (char) ('0' + year / 100 % 10);
+        date[2] = (char) ('0' + year / 10 % 10);
+        date[3] = (char) ('0' + year % 10);
+        date[4] = '-';
+        date[5] = (char) ('0' + month / 10);
+        date[6] = (char) ('0' + month % 10);
+        date[7] = '-';
+        date[8] = (char) ('0' + day / 10);
+        date[9] = (char) ('0' + day % 10);
+        return new String(date);
+    }
+
+    /**
+     * Returns the given time in the format of the guardian open platform, like
+     * "2020-04-21T10:00:00Z", to send it back in a request. The milliseconds are dropped.
+     */
+    static String formatTimestamp(long timeInMillis) {
+        long millisOfDay = timeInMillis % MILLIS_PER_DAY;
+        if (millisOfDay < 0) {
+            millisOfDay += MILLIS_PER_DAY;
+        }
+        int seconds = (int) (millisOfDay / 1000);
+        int hour = seconds / 3600;
+        int minute = seconds / 60 % 60;
+        int second = seconds % 60;
+        return formatDate(timeInMillis, TimeZone.getTimeZone("UTC")) + 'T'
+                + hour / 10 + hour % 10 + ':' + minute / 10 + minute % 10 + ':'
+                + second / 10 + second % 10 + 'Z';
+    }
+
+    // Returns the number of days from 1970-01-01 to the given date.
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    // Returns the number made of the given decimal digits, or -1 if one of them is not a digit.
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
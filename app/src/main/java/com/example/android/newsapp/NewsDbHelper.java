@@ -0,0 +1,122 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.provider.BaseColumns;
+
+/**
+ * Creates and upgrades the database of the {@link NewsStore}, and names its tables and columns.
+ * <p>
+ * The articles and their contributors have a table each. Every followed topic has a row in the
+ * topics table with the time it was last downloaded, and the topic_articles table links the
+ * topics to their articles with the rank the server gave them when sorting by relevance.
+ */
+final class NewsDbHelper extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "news.db";
+
+    // Increment when the schema changes. The database is only a cache, so it is rebuilt.
+    private static final int DATABASE_VERSION = 2;
+
+    static final class ArticleEntry implements BaseColumns {
+        static final String TABLE_NAME = "articles";
+        static final String COLUMN_URL = "web_url";
+        static final String COLUMN_TITLE = "title";
+        static final String COLUMN_SECTION = "section";
+        // The publication date as sent by the server, and in milliseconds for sorting.
+        static final String COLUMN_PUBLISHED = "published";
+        static final String COLUMN_PUBLISHED_AT = "published_at";
+        static final String COLUMN_CONTRIBUTOR_ID = "contributor_id";
+        static final String COLUMN_THUMBNAIL = "thumbnail";
+    }
+
+    static final class ContributorEntry implements BaseColumns {
+        static final String TABLE_NAME = "contributors";
+        static final String COLUMN_NAME = "name";
+    }
+
+    static final class TopicEntry implements BaseColumns {
+        static final String TABLE_NAME = "topics";
+        static final String COLUMN_NAME = "name";
+        static final String COLUMN_SYNCED_AT = "synced_at";
+    }
+
+    static final class TopicArticleEntry {
+        static final String TABLE_NAME = "topic_articles";
+        static final String COLUMN_TOPIC_ID = "topic_id";
+        static final String COLUMN_ARTICLE_ID = "article_id";
+        // Position in the results sorted by relevance, or null if it was never sorted that way.
+        static final String COLUMN_RELEVANCE = "relevance";
+    }
+
+    NewsDbHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructs a new {@link NewsDbHelper} for the given database file, or for a database in
+     * memory if the name is null.
+     */
+    NewsDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + ContributorEntry.TABLE_NAME + " ("
+                + ContributorEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + ContributorEntry.COLUMN_NAME + " TEXT NOT NULL UNIQUE)");
+
+        db.execSQL("CREATE TABLE " + ArticleEntry.TABLE_NAME + " ("
+                + ArticleEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + ArticleEntry.COLUMN_URL + " TEXT NOT NULL, "
+                + ArticleEntry.COLUMN_TITLE + " TEXT NOT NULL, "
+                + ArticleEntry.COLUMN_SECTION + " TEXT NOT NULL, "
+                + ArticleEntry.COLUMN_PUBLISHED + " TEXT NOT NULL, "
+                + ArticleEntry.COLUMN_PUBLISHED_AT + " INTEGER NOT NULL, "
+                + ArticleEntry.COLUMN_THUMBNAIL + " TEXT, "
+                + ArticleEntry.COLUMN_CONTRIBUTOR_ID + " INTEGER REFERENCES "
+                + ContributorEntry.TABLE_NAME + "(" + ContributorEntry._ID + "))");
+        db.execSQL("CREATE UNIQUE INDEX articles_url ON " + ArticleEntry.TABLE_NAME
+                + "(" + ArticleEntry.COLUMN_URL + ")");
+        db.execSQL("CREATE INDEX articles_published_at ON " + ArticleEntry.TABLE_NAME
+                + "(" + ArticleEntry.COLUMN_PUBLISHED_AT + ")");
+        db.execSQL("CREATE INDEX articles_section ON " + ArticleEntry.TABLE_NAME
+                + "(" + ArticleEntry.COLUMN_SECTION + ")");
+
+        db.execSQL("CREATE TABLE " + TopicEntry.TABLE_NAME + " ("
+                + TopicEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + TopicEntry.COLUMN_NAME + " TEXT NOT NULL UNIQUE, "
+                + TopicEntry.COLUMN_SYNCED_AT + " INTEGER NOT NULL DEFAULT 0)");
+
+        db.execSQL("CREATE TABLE " + TopicArticleEntry.TABLE_NAME + " ("
+                + TopicArticleEntry.COLUMN_TOPIC_ID + " INTEGER NOT NULL REFERENCES "
+                + TopicEntry.TABLE_NAME + "(" + TopicEntry._ID + ") ON DELETE CASCADE, "
+                + TopicArticleEntry.COLUMN_ARTICLE_ID + " INTEGER NOT NULL REFERENCES "
+                + ArticleEntry.TABLE_NAME + "(" + ArticleEntry._ID + ") ON DELETE CASCADE, "
+                + TopicArticleEntry.COLUMN_RELEVANCE + " INTEGER, "
+                + "PRIMARY KEY (" + TopicArticleEntry.COLUMN_TOPIC_ID + ", "
+                + TopicArticleEntry.COLUMN_ARTICLE_ID + "))");
+        // Deleting an article looks up its links by article.
+        db.execSQL("CREATE INDEX topic_articles_article ON " + TopicArticleEntry.TABLE_NAME
+                + "(" + TopicArticleEntry.COLUMN_ARTICLE_ID + ")");
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (!db.isReadOnly()) {
+            db.execSQL("PRAGMA foreign_keys=ON");
+        }
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TopicArticleEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + TopicEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + ArticleEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + ContributorEntry.TABLE_NAME);
+        onCreate(db);
+    }
+}
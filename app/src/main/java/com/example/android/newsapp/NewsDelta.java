@@ -0,0 +1,97 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The articles published since the list on screen was downloaded, for the incremental refresh.
+ * <p>
+ * Instead of downloading the first page again, the refresh asks every topic only for the articles
+ * published after the newest one the list holds ("from-date"), from the newest to the oldest.
+ * Usually there are none or a few, so the response is a few hundred bytes. They are added at the
+ * top of the list, and the rest of the list stays as it is.
+ * <p>
+ * A topic that sends back a full page may have even more new articles, on the next pages, and
+ * they would be missing between the new ones and the old ones. The delta is then incomplete, and
+ * the first page is loaded again instead.
+ */
+final class NewsDelta {
+
+    private final List<News> news;
+    private final boolean complete;
+
+    /**
+     * Constructs a new {@link NewsDelta}.
+     *
+     * @param news     is the articles downloaded, newest first. Some may already be shown.
+     * @param complete is false if a topic may have more new articles than were downloaded.
+     */
+    NewsDelta(List<News> news, boolean complete) {
+        this.news = news;
+        this.complete = complete;
+    }
+
+    List<News> getNews() {
+        return news;
+    }
+
+    /**
+     * Returns true if every new article was downloaded, so the delta can be merged.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the time from which to ask for new articles, or null if the list has no article to
+     * start from.
+     * <p>
+     * It is the publication time of the newest article of the list. With several topics, a topic
+     * may have been downloaded before the newest article of another one was published, so it is
+     * never later than the time the list was downloaded either. The server includes the articles
+     * published at that time exactly, they are recognized by their URL.
+     *
+     * @param savedAt is the time the oldest part of the list was downloaded, 0 if unknown.
+     */
+    static String fromTime(List<News> shown, long savedAt) {
+        long newest = NewsDates.UNKNOWN_TIME;
+        if (shown != null) {
+            for (News item : shown) {
+                newest = Math.max(newest, item.getTimeInMillis());
+            }
+        }
+        if (newest == NewsDates.UNKNOWN_TIME || savedAt <= 0) {
+            return null;
+        }
+        return NewsDates.formatTimestamp(Math.min(newest, savedAt));
+    }
+
+    /**
+     * Returns the articles of the delta that aren't shown yet, newest first.
+     */
+    List<News> newArticles(List<News> shown) {
+        Set<String> shownUrls = new HashSet<>();
+        for (News item : shown) {
+            shownUrls.add(item.getUrl());
+        }
+        List<News> added = new ArrayList<>();
+        for (News item : news) {
+            if (shownUrls.add(item.getUrl())) {
+                added.add(item);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Returns the shown list with the given new articles at the top.
+     */
+    static List<News> merge(List<News> shown, List<News> added) {
+        List<News> merged = new ArrayList<>(added.size() + shown.size());
+        merged.addAll(added);
+        merged.addAll(shown);
+        return merged;
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Disk-backed cache of the {@link News} lists returned for each query.
+ * <p>
+ * Entries are keyed by the normalized request URL (see {@link RequestKeys#normalize}), so the
+ * same query always finds the same entry. An entry older than the maximum age is still returned,
+ * but marked as stale so the caller can show it right away and refresh it in the background.
+ * When the cache grows over its byte budget, the least recently used entries are deleted.
+ */
+final class NewsDiskCache {
+
+    private static final String LOG_TAG = NewsDiskCache.class.getSimpleName();
+
+    // Name of the directory inside the app cache directory.
+    private static final String DIRECTORY_NAME = "news-cache";
+
+    // Default budget for all the entries together.
+    static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    // Default age after which an entry is stale and should be refreshed.
+    static final long DEFAULT_MAX_AGE_MILLIS = 5 * 60 * 1000;
+
+    // Changed whenever the entry file layout changes, so old files are ignored.
+    private static final int FORMAT_VERSION = 3;
+
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static NewsDiskCache instance;
+
+    private final File directory;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+
+    /* Size of every entry file, in least recently used order. It is built from the file
+     * modification times the first time it is needed, then kept up to date in memory.
+     */
+    private LinkedHashMap<String, Long> lruIndex;
+    private long size;
+
+    /**
+     * Returns the cache shared by the whole app, stored in the app cache directory.
+     */
+    static synchronized NewsDiskCache getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(),
+                    DIRECTORY_NAME);
+            instance = new NewsDiskCache(directory, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE_MILLIS);
+        }
+        return instance;
+    }
+
+    /**
+     * Constructs a new {@link NewsDiskCache}.
+     *
+     * @param directory    is where the entries are stored. It is created if it doesn't exist.
+     * @param maxBytes     is the byte budget for all the entries together.
+     * @param maxAgeMillis is the age after which an entry is stale.
+     */
+    NewsDiskCache(File directory, long maxBytes, long maxAgeMillis) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Returns the cached entry for the given key, or null if there is none.
+     */
+    synchronized Entry get(String key) {
+        File file = entryFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(key)) {
+                return null;
+            }
+            long savedAt = in.readLong();
+            String eTag = emptyToNull(in.readUTF());
+            String lastModified = emptyToNull(in.readUTF());
+            int count = in.readInt();
+            List<News> news = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                news.add(new News(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                        in.readUTF(), emptyToNull(in.readUTF())));
+            }
+            // The modification time keeps the LRU order for the next time the app starts.
+            file.setLastModified(System.currentTimeMillis());
+            index().get(file.getName());
+            return new Entry(news, savedAt, maxAgeMillis, eTag, lastModified);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cached news", e);
+            delete(file);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores the given list of {@link News} for the given key, replacing any previous entry,
+     * then trims the cache back under its byte budget.
+     */
+    void put(String key, List<News> news) {
+        put(key, news, null, null);
+    }
+
+    /**
+     * Stores the given list of {@link News} for the given key together with the ETag and
+     * Last-Modified validators of the response, replacing any previous entry, then trims the
+     * cache back under its byte budget.
+     */
+    synchronized void put(String key, List<News> news, String eTag, String lastModified) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Problem creating the cache directory " + directory);
+            return;
+        }
+        File file = entryFile(key);
+        File tempFile = new File(directory, file.getName() + TEMP_SUFFIX);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(key);
+            out.writeLong(System.currentTimeMillis());
+            out.writeUTF(eTag == null ? "" : eTag);
+            out.writeUTF(lastModified == null ? "" : lastModified);
+            out.writeInt(news.size());
+            for (News item : news) {
+                out.writeUTF(item.getSection());
+                out.writeUTF(item.getTitle());
+                out.writeUTF(item.getTime());
+                out.writeUTF(item.getAuthor());
+                out.writeUTF(item.getUrl());
+                out.writeUTF(item.getThumbnail() == null ? "" : item.getThumbnail());
+            }
+            out.close();
+            out = null;
+            // Replace the old entry in one step, so a reader never sees a half written file.
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Problem renaming " + tempFile);
+            }
+            Long previousLength = index().put(file.getName(), file.length());
+            size += file.length() - (previousLength == null ? 0 : previousLength);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the news to the cache", e);
+            closeQuietly(out);
+            tempFile.delete();
+            return;
+        }
+        trimToSize();
+    }
+
+    /**
+     * Removes the entry for the given key, if there is one.
+     */
+    synchronized void remove(String key) {
+        delete(entryFile(key));
+    }
+
+    /**
+     * Returns the number of bytes used by all the entries.
+     */
+    synchronized long size() {
+        index();
+        return size;
+    }
+
+    // Deletes the least recently used entries until the cache is back under its budget.
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> eldest = index().entrySet().iterator();
+        while (size > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (new File(directory, entry.getKey()).delete()) {
+                size -= entry.getValue();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void delete(File file) {
+        file.delete();
+        Long length = index().remove(file.getName());
+        if (length != null) {
+            size -= length;
+        }
+    }
+
+    // Returns the LRU index, reading it from the entry files the first time.
+    private LinkedHashMap<String, Long> index() {
+        if (lruIndex != null) {
+            return lruIndex;
+        }
+        lruIndex = new LinkedHashMap<>(16, 0.75f, true);
+        size = 0;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return lruIndex;
+        }
+        List<File> entries = new ArrayList<>(files.length);
+        for (File file : files) {
+            if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                entries.add(file);
+            } else if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // Left over from a write that never finished.
+                file.delete();
+            }
+        }
+        File[] sorted = entries.toArray(new File[entries.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long firstModified = first.lastModified();
+                long secondModified = second.lastModified();
+                return firstModified < secondModified ? -1
+                        : (firstModified == secondModified ? 0 : 1);
+            }
+        });
+        for (File file : sorted) {
+            lruIndex.put(file.getName(), file.length());
+            size += file.length();
+        }
+        return lruIndex;
+    }
+
+    // The key is hashed so any URL gives a valid and short file name.
+    private File entryFile(String key) {
+        return new File(directory, sha1Hex(key) + ENTRY_SUFFIX);
+    }
+
+    static String sha1Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(value.getBytes(Charset.forName("UTF-8")));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1.
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * A cached list of {@link News} with the time it was saved and the validators of the
+     * response it came from.
+     */
+    static final class Entry {
+
+        private final List<News> news;
+        private final long savedAt;
+        private final long maxAgeMillis;
+        private final String eTag;
+        private final String lastModified;
+
+        Entry(List<News> news, long savedAt, long maxAgeMillis, String eTag,
+              String lastModified) {
+            this.news = news;
+            this.savedAt = savedAt;
+            this.maxAgeMillis = maxAgeMillis;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns the ETag of the response, or null if it didn't have one.
+         */
+        String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Returns the Last-Modified date of the response, or null if it didn't have one.
+         */
+        String getLastModified() {
+            return lastModified;
+        }
+
+        List<News> getNews() {
+            return news;
+        }
+
+        long getSavedAt() {
+            return savedAt;
+        }
+
+        /**
+         * Returns true if the entry is older than the maximum age and should be refreshed.
+         */
+        boolean isStale() {
+            return System.currentTimeMillis() - savedAt > maxAgeMillis;
+        }
+    }
+}
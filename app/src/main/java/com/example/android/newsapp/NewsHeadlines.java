@@ -0,0 +1,92 @@
+package com.example.android.newsapp;
+
+import android.text.TextUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The top headlines of the list, saved for the home-screen widget by whoever downloads the list:
+ * the {@link NewsViewModel} and the {@link NewsSyncWorker}.
+ * <p>
+ * They are a small {@link NewsSnapshot}, so the widget reads a few hundred bytes through a
+ * memory-mapped file and never sends a request or parses JSON. The articles are the same
+ * {@link News} objects the {@link NewsAdapter} shows, in the same order, so the widget and the
+ * list always agree on the titles and dates.
+ */
+final class NewsHeadlines {
+
+    // The number of headlines the widget shows.
+    static final int MAX_HEADLINES = 3;
+
+    // Marks the file as the headlines, in case another snapshot is ever saved under its name.
+    private static final String KEY = "headlines";
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsHeadlines}
+     * object.
+     */
+    private NewsHeadlines() {
+    }
+
+    /**
+     * Saves the top of the given list in the given file, unless the headlines saved already show
+     * the same thing. Returns true if the file changed, so the widget has to be redrawn.
+     * <p>
+     * The list and the background sync may save their headlines at the same time, so the saves
+     * run one at a time and each one compares with what the previous one wrote.
+     *
+     * @param news    is the list as it is shown, from the top.
+     * @param savedAt is when the list was downloaded.
+     */
+    static synchronized boolean write(File file, List<News> news, long savedAt)
+            throws IOException {
+        List<News> top = new ArrayList<>(news.subList(0, Math.min(news.size(), MAX_HEADLINES)));
+        NewsSnapshot saved = read(file);
+        if (saved != null && sameHeadlines(saved.getNews(), top)) {
+            return false;
+        }
+        new NewsSnapshot(KEY, savedAt, top).write(file);
+        return true;
+    }
+
+    /**
+     * Returns the headlines saved in the given file, or null if there are none yet or they can't
+     * be read.
+     */
+    static NewsSnapshot read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            NewsSnapshot snapshot = NewsSnapshot.read(file);
+            return KEY.equals(snapshot.getKey()) ? snapshot : null;
+        } catch (IOException e) {
+            // It is from an older version of the app, or damaged.
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if both lists show the same articles in the same order, with the same title,
+     * section and date: everything the widget shows.
+     */
+    static boolean sameHeadlines(List<News> first, List<News> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            News a = first.get(i);
+            News b = second.get(i);
+            if (!TextUtils.equals(a.getUrl(), b.getUrl())
+                    || !TextUtils.equals(a.getTitle(), b.getTitle())
+                    || !TextUtils.equals(a.getSection(), b.getSection())
+                    || !a.getDisplayDate().equals(b.getDisplayDate())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
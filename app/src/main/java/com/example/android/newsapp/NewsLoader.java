@@ -1,43 +1,194 @@
 package com.example.android.newsapp;
 
-import android.content.AsyncTaskLoader;
 import android.content.Context;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Loads a list of news article by using an AsyncTaskLoader to perform the
- * network request to the given URL.
+ * Loads one page of news for several topics. When there is one URL per topic, the topics are
+ * loaded in parallel by the {@link MultiTopicFetcher} and merged into one list.
+ * <p>
+ * Every downloaded list is saved in the {@link NewsStore}, and the page on screen is read back
+ * from it with a local query. When the store already has the topics, the page is returned
+ * without any request, and flagged as stale if the topics must be refreshed.
+ * <p>
+ * The load blocks, the {@link NewsViewModel} runs it on a background thread. Interrupting that
+ * thread cancels the load, and the requests that no one else waits for.
  */
-public class NewsLoader extends AsyncTaskLoader<List<News>> {
+final class NewsLoader {
 
-    //Query URL
-    private String url;
+    private final Context context;
+
+    // The topics, order and page to load.
+    private final NewsQuery query;
+
+    //Query URLs, one per topic
+    private final List<String> urls;
+
+    // Time at which the (oldest part of the) list being loaded was downloaded.
+    private long loadedSavedAt;
+
+    // Set when part of the list that was just loaded is stale and must be refreshed.
+    private boolean stale;
 
     /**
-     * Constructs a new {@link NewsLoader}.
+     * Constructs a new {@link NewsLoader} for one page of results of several topics.
      *
-     * @param context of the activity
-     * @param url     to load data from
+     * @param context of the app
+     * @param query   is the topics, order and page to load
      */
-    public NewsLoader(Context context, String url) {
-        super(context);
-        this.url = url;
+    NewsLoader(Context context, NewsQuery query) {
+        this.context = context.getApplicationContext();
+        this.query = query;
+        this.urls = NewsQueryBuilder.buildUrls(query);
     }
 
-    @Override
-    protected void onStartLoading() {
-        forceLoad();
+    NewsQuery getQuery() {
+        return query;
     }
 
-    //Loading on background thread.
-    @Override
-    public List<News> loadInBackground() {
-        if (url == null) {
+    /**
+     * Loads the page of the query from the store, the search index or the network, and returns
+     * it with the time it was downloaded. Returns null if nothing could be loaded, or if the load
+     * was cancelled.
+     *
+     * @param refresh is true to skip the store and the caches and always go to the network.
+     */
+    NewsRepository.Result load(final boolean refresh) {
+        if (urls.isEmpty()) {
             return null;
         }
-        List<News> result = QueryUtils.fetchNewsData(url);
-        return result;
+        synchronized (this) {
+            loadedSavedAt = Long.MAX_VALUE;
+            stale = false;
+        }
+
+        /* Read the page from the store first, then search the articles of the store. The request
+         * URLs are only needed to fill the gaps: when a topic was never downloaded and doesn't
+         * match enough articles, or the page goes past the articles the store has.
+         */
+        NewsStore store = NewsStore.getInstance(context);
+        List<News> local = null;
+        if (!refresh) {
+            local = store.query(query);
+            long syncedAt = store.getSyncedAt(query.getTopics());
+            if (isServedFromStore(query, local, syncedAt)) {
+                long age = System.currentTimeMillis() - syncedAt;
+                onLoaded(syncedAt, age > NewsDiskCache.DEFAULT_MAX_AGE_MILLIS);
+                return result(local);
+            }
+
+            /* A topic that was never downloaded may still match articles downloaded for other
+             * topics. If the search index finds enough of them, show those right away. They
+             * are flagged as stale, with no download time, so the topic is requested at once
+             * and the articles of the server replace them.
+             */
+            List<News> found = NewsRepository.getInstance(context).search(query);
+            if (found.size() >= query.getOffset() + query.getPageSize()) {
+                onLoaded(0, true);
+                return result(new ArrayList<>(found.subList(query.getOffset(), found.size())));
+            }
+        }
+
+        List<News> fetched = MultiTopicFetcher.getInstance().fetch(urls,
+                new MultiTopicFetcher.Source() {
+                    @Override
+                    public List<News> load(String url) {
+                        return loadUrl(url, refresh);
+                    }
+                }, query.isNewestFirst());
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        if (fetched == null) {
+            // Show the part of the page the store has, without a download time so it is reloaded.
+            return local != null && !local.isEmpty()
+                    ? new NewsRepository.Result(local, 0, false) : null;
+        }
+
+        // The downloaded lists are in the store now, sorted the way the user asked.
+        List<News> stored = store.query(query);
+        return result(stored.isEmpty() ? fetched : stored);
     }
-}
 
+    /**
+     * Downloads the articles of every topic of the query published since the given time, for
+     * the incremental refresh of the first page. Returns null if a topic couldn't be loaded, or
+     * if the load was cancelled.
+     *
+     * @param fromTime is a time like "2020-04-21T10:00:00Z", see {@link NewsDelta#fromTime}.
+     */
+    NewsDelta loadNewer(String fromTime) {
+        final NewsRepository repository = NewsRepository.getInstance(context);
+        List<String> newerUrls = NewsQueryBuilder.buildNewerUrls(query, fromTime);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final AtomicBoolean complete = new AtomicBoolean(true);
+        List<News> fetched = MultiTopicFetcher.getInstance().fetch(newerUrls,
+                new MultiTopicFetcher.Source() {
+                    @Override
+                    public List<News> load(String url) {
+                        List<News> news = repository.loadNewer(url);
+                        if (news == null) {
+                            failed.set(true);
+                        } else if (news.size() >= query.getPageSize()) {
+                            // There may be more on the next page.
+                            complete.set(false);
+                        }
+                        return news;
+                    }
+                }, true);
+        /* Without the articles of a topic, the next refresh would start after them and they
+         * would never be shown.
+         */
+        if (Thread.currentThread().isInterrupted() || fetched == null || failed.get()) {
+            return null;
+        }
+        return new NewsDelta(fetched, complete.get());
+    }
+
+    /**
+     * Returns true if the page the store returned for the query can be shown without going
+     * through the caches or the network.
+     * <p>
+     * The page must be full: a short page may only mean the topics were downloaded with a
+     * smaller page size, by the background sync on a slow connection or before the user asked
+     * for more articles. Showing it would end the list there, because a short page is the last
+     * one. When the topics really have fewer articles, the caches answer without a request.
+     *
+     * @param local    is the page read from the store.
+     * @param syncedAt is when the topics were last downloaded, 0 if one of them never was.
+     */
+    static boolean isServedFromStore(NewsQuery query, List<News> local, long syncedAt) {
+        return syncedAt > 0 && local.size() >= query.getPageSize();
+    }
+
+    /**
+     * Loads the list for one URL from the memory cache, the disk cache or the network, in that
+     * order. May run on several threads at once, one per topic.
+     *
+     * @param refresh is true to skip the caches and always go to the network.
+     */
+    private List<News> loadUrl(String url, boolean refresh) {
+        NewsRepository.Result result = NewsRepository.getInstance(context).load(url, refresh);
+        if (result == null) {
+            return null;
+        }
+        onLoaded(result.getSavedAt(), result.isStale());
+        return result.getNews();
+    }
+
+    // Remembers the oldest download time of the list being loaded and whether it is stale.
+    private synchronized void onLoaded(long savedAt, boolean stale) {
+        loadedSavedAt = Math.min(loadedSavedAt, savedAt);
+        if (stale) {
+            this.stale = true;
+        }
+    }
+
+    // The loaded page with the oldest download time of its parts.
+    private synchronized NewsRepository.Result result(List<News> news) {
+        return new NewsRepository.Result(news, loadedSavedAt, stale);
+    }
+}
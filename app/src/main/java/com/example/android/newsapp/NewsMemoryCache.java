@@ -0,0 +1,128 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory cache of parsed {@link News} lists, shared by every {@link NewsLoader} in the
+ * process. Entries are keyed by the query parameters that change the result and expire after a
+ * fixed time. When the cache holds more articles than its limit, the least recently used lists
+ * are dropped first.
+ */
+final class NewsMemoryCache {
+
+    // The query parameters that decide which articles are returned.
+    static final String[] KEY_PARAMETERS = {"q", "order-by", "page-size", "page", "tag"};
+
+    // Default limit on the number of articles kept, over all the entries.
+    static final int DEFAULT_MAX_ARTICLES = 500;
+
+    // Default time after which an entry expires, counted from when it was downloaded.
+    static final long DEFAULT_TTL_MILLIS = NewsDiskCache.DEFAULT_MAX_AGE_MILLIS;
+
+    private static final NewsMemoryCache INSTANCE =
+            new NewsMemoryCache(DEFAULT_MAX_ARTICLES, DEFAULT_TTL_MILLIS);
+
+    private final int maxArticles;
+    private final long ttlMillis;
+
+    // Entries in least recently used order.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int articleCount = 0;
+
+    /**
+     * Returns the cache shared by the whole app.
+     */
+    static NewsMemoryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cache key for the given request URL.
+     */
+    static String keyFor(String url) {
+        return RequestKeys.forParameters(url, KEY_PARAMETERS);
+    }
+
+    /**
+     * Constructs a new {@link NewsMemoryCache}.
+     *
+     * @param maxArticles is the number of articles kept, over all the entries.
+     * @param ttlMillis   is the time after which an entry expires.
+     */
+    NewsMemoryCache(int maxArticles, long ttlMillis) {
+        this.maxArticles = maxArticles;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the entry for the given key, or null if there is none or it has expired.
+     */
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.savedAt >= ttlMillis) {
+            remove(key);
+            entry = null;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the list of {@link News} downloaded at the given time for the given key.
+     */
+    synchronized void put(String key, List<News> news, long savedAt) {
+        remove(key);
+        Entry entry = new Entry(Collections.unmodifiableList(new ArrayList<>(news)), savedAt);
+        entries.put(key, entry);
+        articleCount += news.size();
+
+        // Drop the least recently used lists, but always keep the one just added.
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (articleCount > maxArticles && entries.size() > 1) {
+            articleCount -= eldest.next().getValue().news.size();
+            eldest.remove();
+        }
+    }
+
+    synchronized void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            articleCount -= entry.news.size();
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        articleCount = 0;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A cached list of {@link News} with the time it was downloaded.
+     */
+    static final class Entry {
+
+        private final List<News> news;
+        private final long savedAt;
+
+        Entry(List<News> news, long savedAt) {
+            this.news = news;
+            this.savedAt = savedAt;
+        }
+
+        List<News> getNews() {
+            return news;
+        }
+
+        long getSavedAt() {
+            return savedAt;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.android.newsapp;
+
+import android.net.Uri;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The properties of an article a screen shows, and the request parameters that ask the
+ * guardian open platform for them and nothing more.
+ * <p>
+ * The search endpoint always sends the base properties of an article: its section, title,
+ * publication date and URL. Anything else must be asked for as a field ("show-fields"), and is
+ * then added to every article of the response. The author could also be asked for as a
+ * contributor tag ("show-tags"), but a tag is a whole profile, with a bio, pictures and links, so
+ * it is read from the "byline" field instead, which is just the name. The fields of all the
+ * properties are batched into one "show-fields" parameter, left out when no property needs it.
+ */
+final class NewsProjection {
+
+    /**
+     * A property of an article, and how the search endpoint is asked for it.
+     */
+    enum Property {
+        SECTION(null),
+        TITLE(null),
+        PUBLICATION_DATE(null),
+        URL(null),
+        AUTHOR("byline"),
+        THUMBNAIL("thumbnail"),
+        // The whole text of the article, tens of kilobytes, only for the reader.
+        BODY("bodyText");
+
+        // The "show-fields" option that adds it, null for a base property.
+        final String field;
+
+        Property(String field) {
+            this.field = field;
+        }
+    }
+
+    /**
+     * Everything a row of the list shows: the text of the article, its thumbnail, and its URL
+     * to open it. The background sync asks for the same, so the list finds its requests in the
+     * caches.
+     */
+    static final NewsProjection LIST = new NewsProjection(
+            EnumSet.complementOf(EnumSet.of(Property.BODY)));
+
+    /**
+     * What the {@link ArticlePrefetcher} downloads for the reader: the text of the articles,
+     * and their URL to tell them apart.
+     */
+    static final NewsProjection BODIES = new NewsProjection(
+            EnumSet.of(Property.URL, Property.BODY));
+
+    private final Set<Property> properties;
+
+    /**
+     * Constructs a new {@link NewsProjection}.
+     *
+     * @param properties are the properties the screen shows.
+     */
+    NewsProjection(Set<Property> properties) {
+        this.properties = Collections.unmodifiableSet(EnumSet.copyOf(properties));
+    }
+
+    Set<Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns the value of the "show-fields" parameter, or null if no field is needed.
+     */
+    String getShowFields() {
+        Set<String> fields = new TreeSet<>();
+        for (Property property : properties) {
+            if (property.field != null) {
+                fields.add(property.field);
+            }
+        }
+        return join(fields);
+    }
+
+    /**
+     * Adds the "show-fields" parameter to the request URL being built.
+     */
+    void appendTo(Uri.Builder uriBuilder) {
+        String fields = getShowFields();
+        if (fields != null) {
+            uriBuilder.appendQueryParameter("show-fields", fields);
+        }
+    }
+
+    // The fields separated by commas, sorted so the same projection always gives the same URL.
+    private static String join(Set<String> fields) {
+        if (fields.isEmpty()) {
+            return null;
+        }
+        StringBuilder joined = new StringBuilder();
+        for (String field : fields) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(field);
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.android.newsapp;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the user asked to see: the followed topics, the order of the articles, and one page of
+ * results. It is used both to build the request URLs and to query the {@link NewsStore}.
+ */
+final class NewsQuery {
+
+    // Values of the "order-by" preference.
+    static final String ORDER_NEWEST = "newest";
+    static final String ORDER_OLDEST = "oldest";
+    static final String ORDER_RELEVANCE = "relevance";
+
+    private final List<String> topics;
+    private final String orderBy;
+    private final int pageSize;
+    private final int page;
+
+    /**
+     * Constructs a new {@link NewsQuery}.
+     *
+     * @param topics   is the list of followed topics, one request per topic.
+     * @param orderBy  is "newest", "oldest" or "relevance".
+     * @param pageSize is the number of articles on one page.
+     * @param page     is the page of results, starting from 1.
+     */
+    NewsQuery(List<String> topics, String orderBy, int pageSize, int page) {
+        this.topics = Collections.unmodifiableList(topics);
+        this.orderBy = orderBy;
+        this.pageSize = pageSize;
+        this.page = page;
+    }
+
+    List<String> getTopics() {
+        return topics;
+    }
+
+    String getOrderBy() {
+        return orderBy;
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    int getPage() {
+        return page;
+    }
+
+    /**
+     * Returns the number of articles on the pages before this one.
+     */
+    int getOffset() {
+        return (page - 1) * pageSize;
+    }
+
+    /**
+     * Returns true if the articles of several topics are merged from the newest to the oldest.
+     */
+    boolean isNewestFirst() {
+        return !ORDER_OLDEST.equals(orderBy);
+    }
+}
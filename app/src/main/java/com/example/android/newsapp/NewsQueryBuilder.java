@@ -0,0 +1,176 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+
+import com.example.android.newsappproject.BuildConfig;
+import com.example.android.newsappproject.R;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper methods that build the guardian open platform request URLs for the topics the user
+ * follows, from the values saved in the preference menu.
+ * <p>
+ * The activity and the background sync both build their URLs here, so the sync downloads exactly
+ * the requests the activity looks up in the caches.
+ */
+final class NewsQueryBuilder {
+
+    //URL for news data from the guardian open platform.
+    private static final String GUARDIAN_REQUEST_URL = "https://content.guardianapis.com/search";
+
+    /**
+     * Please put your API key here.
+     **/
+    private static final String API_KEY = BuildConfig.THE_GUARDIAN_API_KEY;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsQueryBuilder}
+     * object.
+     */
+    private NewsQueryBuilder() {
+    }
+
+    /**
+     * Returns the query for the given page of results, from the values saved in the preference
+     * menu and the page size the {@link FetchPolicy} allows on the current connection.
+     */
+    static NewsQuery buildQuery(Context context, int page) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        // Get the String values for the preference menu.
+        String orderBy = sharedPrefs.getString(context.getString(R.string.settings_order_by_key),
+                context.getString(R.string.settings_order_by_default));
+
+        String articleNumber =
+                sharedPrefs.getString(context.getString(R.string.settings_article_number_key),
+                        context.getString(R.string.settings_article_number_default));
+        int pageSize;
+        try {
+            pageSize = Integer.parseInt(articleNumber);
+        } catch (NumberFormatException e) {
+            pageSize = Integer.parseInt(
+                    context.getString(R.string.settings_article_number_default));
+        }
+
+        // A slow or metered connection gets smaller pages, that arrive sooner.
+        FetchPolicy policy = FetchPolicy.getInstance();
+        policy.setNetworkProfile(NetworkProfile.read(context));
+        pageSize = policy.current().limitPageSize(pageSize);
+
+        String searchContent =
+                sharedPrefs.getString(context.getString(R.string.settings_edit_text_key),
+                        context.getString(R.string.settings_edit_text_default));
+        //If the topic preference is left empty, the default topic is Android.
+        if (searchContent.replaceAll("[ ,]", "").isEmpty()) {
+            searchContent = context.getString(R.string.settings_edit_text_default);
+        }
+
+        /* Several topics can be followed at once by separating them with commas. Every topic
+         * gets its own request, and the loader runs them in parallel.
+         */
+        List<String> topics = new ArrayList<>();
+        for (String topic : searchContent.split(",")) {
+            if (!topic.trim().isEmpty()) {
+                topics.add(topic.trim());
+            }
+        }
+        return new NewsQuery(topics, orderBy, pageSize, page);
+    }
+
+    /**
+     * Returns one request URL per topic of the given query, for the articles of the list.
+     */
+    static List<String> buildUrls(NewsQuery query) {
+        return buildUrls(query, NewsProjection.LIST);
+    }
+
+    /**
+     * Returns one request URL per topic of the given query, that asks only for the properties
+     * of the given projection.
+     */
+    static List<String> buildUrls(NewsQuery query, NewsProjection projection) {
+        List<String> urls = new ArrayList<>();
+        for (String topic : query.getTopics()) {
+            urls.add(buildRequestUrl(topic, query.getOrderBy(), query.getPageSize(),
+                    query.getPage(), null, projection));
+        }
+        return urls;
+    }
+
+    /**
+     * Returns one request URL per topic of the given query, for the articles of the list
+     * published since the given time, from the newest. A topic asks for one page of them at
+     * most.
+     *
+     * @param fromTime is a time like "2020-04-21T10:00:00Z", see {@link NewsDelta#fromTime}.
+     */
+    static List<String> buildNewerUrls(NewsQuery query, String fromTime) {
+        List<String> urls = new ArrayList<>();
+        for (String topic : query.getTopics()) {
+            urls.add(buildRequestUrl(topic, NewsQuery.ORDER_NEWEST, query.getPageSize(), 1,
+                    fromTime, NewsProjection.LIST));
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the request URL for the text of the articles with the given URLs, all in one
+     * response, or null if none of them has an id.
+     */
+    static String buildBodiesUrl(List<String> articleUrls) {
+        StringBuilder ids = new StringBuilder();
+        int count = 0;
+        for (String articleUrl : articleUrls) {
+            String id = ArticleBodyFetcher.articleId(articleUrl);
+            if (id != null) {
+                if (count > 0) {
+                    ids.append(',');
+                }
+                ids.append(id);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        Uri.Builder uriBuilder = Uri.parse(GUARDIAN_REQUEST_URL).buildUpon();
+        uriBuilder.appendQueryParameter("ids", ids.toString());
+        // The default page of 10 would leave some of the articles out.
+        uriBuilder.appendQueryParameter("page-size", String.valueOf(count));
+        NewsProjection.BODIES.appendTo(uriBuilder);
+        uriBuilder.appendQueryParameter("api-key", API_KEY);
+        return uriBuilder.toString();
+    }
+
+    /* Build the request URL for one topic and one page of results, published since the given
+     * time, or at any time if it is null.
+     */
+    private static String buildRequestUrl(String topic, String orderBy, int pageSize,
+                                          int page, String fromTime,
+                                          NewsProjection projection) {
+        // Parse the URL for the news data, to prepare for the URI builder method.
+        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
+
+        // Use the URI builder method to add parameters to the URL.
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+        uriBuilder.appendQueryParameter("q", topic);
+        uriBuilder.appendQueryParameter("tag", "technology/technology");
+        uriBuilder.appendQueryParameter("order-by", orderBy);
+        uriBuilder.appendQueryParameter("page-size", String.valueOf(pageSize));
+        uriBuilder.appendQueryParameter("page", String.valueOf(page));
+        if (fromTime != null) {
+            uriBuilder.appendQueryParameter("from-date", fromTime);
+            uriBuilder.appendQueryParameter("use-date", "published");
+        }
+        // Only the fields and tags of the properties shown, batched in one parameter each.
+        projection.appendTo(uriBuilder);
+        uriBuilder.appendQueryParameter("api-key", API_KEY);
+        return uriBuilder.toString();
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.core.os.CancellationSignal;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Loads the list of {@link News} for one request URL from the memory cache, the disk cache or
+ * the network, in that order, and keeps both caches, the {@link NewsStore} and the
+ * {@link NewsSearchIndex} up to date with what it finds.
+ * <p>
+ * It is shared by the {@link NewsLoader}, which loads the pages on screen, and the
+ * {@link NewsSyncWorker}, which downloads them in the background before the app is opened. Every
+ * method may be called from several threads at once.
+ * <p>
+ * The requests go through a {@link ResilientFetcher}, which retries and hedges them. When one
+ * still fails, or the server keeps failing and the requests aren't even sent, the copy on disk
+ * is served instead, however old it is.
+ */
+final class NewsRepository {
+
+    private static final String LOG_TAG = NewsRepository.class.getSimpleName();
+
+    private static NewsRepository instance;
+
+    private final NewsMemoryCache memoryCache;
+    private final NewsDiskCache diskCache;
+    private final NewsStore store;
+    private final NewsSearchIndex searchIndex;
+    private final ResilientFetcher fetcher;
+
+    // The requests to the server running now, by normalized URL.
+    private final FetchCoordinator<Result> requests = new FetchCoordinator<>(
+            MultiTopicFetcher.newExecutor("news-request", MultiTopicFetcher.MAX_PARALLEL_REQUESTS));
+
+    /**
+     * Returns the repository shared by the whole app.
+     */
+    static synchronized NewsRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new NewsRepository(NewsMemoryCache.getInstance(),
+                    NewsDiskCache.getInstance(context), NewsStore.getInstance(context),
+                    NewsSearchIndex.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Constructs a new {@link NewsRepository}.
+     *
+     * @param memoryCache is the cache of the lists parsed in this process.
+     * @param diskCache   is the cache of the lists saved on disk.
+     * @param store       is where every list is saved for the local queries, or null.
+     * @param searchIndex is where every article is indexed for the local searches.
+     */
+    NewsRepository(NewsMemoryCache memoryCache, NewsDiskCache diskCache, NewsStore store,
+                   NewsSearchIndex searchIndex) {
+        this(memoryCache, diskCache, store, searchIndex,
+                ResilientFetcher.newDefault("news-attempt"));
+    }
+
+    /**
+     * Constructs a new {@link NewsRepository} that sends its requests through the given fetcher.
+     *
+     * @param fetcher retries and hedges the requests, and stops them while the server fails.
+     */
+    NewsRepository(NewsMemoryCache memoryCache, NewsDiskCache diskCache, NewsStore store,
+                   NewsSearchIndex searchIndex, ResilientFetcher fetcher) {
+        this.memoryCache = memoryCache;
+        this.diskCache = diskCache;
+        this.store = store;
+        this.searchIndex = searchIndex;
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Returns the fetcher that sends the requests to the server, so other requests to it share
+     * its circuit breaker.
+     */
+    ResilientFetcher getFetcher() {
+        return fetcher;
+    }
+
+    /**
+     * Returns the list for the given URL, or null if it isn't cached and couldn't be downloaded.
+     *
+     * @param refresh is true to skip the caches and always go to the network. The cached copy is
+     *                still used to send a conditional request.
+     */
+    Result load(final String url, boolean refresh) {
+        final String memoryKey = NewsMemoryCache.keyFor(url);
+        final String diskKey = RequestKeys.normalize(url);
+
+        if (!refresh) {
+            // A list parsed by anyone in this process is the cheapest one to show.
+            NewsMemoryCache.Entry memoryEntry = memoryCache.get(memoryKey);
+            if (memoryEntry != null) {
+                Metrics.count("news.memory.hit");
+                return new Result(memoryEntry.getNews(), memoryEntry.getSavedAt(), false);
+            }
+            Metrics.count("news.memory.miss");
+        }
+
+        // The copy on disk is served next, or sent along with the request to check it is current.
+        final NewsDiskCache.Entry diskEntry = diskCache.get(diskKey);
+        if (!refresh) {
+            // Serve the list saved on disk, and tell the caller if it is stale.
+            if (diskEntry != null) {
+                Metrics.count("news.disk.hit");
+                boolean stale = diskEntry.isStale();
+                if (stale) {
+                    Metrics.count("news.disk.stale");
+                }
+                if (!stale) {
+                    memoryCache.put(memoryKey, diskEntry.getNews(), diskEntry.getSavedAt());
+                }
+                importFromDisk(url, diskEntry);
+                return new Result(diskEntry.getNews(), diskEntry.getSavedAt(), stale);
+            }
+            Metrics.count("news.disk.miss");
+        }
+
+        // Callers asking for the same URL at the same time share one request.
+        try {
+            return requests.fetch(diskKey, new FetchCoordinator.Task<Result>() {
+                @Override
+                public Result run(CancellationSignal signal) {
+                    return loadFromNetwork(url, memoryKey, diskKey, diskEntry, signal);
+                }
+            });
+        } catch (InterruptedException e) {
+            // The caller was cancelled, the request was cancelled as well if nobody else waits.
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            Log.e(LOG_TAG, "Problem loading the news", e);
+            return null;
+        }
+    }
+
+    /* The list on disk may have been saved before the store existed, so it is added to the
+     * store and the search index, but only once: when the store doesn't know its topic yet. A
+     * topic in the store is in the search index too, which is seeded from the store.
+     */
+    private void importFromDisk(String url, NewsDiskCache.Entry diskEntry) {
+        if (store != null) {
+            String topic = RequestKeys.parameter(url, "q");
+            if (topic == null || store.getSyncedAt(Collections.singletonList(topic)) > 0) {
+                return;
+            }
+            store.upsert(url, diskEntry.getNews(), diskEntry.getSavedAt());
+        }
+        searchIndex.addAll(diskEntry.getNews());
+    }
+
+    /* Ask the server for the list, unless it hasn't changed since the copy on disk, read by the
+     * caller. Nothing is saved if the request is cancelled. If the request fails, the copy on
+     * disk is returned.
+     */
+    private Result loadFromNetwork(final String url, String memoryKey, String diskKey,
+                                   final NewsDiskCache.Entry diskEntry,
+                                   CancellationSignal signal) {
+        QueryUtils.NewsResponse response;
+        try {
+            response = fetcher.fetch(new ResilientFetcher.Call<QueryUtils.NewsResponse>() {
+                @Override
+                public QueryUtils.NewsResponse call(CancellationSignal attemptSignal)
+                        throws IOException {
+                    return diskEntry == null
+                            ? QueryUtils.requestNewsData(url, null, null, attemptSignal)
+                            : QueryUtils.requestNewsData(url, diskEntry.getETag(),
+                            diskEntry.getLastModified(), attemptSignal);
+                }
+            }, signal);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Problem loading the news, serving the cached copy", e);
+            return fallback(diskEntry, signal);
+        }
+        if (response == null) {
+            return null;
+        }
+        List<News> result;
+        String eTag = response.getETag();
+        String lastModified = response.getLastModified();
+        if (response.isNotModified() && diskEntry != null) {
+            result = diskEntry.getNews();
+            // A 304 response doesn't have to repeat the validators.
+            if (eTag == null) {
+                eTag = diskEntry.getETag();
+            }
+            if (lastModified == null) {
+                lastModified = diskEntry.getLastModified();
+            }
+        } else {
+            result = response.getNews();
+        }
+        if (result == null) {
+            return fallback(diskEntry, signal);
+        }
+        long now = System.currentTimeMillis();
+        memoryCache.put(memoryKey, result, now);
+        diskCache.put(diskKey, result, eTag, lastModified);
+        if (store != null) {
+            store.upsert(url, result, now);
+        }
+        searchIndex.addAll(result);
+        return new Result(result, now, false);
+    }
+
+    /* The list saved on disk, however old, when the server couldn't give a new one. It keeps its
+     * download time, so it is refreshed again later.
+     */
+    private static Result fallback(NewsDiskCache.Entry diskEntry, CancellationSignal signal) {
+        if (diskEntry == null || signal.isCanceled()) {
+            return null;
+        }
+        Metrics.count("news.fallback");
+        return new Result(diskEntry.getNews(), diskEntry.getSavedAt(), false, true);
+    }
+
+    /**
+     * Downloads the new articles asked for by an incremental request URL (see
+     * {@link NewsQueryBuilder#buildNewerUrls}), and saves them in the store and the search index.
+     * The caches are left alone, because the URL changes with every refresh and the pages of
+     * the list are read from the store. Returns null if the download failed or was cancelled.
+     */
+    List<News> loadNewer(final String url) {
+        QueryUtils.NewsResponse response;
+        try {
+            response = fetcher.fetch(new ResilientFetcher.Call<QueryUtils.NewsResponse>() {
+                @Override
+                public QueryUtils.NewsResponse call(CancellationSignal attemptSignal)
+                        throws IOException {
+                    return QueryUtils.requestNewsData(url, null, null, attemptSignal);
+                }
+            }, null);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Problem loading the new articles", e);
+            return null;
+        }
+        if (response == null || response.getNews() == null) {
+            return null;
+        }
+        List<News> news = response.getNews();
+        Metrics.record("news.delta.articles", news.size());
+        if (store != null) {
+            store.upsert(url, news, System.currentTimeMillis());
+        }
+        searchIndex.addAll(news);
+        return news;
+    }
+
+    /**
+     * Makes sure the caches hold a list for the given URL that is not stale, downloading it only
+     * if needed. Returns the list, or null if it had to be downloaded and that failed.
+     */
+    List<News> sync(String url) {
+        Result result = load(url, false);
+        if (result == null || result.isStale()) {
+            result = load(url, true);
+        }
+        // The cached copy served when the download failed doesn't count as synced.
+        return result == null || result.isFallback() ? null : result.getNews();
+    }
+
+    /**
+     * Returns the articles already on the device that match the topics of the given query,
+     * sorted in its order, up to and including the page it asks for.
+     */
+    List<News> search(NewsQuery query) {
+        // The index starts with the articles saved before this process started.
+        if (!searchIndex.isSeeded() && store != null) {
+            searchIndex.seed(store.all());
+        }
+        return searchIndex.search(query);
+    }
+
+    /**
+     * A list of {@link News} with the time it was downloaded and whether it should be refreshed.
+     */
+    static final class Result {
+
+        private final List<News> news;
+        private final long savedAt;
+        private final boolean stale;
+        private final boolean fallback;
+
+        Result(List<News> news, long savedAt, boolean stale) {
+            this(news, savedAt, stale, false);
+        }
+
+        Result(List<News> news, long savedAt, boolean stale, boolean fallback) {
+            this.news = news;
+            this.savedAt = savedAt;
+            this.stale = stale;
+            this.fallback = fallback;
+        }
+
+        List<News> getNews() {
+            return news;
+        }
+
+        long getSavedAt() {
+            return savedAt;
+        }
+
+        /**
+         * Returns true if the list came from the disk cache and is older than its maximum age.
+         */
+        boolean isStale() {
+            return stale;
+        }
+
+        /**
+         * Returns true if the download failed and the list is the copy saved on disk instead.
+         * It isn't flagged as stale, so it isn't refreshed again right away.
+         */
+        boolean isFallback() {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over the titles, sections and contributors of every downloaded
+ * {@link News}, used to search the articles already on the device before asking the server.
+ * <p>
+ * Articles are added one by one as they are downloaded, and an article added again with the
+ * same URL replaces the old one. A search returns the articles that contain every word of the
+ * query, ranked by how rare the words are and in which field they appear. The last word of a
+ * query also matches the words it starts, so results show up while the user is still typing.
+ * <p>
+ * Like the {@link NewsStore}, the index keeps the {@link NewsStore#MAX_ARTICLES} newest articles
+ * and forgets the older ones, so it doesn't grow for as long as the process lives. Every method
+ * is thread-safe.
+ */
+final class NewsSearchIndex {
+
+    // How much a word counts depending on where it appears.
+    static final int TITLE_WEIGHT = 3;
+    static final int CONTRIBUTOR_WEIGHT = 2;
+    static final int SECTION_WEIGHT = 1;
+
+    private static final NewsSearchIndex INSTANCE = new NewsSearchIndex();
+
+    // The number of articles kept, the oldest ones are removed beyond it.
+    private final int maxArticles;
+
+    // Every article ever added, by document id. Replaced and removed articles are set to null.
+    private final List<News> documents = new ArrayList<>();
+    private final Map<String, Integer> idsByUrl = new HashMap<>();
+    private int replacedCount = 0;
+
+    // The documents of every word, sorted so prefixes can be looked up.
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+
+    // Set once the articles saved before this process started have been added.
+    private boolean seeded = false;
+
+    /**
+     * Returns the index shared by the whole app.
+     */
+    static NewsSearchIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Constructs a new {@link NewsSearchIndex} that keeps as many articles as the store.
+     */
+    NewsSearchIndex() {
+        this(NewsStore.MAX_ARTICLES);
+    }
+
+    /**
+     * Constructs a new {@link NewsSearchIndex}.
+     *
+     * @param maxArticles is the number of articles kept, the oldest ones are removed beyond it.
+     */
+    NewsSearchIndex(int maxArticles) {
+        this.maxArticles = maxArticles;
+    }
+
+    /**
+     * Adds the given article, replacing the one with the same URL if there is one.
+     */
+    synchronized void add(News news) {
+        put(news);
+        removeOldest();
+    }
+
+    // Add the article without looking at the limit.
+    private void put(News news) {
+        Integer oldId = idsByUrl.get(news.getUrl());
+        if (oldId != null) {
+            News old = documents.get(oldId);
+            if (sameText(old, news)) {
+                // Nothing to index again, just keep the newest copy.
+                documents.set(oldId, news);
+                return;
+            }
+            documents.set(oldId, null);
+            replacedCount++;
+        }
+        int id = documents.size();
+        documents.add(news);
+        idsByUrl.put(news.getUrl(), id);
+        index(id, news);
+
+        // Rebuild once most of the postings point to replaced articles.
+        if (replacedCount > documents.size() / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Adds every article of the given list.
+     */
+    synchronized void addAll(Collection<News> news) {
+        for (News item : news) {
+            put(item);
+        }
+        removeOldest();
+    }
+
+    /**
+     * Returns true once the articles saved before this process started have been added.
+     */
+    synchronized boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Adds the articles saved before this process started. Articles already in the index are
+     * newer, so they are kept.
+     */
+    synchronized void seed(Collection<News> news) {
+        for (News item : news) {
+            if (!idsByUrl.containsKey(item.getUrl())) {
+                put(item);
+            }
+        }
+        removeOldest();
+        seeded = true;
+    }
+
+    /**
+     * Returns the number of articles in the index.
+     */
+    synchronized int size() {
+        return idsByUrl.size();
+    }
+
+    /**
+     * Returns the articles matching the given query, the best match first. Articles that match
+     * equally well are sorted from the newest to the oldest.
+     *
+     * @param limit is the number of articles returned at most.
+     */
+    List<Hit> search(String query, int limit) {
+        return search(query, BEST_FIRST, limit);
+    }
+
+    /**
+     * Returns the articles matching any of the topics of the given query, sorted in its order,
+     * up to and including the page it asks for.
+     */
+    List<News> search(NewsQuery query) {
+        Comparator<Hit> order;
+        if (NewsQuery.ORDER_RELEVANCE.equals(query.getOrderBy())) {
+            order = BEST_FIRST;
+        } else {
+            order = query.isNewestFirst() ? NEWEST_FIRST : Collections.reverseOrder(NEWEST_FIRST);
+        }
+        int limit = query.getOffset() + query.getPageSize();
+
+        // An article found for several topics keeps its best score.
+        Map<String, Hit> byUrl = new LinkedHashMap<>();
+        for (String topic : query.getTopics()) {
+            for (Hit hit : search(topic, order, limit)) {
+                Hit found = byUrl.get(hit.news.getUrl());
+                if (found == null || found.score < hit.score) {
+                    byUrl.put(hit.news.getUrl(), hit);
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(byUrl.values());
+        Collections.sort(hits, order);
+        List<News> news = new ArrayList<>(Math.min(hits.size(), limit));
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            news.add(hits.get(i).news);
+        }
+        return news;
+    }
+
+    // Returns the first articles matching the query in the given order, at most limit of them.
+    private synchronized List<Hit> search(String query, Comparator<Hit> order, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        // The last word is still being typed unless it is followed by a space.
+        boolean lastIsPrefix = !Character.isWhitespace(query.charAt(query.length() - 1));
+
+        List<Matches> allMatches = new ArrayList<>(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            Matches matches = i == words.size() - 1 && lastIsPrefix
+                    ? prefixMatches(words.get(i)) : exactMatches(words.get(i));
+            if (matches.size == 0) {
+                return Collections.emptyList();
+            }
+            allMatches.add(matches);
+        }
+
+        // Start from the rarest word, so the other ones only need to be looked up.
+        Collections.sort(allMatches, new Comparator<Matches>() {
+            @Override
+            public int compare(Matches first, Matches second) {
+                return first.size < second.size ? -1 : (first.size == second.size ? 0 : 1);
+            }
+        });
+        Matches rarest = allMatches.get(0);
+        double liveCount = idsByUrl.size();
+
+        // Keep the best hits in a heap whose head is the worst of them.
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(limit, 64) + 1,
+                Collections.reverseOrder(order));
+        for (int i = 0; i < rarest.size; i++) {
+            int id = rarest.ids[i];
+            if (documents.get(id) == null) {
+                continue;
+            }
+            double score = 0;
+            boolean all = true;
+            for (Matches matches : allMatches) {
+                int position = Arrays.binarySearch(matches.ids, 0, matches.size, id);
+                if (position < 0) {
+                    all = false;
+                    break;
+                }
+                score += matches.weights[position] * Math.log(1 + liveCount / matches.size);
+            }
+            if (all) {
+                best.add(new Hit(documents.get(id), score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        Collections.sort(hits, order);
+        return hits;
+    }
+
+    /**
+     * Returns the lower case words of the given text. Anything that isn't a letter or a digit
+     * separates two words.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // Add the words of one article to the postings.
+    private void index(int id, News news) {
+        Map<String, Integer> weights = new HashMap<>();
+        addWords(weights, news.getTitle(), TITLE_WEIGHT);
+        addWords(weights, news.getAuthor(), CONTRIBUTOR_WEIGHT);
+        addWords(weights, news.getSection(), SECTION_WEIGHT);
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            Postings wordPostings = postings.get(entry.getKey());
+            if (wordPostings == null) {
+                wordPostings = new Postings();
+                postings.put(entry.getKey(), wordPostings);
+            }
+            wordPostings.add(id, entry.getValue());
+        }
+    }
+
+    private static void addWords(Map<String, Integer> weights, String text, int weight) {
+        for (String word : tokenize(text)) {
+            Integer total = weights.get(word);
+            weights.put(word, total == null ? weight : total + weight);
+        }
+    }
+
+    // Remove the oldest articles beyond the limit, the way the store deletes them.
+    private void removeOldest() {
+        int excess = idsByUrl.size() - maxArticles;
+        if (excess <= 0) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(idsByUrl.values());
+        Collections.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                long firstTime = documents.get(first).getTimeInMillis();
+                long secondTime = documents.get(second).getTimeInMillis();
+                return firstTime < secondTime ? -1 : (firstTime == secondTime ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < excess; i++) {
+            int id = ids.get(i);
+            idsByUrl.remove(documents.get(id).getUrl());
+            documents.set(id, null);
+            replacedCount++;
+        }
+        if (replacedCount > documents.size() / 2) {
+            compact();
+        }
+    }
+
+    // Build the index again from the articles that were not replaced.
+    private void compact() {
+        List<News> live = new ArrayList<>(idsByUrl.size());
+        for (News news : documents) {
+            if (news != null) {
+                live.add(news);
+            }
+        }
+        documents.clear();
+        idsByUrl.clear();
+        postings.clear();
+        replacedCount = 0;
+        for (News news : live) {
+            int id = documents.size();
+            documents.add(news);
+            idsByUrl.put(news.getUrl(), id);
+            index(id, news);
+        }
+    }
+
+    private Matches exactMatches(String word) {
+        Postings wordPostings = postings.get(word);
+        if (wordPostings == null) {
+            return new Matches(new int[0], new int[0], 0);
+        }
+        return new Matches(wordPostings.ids, wordPostings.weights, wordPostings.size);
+    }
+
+    // Returns the documents of every word starting with the given prefix, adding up the weights.
+    private Matches prefixMatches(String prefix) {
+        SortedMap<String, Postings> words = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (words.size() == 1) {
+            return exactMatches(words.firstKey());
+        }
+        // Add up the weights by document id, then keep the documents that have one.
+        int[] weights = new int[documents.size()];
+        int count = 0;
+        for (Postings wordPostings : words.values()) {
+            for (int i = 0; i < wordPostings.size; i++) {
+                if (weights[wordPostings.ids[i]] == 0) {
+                    count++;
+                }
+                weights[wordPostings.ids[i]] += wordPostings.weights[i];
+            }
+        }
+        int[] ids = new int[count];
+        int[] idWeights = new int[count];
+        int i = 0;
+        for (int id = 0; id < weights.length; id++) {
+            if (weights[id] > 0) {
+                ids[i] = id;
+                idWeights[i] = weights[id];
+                i++;
+            }
+        }
+        return new Matches(ids, idWeights, ids.length);
+    }
+
+    private static boolean sameText(News first, News second) {
+        return first != null && first.getTitle().equals(second.getTitle())
+                && first.getSection().equals(second.getSection())
+                && first.getAuthor().equals(second.getAuthor());
+    }
+
+    private static final Comparator<Hit> NEWEST_FIRST = new Comparator<Hit>() {
+        @Override
+        public int compare(Hit first, Hit second) {
+            long firstTime = first.news.getTimeInMillis();
+            long secondTime = second.news.getTimeInMillis();
+            return firstTime > secondTime ? -1 : (firstTime == secondTime ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<Hit> BEST_FIRST = new Comparator<Hit>() {
+        @Override
+        public int compare(Hit first, Hit second) {
+            int byScore = Double.compare(second.score, first.score);
+            return byScore != 0 ? byScore : NEWEST_FIRST.compare(first, second);
+        }
+    };
+
+    /**
+     * An article found by a search, with its score.
+     */
+    static final class Hit {
+
+        private final News news;
+        private final double score;
+
+        Hit(News news, double score) {
+            this.news = news;
+            this.score = score;
+        }
+
+        News getNews() {
+            return news;
+        }
+
+        double getScore() {
+            return score;
+        }
+    }
+
+    // The growing list of the documents containing one word, in increasing id order.
+    private static final class Postings {
+        int[] ids = new int[4];
+        int[] weights = new int[4];
+        int size = 0;
+
+        void add(int id, int weight) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            ids[size] = id;
+            weights[size] = weight;
+            size++;
+        }
+    }
+
+    // The documents matching one word of a query, in increasing id order, with their weights.
+    private static final class Matches {
+        final int[] ids;
+        final int[] weights;
+        final int size;
+
+        Matches(int[] ids, int[] weights, int size) {
+            this.ids = ids;
+            this.weights = weights;
+            this.size = size;
+        }
+    }
+}
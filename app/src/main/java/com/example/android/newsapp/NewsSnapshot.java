@@ -0,0 +1,299 @@
+package com.example.android.newsapp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of {@link News} saved in a compact binary file, so the list on screen can be shown
+ * again right away after the process was killed, without a request or a database query.
+ * <p>
+ * The file starts with a magic number, the format version and the length of the rest of the
+ * file, so a file from another version or one cut short is rejected instead of misread. Every
+ * number is a variable-length integer and every string is length-prefixed UTF-8. Sections and
+ * contributors repeat a lot, so they are written once in a string table and the articles refer
+ * to them by index, which also makes the articles of a snapshot share the same strings.
+ * <p>
+ * A snapshot is read through a memory-mapped file, so reading it doesn't copy the file first.
+ */
+final class NewsSnapshot {
+
+    // "NWSS", so a file that isn't a snapshot is rejected right away.
+    private static final int MAGIC = 0x4E575353;
+
+    // Changed whenever the layout changes, so old files are ignored.
+    static final int FORMAT_VERSION = 1;
+
+    // Magic number, version and payload length.
+    private static final int HEADER_BYTES = 12;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String key;
+    private final long savedAt;
+    private final List<News> news;
+
+    /**
+     * Constructs a new {@link NewsSnapshot}.
+     *
+     * @param key     identifies what the list is, for example the query it answers.
+     * @param savedAt is when the list was downloaded.
+     * @param news    is the list to save.
+     */
+    NewsSnapshot(String key, long savedAt, List<News> news) {
+        this.key = key;
+        this.savedAt = savedAt;
+        this.news = news;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    long getSavedAt() {
+        return savedAt;
+    }
+
+    List<News> getNews() {
+        return news;
+    }
+
+    /**
+     * Writes the snapshot to the given file, replacing it in one step so a reader never sees a
+     * half written file. Several threads may write the same file at once, the last one renamed
+     * wins.
+     */
+    void write(File file) throws IOException {
+        byte[] bytes = encode();
+        // Every writer has its own temporary file, next to the file so it can be renamed.
+        File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Problem renaming " + tempFile);
+        }
+    }
+
+    /**
+     * Reads the snapshot saved in the given file through a memory-mapped buffer.
+     *
+     * @throws IOException if the file can't be read, is from another version or is damaged.
+     */
+    static NewsSnapshot read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the file is closed.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            return decode(buffer);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Returns the snapshot in its binary form.
+     */
+    byte[] encode() {
+        // Give every distinct section and contributor an index in the string table.
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        for (News item : news) {
+            addToTable(item.getSection(), indexes, table);
+            addToTable(item.getAuthor(), indexes, table);
+        }
+
+        Output payload = new Output(64 + news.size() * 160);
+        payload.writeVarLong(savedAt);
+        payload.writeString(key);
+        payload.writeVarInt(table.size());
+        for (String value : table) {
+            payload.writeString(value);
+        }
+        payload.writeVarInt(news.size());
+        for (News item : news) {
+            payload.writeVarInt(indexes.get(item.getSection()));
+            payload.writeVarInt(indexes.get(item.getAuthor()));
+            payload.writeString(item.getTitle());
+            payload.writeString(item.getTime());
+            payload.writeString(item.getUrl());
+            payload.writeString(item.getThumbnail());
+        }
+
+        ByteBuffer snapshot = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        snapshot.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(payload.length);
+        snapshot.put(payload.bytes, 0, payload.length);
+        return snapshot.array();
+    }
+
+    /**
+     * Reads a snapshot from its binary form, starting at the position of the buffer.
+     *
+     * @throws IOException if the snapshot is from another version or is damaged.
+     */
+    static NewsSnapshot decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a news snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            int length = buffer.getInt();
+            if (length != buffer.remaining()) {
+                throw new IOException("Snapshot is " + buffer.remaining() + " bytes instead of "
+                        + length);
+            }
+
+            Input in = new Input(buffer);
+            long savedAt = in.readVarLong();
+            String key = in.readString();
+            String[] table = new String[in.readCount()];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = in.readString();
+            }
+            int count = in.readCount();
+            List<News> news = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String section = table[in.readVarInt()];
+                String author = table[in.readVarInt()];
+                news.add(new News(section, in.readString(), in.readString(), author,
+                        in.readString(), in.readString()));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Unexpected bytes at the end of the snapshot");
+            }
+            return new NewsSnapshot(key, savedAt, news);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Damaged snapshot", e);
+        }
+    }
+
+    private static void addToTable(String value, Map<String, Integer> indexes,
+                                   List<String> table) {
+        if (!indexes.containsKey(value)) {
+            indexes.put(value, table.size());
+            table.add(value);
+        }
+    }
+
+    // A growable byte array with the writers of the snapshot format.
+    private static final class Output {
+        byte[] bytes;
+        int length;
+
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        // Seven bits per byte, the high bit is set on every byte but the last.
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        // The length is written plus one, so 0 stands for a null string.
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(UTF_8);
+            writeVarInt(utf8.length + 1);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+
+    // The readers of the snapshot format, on top of a (possibly mapped) buffer.
+    private static final class Input {
+        final ByteBuffer buffer;
+
+        // Reused for every string, so only the String itself is allocated.
+        byte[] scratch = new byte[256];
+
+        Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed number in the snapshot");
+        }
+
+        int readVarInt() throws IOException {
+            long value = readVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Number too large in the snapshot");
+            }
+            return (int) value;
+        }
+
+        // A count can't be larger than the bytes left, which protects the allocations.
+        int readCount() throws IOException {
+            int count = readVarInt();
+            if (count > buffer.remaining()) {
+                throw new IOException("Count larger than the snapshot");
+            }
+            return count;
+        }
+
+        String readString() throws IOException {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > buffer.remaining()) {
+                throw new IOException("String longer than the snapshot");
+            }
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, UTF_8);
+        }
+    }
+}
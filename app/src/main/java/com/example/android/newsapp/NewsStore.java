@@ -0,0 +1,414 @@
+package com.example.android.newsapp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import com.example.android.newsapp.NewsDbHelper.ArticleEntry;
+import com.example.android.newsapp.NewsDbHelper.ContributorEntry;
+import com.example.android.newsapp.NewsDbHelper.TopicArticleEntry;
+import com.example.android.newsapp.NewsDbHelper.TopicEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local SQLite store of every article downloaded for the followed topics.
+ * <p>
+ * The network path upserts what the server returns, and the list on screen is read back with a
+ * local query. Sorting and paging run on the indexes of the store, so changing only the order of
+ * the articles doesn't need a new request. Every method may be called from several threads at
+ * once, and a database error is logged and treated like an empty store.
+ */
+final class NewsStore {
+
+    private static final String LOG_TAG = NewsStore.class.getSimpleName();
+
+    // The oldest articles are deleted when the store holds more than this.
+    static final int MAX_ARTICLES = 2000;
+
+    private static NewsStore instance;
+
+    private final NewsDbHelper dbHelper;
+
+    /**
+     * Returns the store shared by the whole app.
+     */
+    static synchronized NewsStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new NewsStore(new NewsDbHelper(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    /**
+     * Constructs a new {@link NewsStore}.
+     *
+     * @param dbHelper opens the database.
+     */
+    NewsStore(NewsDbHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Saves the list the server returned for the given request URL. The topic, the order and
+     * the page of the results are read from the URL.
+     *
+     * @param savedAt is the time at which the list was downloaded.
+     */
+    void upsert(String url, List<News> news, long savedAt) {
+        String topic = RequestKeys.parameter(url, "q");
+        if (topic == null || news == null) {
+            return;
+        }
+        boolean relevance =
+                NewsQuery.ORDER_RELEVANCE.equals(RequestKeys.parameter(url, "order-by"));
+        int offset = 0;
+        try {
+            int page = Integer.parseInt(RequestKeys.parameter(url, "page"));
+            int pageSize = Integer.parseInt(RequestKeys.parameter(url, "page-size"));
+            offset = (page - 1) * pageSize;
+        } catch (NumberFormatException e) {
+            // The first page is the default.
+        }
+        upsert(topic, news, relevance, offset, savedAt);
+    }
+
+    /**
+     * Saves one page of articles of a topic.
+     *
+     * @param relevance is true if the articles are sorted by relevance, so their position is
+     *                  their rank.
+     * @param offset    is the number of articles on the pages before this one.
+     * @param savedAt   is the time at which the list was downloaded.
+     */
+    void upsert(String topic, List<News> news, boolean relevance, int offset, long savedAt) {
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                long topicId = upsertTopic(db, topic, savedAt);
+                if (relevance) {
+                    // The ranks of this page are replaced by the new ones.
+                    ContentValues noRank = new ContentValues();
+                    noRank.putNull(TopicArticleEntry.COLUMN_RELEVANCE);
+                    db.update(TopicArticleEntry.TABLE_NAME, noRank,
+                            TopicArticleEntry.COLUMN_TOPIC_ID + " = ? AND "
+                                    + TopicArticleEntry.COLUMN_RELEVANCE + " >= ? AND "
+                                    + TopicArticleEntry.COLUMN_RELEVANCE + " < ?",
+                            new String[]{String.valueOf(topicId), String.valueOf(offset),
+                                    String.valueOf(offset + news.size())});
+                }
+
+                Map<String, Long> contributorIds = new HashMap<>();
+                for (int i = 0; i < news.size(); i++) {
+                    long articleId = upsertArticle(db, news.get(i), contributorIds);
+
+                    ContentValues link = new ContentValues();
+                    link.put(TopicArticleEntry.COLUMN_TOPIC_ID, topicId);
+                    link.put(TopicArticleEntry.COLUMN_ARTICLE_ID, articleId);
+                    db.insertWithOnConflict(TopicArticleEntry.TABLE_NAME, null, link,
+                            SQLiteDatabase.CONFLICT_IGNORE);
+                    if (relevance) {
+                        ContentValues rank = new ContentValues();
+                        rank.put(TopicArticleEntry.COLUMN_RELEVANCE, offset + i);
+                        db.update(TopicArticleEntry.TABLE_NAME, rank,
+                                TopicArticleEntry.COLUMN_TOPIC_ID + " = ? AND "
+                                        + TopicArticleEntry.COLUMN_ARTICLE_ID + " = ?",
+                                new String[]{String.valueOf(topicId), String.valueOf(articleId)});
+                    }
+                }
+                deleteOldest(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem saving the news for " + topic, e);
+        }
+    }
+
+    /**
+     * Returns the page of articles asked for by the query, sorted by the store.
+     */
+    List<News> query(NewsQuery query) {
+        List<News> news = new ArrayList<>();
+        Cursor cursor = null;
+        long start = Metrics.begin("store.query");
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            String topicIds = topicIds(db, query.getTopics());
+            if (topicIds.isEmpty()) {
+                return news;
+            }
+            String inTopics = " FROM " + TopicArticleEntry.TABLE_NAME + " t WHERE t."
+                    + TopicArticleEntry.COLUMN_ARTICLE_ID + " = a." + ArticleEntry._ID
+                    + " AND t." + TopicArticleEntry.COLUMN_TOPIC_ID + " IN (" + topicIds + ")";
+
+            // The rank is only looked up when sorting by relevance.
+            String rank = "NULL";
+            String orderBy;
+            if (NewsQuery.ORDER_RELEVANCE.equals(query.getOrderBy())) {
+                rank = "(SELECT MIN(t." + TopicArticleEntry.COLUMN_RELEVANCE + ")" + inTopics + ")";
+                // Articles that were never ranked come after the ranked ones, newest first.
+                orderBy = "rank IS NULL, rank, a." + ArticleEntry.COLUMN_PUBLISHED_AT + " DESC";
+            } else if (query.isNewestFirst()) {
+                orderBy = "a." + ArticleEntry.COLUMN_PUBLISHED_AT + " DESC";
+            } else {
+                orderBy = "a." + ArticleEntry.COLUMN_PUBLISHED_AT;
+            }
+
+            String sql = "SELECT a." + ArticleEntry.COLUMN_SECTION
+                    + ", a." + ArticleEntry.COLUMN_TITLE
+                    + ", a." + ArticleEntry.COLUMN_PUBLISHED
+                    + ", c." + ContributorEntry.COLUMN_NAME
+                    + ", a." + ArticleEntry.COLUMN_URL
+                    + ", a." + ArticleEntry.COLUMN_THUMBNAIL
+                    + ", " + rank + " AS rank"
+                    + " FROM " + ArticleEntry.TABLE_NAME + " a"
+                    + " LEFT JOIN " + ContributorEntry.TABLE_NAME + " c ON c."
+                    + ContributorEntry._ID + " = a." + ArticleEntry.COLUMN_CONTRIBUTOR_ID
+                    + " WHERE EXISTS (SELECT 1" + inTopics + ")"
+                    + " ORDER BY " + orderBy + ", a." + ArticleEntry._ID
+                    + " LIMIT " + query.getPageSize() + " OFFSET " + query.getOffset();
+            cursor = db.rawQuery(sql, null);
+            while (cursor.moveToNext()) {
+                news.add(readNews(cursor));
+            }
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem reading the news from the store", e);
+            news.clear();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            Metrics.end("store.query", start);
+        }
+        return news;
+    }
+
+    /**
+     * Returns every article in the store, from the newest to the oldest.
+     */
+    List<News> all() {
+        List<News> news = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            cursor = db.rawQuery("SELECT a." + ArticleEntry.COLUMN_SECTION
+                    + ", a." + ArticleEntry.COLUMN_TITLE
+                    + ", a." + ArticleEntry.COLUMN_PUBLISHED
+                    + ", c." + ContributorEntry.COLUMN_NAME
+                    + ", a." + ArticleEntry.COLUMN_URL
+                    + ", a." + ArticleEntry.COLUMN_THUMBNAIL
+                    + " FROM " + ArticleEntry.TABLE_NAME + " a"
+                    + " LEFT JOIN " + ContributorEntry.TABLE_NAME + " c ON c."
+                    + ContributorEntry._ID + " = a." + ArticleEntry.COLUMN_CONTRIBUTOR_ID
+                    + " ORDER BY a." + ArticleEntry.COLUMN_PUBLISHED_AT + " DESC", null);
+            while (cursor.moveToNext()) {
+                news.add(readNews(cursor));
+            }
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem reading the news from the store", e);
+            news.clear();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return news;
+    }
+
+    /**
+     * Returns the time at which the least recently downloaded of the given topics was
+     * downloaded, or 0 if one of them never was.
+     */
+    long getSyncedAt(List<String> topics) {
+        Set<String> names = normalizedTopics(topics);
+        if (names.isEmpty()) {
+            return 0;
+        }
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            cursor = db.query(TopicEntry.TABLE_NAME, new String[]{TopicEntry.COLUMN_SYNCED_AT},
+                    TopicEntry.COLUMN_NAME + " IN (" + placeholders(names.size()) + ")",
+                    names.toArray(new String[names.size()]), null, null, null);
+            if (cursor.getCount() < names.size()) {
+                return 0;
+            }
+            long syncedAt = Long.MAX_VALUE;
+            while (cursor.moveToNext()) {
+                syncedAt = Math.min(syncedAt, cursor.getLong(0));
+            }
+            return syncedAt;
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem reading the topics from the store", e);
+            return 0;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /* Returns the article at the cursor: section, title, publication date, contributor, URL and
+     * thumbnail.
+     */
+    private static News readNews(Cursor cursor) {
+        String author = cursor.isNull(3) ? "" : cursor.getString(3);
+        return new News(cursor.getString(0), cursor.getString(1), cursor.getString(2), author,
+                cursor.getString(4), cursor.getString(5));
+    }
+
+    // Returns the id of the topic, creating it if needed, and records when it was downloaded.
+    private static long upsertTopic(SQLiteDatabase db, String topic, long savedAt) {
+        String name = normalizedTopic(topic);
+        long id = findId(db, TopicEntry.TABLE_NAME, TopicEntry.COLUMN_NAME, name);
+        if (id < 0) {
+            ContentValues values = new ContentValues();
+            values.put(TopicEntry.COLUMN_NAME, name);
+            values.put(TopicEntry.COLUMN_SYNCED_AT, savedAt);
+            return db.insertOrThrow(TopicEntry.TABLE_NAME, null, values);
+        }
+        // An older copy from the disk cache doesn't make the topic look older than it is.
+        db.execSQL("UPDATE " + TopicEntry.TABLE_NAME + " SET " + TopicEntry.COLUMN_SYNCED_AT
+                + " = MAX(" + TopicEntry.COLUMN_SYNCED_AT + ", ?) WHERE " + TopicEntry._ID
+                + " = ?", new Object[]{savedAt, id});
+        return id;
+    }
+
+    // Returns the id of the article, inserting or updating it by its URL.
+    private static long upsertArticle(SQLiteDatabase db, News news,
+                                      Map<String, Long> contributorIds) {
+        ContentValues values = new ContentValues();
+        values.put(ArticleEntry.COLUMN_URL, news.getUrl());
+        values.put(ArticleEntry.COLUMN_TITLE, news.getTitle());
+        values.put(ArticleEntry.COLUMN_SECTION, news.getSection());
+        values.put(ArticleEntry.COLUMN_PUBLISHED, news.getTime());
+        values.put(ArticleEntry.COLUMN_PUBLISHED_AT, news.getTimeInMillis());
+        values.put(ArticleEntry.COLUMN_THUMBNAIL, news.getThumbnail());
+        Long contributorId = contributorId(db, news.getAuthor(), contributorIds);
+        if (contributorId == null) {
+            values.putNull(ArticleEntry.COLUMN_CONTRIBUTOR_ID);
+        } else {
+            values.put(ArticleEntry.COLUMN_CONTRIBUTOR_ID, contributorId);
+        }
+
+        long id = findId(db, ArticleEntry.TABLE_NAME, ArticleEntry.COLUMN_URL, news.getUrl());
+        if (id < 0) {
+            return db.insertOrThrow(ArticleEntry.TABLE_NAME, null, values);
+        }
+        db.update(ArticleEntry.TABLE_NAME, values, ArticleEntry._ID + " = ?",
+                new String[]{String.valueOf(id)});
+        return id;
+    }
+
+    // Returns the id of the contributor, creating it if needed, or null if there is none.
+    private static Long contributorId(SQLiteDatabase db, String name, Map<String, Long> ids) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        Long id = ids.get(name);
+        if (id == null) {
+            long found = findId(db, ContributorEntry.TABLE_NAME, ContributorEntry.COLUMN_NAME,
+                    name);
+            if (found < 0) {
+                ContentValues values = new ContentValues();
+                values.put(ContributorEntry.COLUMN_NAME, name);
+                found = db.insertOrThrow(ContributorEntry.TABLE_NAME, null, values);
+            }
+            id = found;
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    // Delete the oldest articles over the limit, then the contributors nobody refers to anymore.
+    private static void deleteOldest(SQLiteDatabase db) {
+        SQLiteStatement delete = db.compileStatement("DELETE FROM " + ArticleEntry.TABLE_NAME
+                + " WHERE " + ArticleEntry._ID + " IN (SELECT " + ArticleEntry._ID + " FROM "
+                + ArticleEntry.TABLE_NAME + " ORDER BY " + ArticleEntry.COLUMN_PUBLISHED_AT
+                + " DESC LIMIT -1 OFFSET " + MAX_ARTICLES + ")");
+        try {
+            if (delete.executeUpdateDelete() > 0) {
+                db.execSQL("DELETE FROM " + ContributorEntry.TABLE_NAME + " WHERE "
+                        + ContributorEntry._ID + " NOT IN (SELECT "
+                        + ArticleEntry.COLUMN_CONTRIBUTOR_ID + " FROM " + ArticleEntry.TABLE_NAME
+                        + " WHERE " + ArticleEntry.COLUMN_CONTRIBUTOR_ID + " IS NOT NULL)");
+            }
+        } finally {
+            delete.close();
+        }
+    }
+
+    // Returns the ids of the given topics that are in the store, separated by commas.
+    private static String topicIds(SQLiteDatabase db, List<String> topics) {
+        Set<String> names = normalizedTopics(topics);
+        if (names.isEmpty()) {
+            return "";
+        }
+        StringBuilder ids = new StringBuilder();
+        Cursor cursor = db.query(TopicEntry.TABLE_NAME, new String[]{TopicEntry._ID},
+                TopicEntry.COLUMN_NAME + " IN (" + placeholders(names.size()) + ")",
+                names.toArray(new String[names.size()]), null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                if (ids.length() > 0) {
+                    ids.append(',');
+                }
+                ids.append(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids.toString();
+    }
+
+    // Returns the id of the row whose column has the given value, or -1 if there is none.
+    private static long findId(SQLiteDatabase db, String table, String column, String value) {
+        Cursor cursor = db.query(table, new String[]{BaseColumns._ID}, column + " = ?",
+                new String[]{value}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Topics are searched without regard to case, so "Android" and "android" are the same.
+    private static String normalizedTopic(String topic) {
+        return topic.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> normalizedTopics(List<String> topics) {
+        if (topics == null) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String topic : topics) {
+            names.add(normalizedTopic(topic));
+        }
+        return names;
+    }
+
+    // Returns "?, ?, ?" with the given number of placeholders.
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+}
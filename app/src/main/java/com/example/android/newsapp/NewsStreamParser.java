@@ -0,0 +1,184 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Pull-based decoder for the guardian open platform search response.
+ * <p>
+ * Instead of reading the whole response into memory and building a JSON tree, the parser walks
+ * the stream token by token and hands out one {@link News} object every time an element of the
+ * "results" array ends. Every field that the app doesn't display is skipped without being built.
+ */
+final class NewsStreamParser {
+
+    private final JsonStreamReader reader;
+
+    // True once the reader is positioned inside the "results" array.
+    private boolean inResults = false;
+
+    // True once the "results" array has been read to the end (or was never found).
+    private boolean finished = false;
+
+    // True if the stream didn't contain any JSON at all.
+    private boolean empty = false;
+
+    /**
+     * Constructs a new {@link NewsStreamParser}.
+     *
+     * @param inputStream is the raw (UTF-8) JSON response, usually straight from the connection.
+     */
+    NewsStreamParser(InputStream inputStream) {
+        reader = new JsonStreamReader(new InputStreamReader(inputStream,
+                Charset.forName("UTF-8")));
+    }
+
+    /**
+     * Returns the next {@link News} object in the response, or null when there are no more.
+     *
+     * @throws JsonStreamReader.MalformedJsonException if the JSON is malformed or an article is
+     *                                                 missing one of the required fields.
+     * @throws IOException                              if the stream can't be read.
+     */
+    News next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (!inResults) {
+            if (reader.peek() == JsonStreamReader.Token.END_DOCUMENT) {
+                empty = true;
+                finished = true;
+                return null;
+            }
+            if (!moveToResults()) {
+                finished = true;
+                return null;
+            }
+        }
+        if (!reader.hasNext()) {
+            reader.endArray();
+            finished = true;
+            return null;
+        }
+        return readNews();
+    }
+
+    /**
+     * Returns true if the stream ended before any JSON was read.
+     */
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Moves the reader to the first element of response.results. Returns false if the response
+     * doesn't contain a results array.
+     */
+    private boolean moveToResults() throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("response")
+                    && reader.peek() == JsonStreamReader.Token.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("results")
+                            && reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        inResults = true;
+                        return true;
+                    }
+                    reader.skipValue();
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        return false;
+    }
+
+    // Reads one element of the results array.
+    private News readNews() throws IOException {
+        String section = null;
+        String title = null;
+        String time = null;
+        String author = null;
+        String url = null;
+        String thumbnail = null;
+        String byline = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("sectionName")) {
+                section = reader.nextString();
+            } else if (name.equals("webTitle")) {
+                title = reader.nextString();
+            } else if (name.equals("webPublicationDate")) {
+                time = reader.nextString();
+            } else if (name.equals("webUrl")) {
+                url = reader.nextString();
+            } else if (name.equals("tags")) {
+                author = readFirstTagTitle();
+            } else if (name.equals("fields")
+                    && reader.peek() == JsonStreamReader.Token.BEGIN_OBJECT) {
+                // Only the fields the list shows are asked for, but skip any other.
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (reader.peek() != JsonStreamReader.Token.STRING) {
+                        reader.skipValue();
+                    } else if (field.equals("thumbnail")) {
+                        thumbnail = reader.nextString();
+                    } else if (field.equals("byline")) {
+                        byline = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // The byline is the author when the contributor tags weren't asked for.
+        if (author == null) {
+            author = byline;
+        }
+        if (section == null || title == null || time == null || author == null || url == null) {
+            throw new JsonStreamReader.MalformedJsonException(
+                    "Article is missing a required field");
+        }
+        return new News(section, title, time, author, url, thumbnail);
+    }
+
+    // Returns the webTitle of the first tag (the contributor) and skips the other tags.
+    private String readFirstTagTitle() throws IOException {
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        String author = null;
+        reader.beginArray();
+        if (reader.hasNext() && reader.peek() == JsonStreamReader.Token.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("webTitle")) {
+                    author = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return author;
+    }
+}
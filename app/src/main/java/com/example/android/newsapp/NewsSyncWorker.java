@@ -0,0 +1,127 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads the first page of every followed topic in the background, so the app shows recent
+ * articles from the disk cache as soon as it is opened, even without a connection.
+ * <p>
+ * The sync runs periodically, either on an unmetered network or while the device is charging.
+ * All the topics are loaded together in one run and the system is free to batch the run with
+ * the work of other apps. When a request fails, the run is retried with an exponential backoff.
+ * <p>
+ * Every run also saves the new headlines for the home-screen widget.
+ */
+public class NewsSyncWorker extends Worker {
+
+    private static final String LOG_TAG = NewsSyncWorker.class.getSimpleName();
+
+    /* WorkManager constraints must all be met, so "unmetered or charging" is scheduled as two
+     * periodic works. When both run close together, the second one finds the caches fresh and
+     * doesn't use the network.
+     */
+    static final String UNMETERED_WORK_NAME = "news-sync-unmetered";
+    static final String CHARGING_WORK_NAME = "news-sync-charging";
+
+    // Time between two syncs, and the window at the end of it in which the system may run it.
+    static final long SYNC_INTERVAL_HOURS = 3;
+    static final long SYNC_FLEX_HOURS = 1;
+
+    // Delay before the first retry of a failed sync. It doubles with every attempt.
+    static final long BACKOFF_DELAY_SECONDS = 30;
+
+    // A sync that keeps failing is given up until the next period after this many attempts.
+    static final int MAX_ATTEMPTS = 5;
+
+    /**
+     * Constructs a new {@link NewsSyncWorker}. It is created by the WorkManager.
+     */
+    public NewsSyncWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Schedules the periodic sync, unless it is already scheduled.
+     */
+    static void schedule(Context context) {
+        WorkManager workManager = WorkManager.getInstance(context.getApplicationContext());
+
+        Constraints unmetered = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        workManager.enqueueUniquePeriodicWork(UNMETERED_WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP, buildRequest(unmetered));
+
+        Constraints charging = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresCharging(true)
+                .build();
+        workManager.enqueueUniquePeriodicWork(CHARGING_WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP, buildRequest(charging));
+    }
+
+    // Build a periodic sync request that only runs when the given constraints are met.
+    private static PeriodicWorkRequest buildRequest(Constraints constraints) {
+        return new PeriodicWorkRequest.Builder(NewsSyncWorker.class,
+                SYNC_INTERVAL_HOURS, TimeUnit.HOURS, SYNC_FLEX_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL,
+                        BACKOFF_DELAY_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    //Syncing on a background thread.
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        final NewsRepository repository = NewsRepository.getInstance(context);
+        NewsQuery query = NewsQueryBuilder.buildQuery(context, 1);
+        List<String> urls = NewsQueryBuilder.buildUrls(query);
+
+        // Load every topic in one batch, on the same connections.
+        final AtomicInteger failures = new AtomicInteger();
+        List<News> fetched = MultiTopicFetcher.getInstance().fetch(urls,
+                new MultiTopicFetcher.Source() {
+                    @Override
+                    public List<News> load(String url) {
+                        List<News> news = repository.sync(url);
+                        if (news == null) {
+                            failures.incrementAndGet();
+                        }
+                        return news;
+                    }
+                }, query.isNewestFirst());
+
+        /* Redraw the widget with the new headlines, from the store like the first page of the
+         * list, so it shows the same articles the list will show.
+         */
+        if (fetched != null) {
+            List<News> stored = NewsStore.getInstance(context).query(query);
+            NewsWidgetProvider.saveHeadlines(context, stored.isEmpty() ? fetched : stored,
+                    System.currentTimeMillis());
+        }
+
+        if (failures.get() == 0) {
+            return Result.success();
+        }
+        Log.w(LOG_TAG, failures.get() + " of " + urls.size() + " topics could not be synced");
+        return getRunAttemptCount() + 1 < MAX_ATTEMPTS ? Result.retry() : Result.failure();
+    }
+}
@@ -0,0 +1,451 @@
+package com.example.android.newsapp;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Holds the list of news shown by the {@link MainActivity} and loads it, one page at a time, with
+ * a {@link NewsLoader} on its own small pool of background threads.
+ * <p>
+ * The view model outlives the activity when the screen rotates, so the list and the loads that
+ * are running are kept and the new activity just observes them. A load that isn't needed anymore
+ * (because the settings changed or the activity finished) is cancelled: its thread is
+ * interrupted and the requests that no one else waits for stop reading from the network.
+ * <p>
+ * A refresh only asks for the articles published since the newest one of the list, and adds
+ * them at the top of it (see {@link NewsDelta}), instead of downloading the first page again and
+ * replacing the list. The number of articles added is shown until the user scrolls up to them.
+ * <p>
+ * The first page is also saved as a {@link NewsSnapshot}. When the app starts again after its
+ * process was killed, the snapshot is read and shown first, and only then does the first page
+ * start loading, so the cached list is on screen before any request is sent. Its top is saved
+ * for the home-screen widget as well (see {@link NewsWidgetProvider}).
+ * <p>
+ * Every method must be called on the main thread.
+ */
+public class NewsViewModel extends AndroidViewModel {
+
+    private static final String LOG_TAG = NewsViewModel.class.getSimpleName();
+
+    // Name of the snapshot of the first page, in the app cache directory.
+    private static final String SNAPSHOT_FILE_NAME = "news-snapshot.bin";
+
+    // No more than this many pages load at the same time, for all the view models.
+    private static final int MAX_PARALLEL_LOADS = 2;
+
+    private static final ExecutorService LOAD_EXECUTOR =
+            MultiTopicFetcher.newExecutor("news-load", MAX_PARALLEL_LOADS);
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // The articles of every page loaded so far, and whether the first page is loading.
+    private final MutableLiveData<List<News>> news = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> loading = new MutableLiveData<>();
+
+    // Whether a refresh is running, and how many articles the refreshes added at the top.
+    private final MutableLiveData<Boolean> refreshing = new MutableLiveData<>();
+    private final MutableLiveData<Integer> newCount = new MutableLiveData<>();
+
+    // The query of the first page. The next pages have the same topics, order and size.
+    private NewsQuery query;
+
+    // The loads running now, or null.
+    private Future<?> firstPageLoad;
+    private Future<?> nextPageLoad;
+    private Future<?> newerLoad;
+
+    // Incremented when the query changes, so the results of the old loads are ignored.
+    private int generation = 0;
+
+    // When the first page was downloaded.
+    private long savedAt;
+
+    // The next page to load, and whether the last page loaded was full (so there may be more).
+    private int nextPage = 2;
+    private boolean hasMorePages = false;
+
+    public NewsViewModel(@NonNull Application application) {
+        super(application);
+    }
+
+    /**
+     * Returns the articles of every page loaded so far. An empty list means there are none, null
+     * means the first page is still loading.
+     */
+    LiveData<List<News>> getNews() {
+        return news;
+    }
+
+    /**
+     * Returns true while the first page of a new query is loading.
+     */
+    LiveData<Boolean> isLoading() {
+        return loading;
+    }
+
+    /**
+     * Returns true while the list is being refreshed.
+     */
+    LiveData<Boolean> isRefreshing() {
+        return refreshing;
+    }
+
+    /**
+     * Returns the number of articles the refreshes added at the top of the list since the user
+     * last saw the top of it.
+     */
+    LiveData<Integer> getNewCount() {
+        return newCount;
+    }
+
+    /**
+     * Forgets the new articles, because the user saw them.
+     */
+    void clearNewCount() {
+        if (newCount.getValue() != null && newCount.getValue() != 0) {
+            newCount.setValue(0);
+        }
+    }
+
+    /**
+     * Shows the saved first page, then loads the first page, unless it was already loaded or is
+     * loading for an earlier activity.
+     */
+    void start() {
+        if (query == null) {
+            newQuery();
+            restoreSnapshotThenLoad();
+        }
+    }
+
+    /**
+     * Cancels every load and loads the first page again with the current settings.
+     */
+    void reload() {
+        newQuery();
+        loadFirstPage(false);
+    }
+
+    /**
+     * Refreshes the first page if it was downloaded too long ago.
+     */
+    void refreshIfStale() {
+        if (System.currentTimeMillis() - savedAt > NewsDiskCache.DEFAULT_MAX_AGE_MILLIS) {
+            refresh();
+        }
+    }
+
+    /**
+     * Adds the articles published since the newest one of the list at the top of it, unless the
+     * first page is loading. When the list is sorted another way than from the newest, or the
+     * new articles don't fit in one page, the first page is downloaded again instead.
+     */
+    void refresh() {
+        if (query == null || firstPageLoad != null || newerLoad != null) {
+            return;
+        }
+        refreshing.setValue(true);
+        String fromTime = NewsDelta.fromTime(news.getValue(), savedAt);
+        if (!NewsQuery.ORDER_NEWEST.equals(query.getOrderBy()) || fromTime == null) {
+            loadFirstPage(true);
+            return;
+        }
+
+        final NewsLoader loader = new NewsLoader(getApplication(), query);
+        final String loadFromTime = fromTime;
+        final int loadGeneration = generation;
+        newerLoad = LOAD_EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                final NewsDelta delta;
+                long start = Metrics.begin("page.refresh");
+                try {
+                    delta = loader.loadNewer(loadFromTime);
+                } finally {
+                    Metrics.end("page.refresh", start);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loadGeneration == generation) {
+                            onNewerLoaded(delta);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Starts loading the next page, to be added at the end of the list, unless it is already
+     * loading or the last page loaded was the last one.
+     */
+    void loadNextPage() {
+        if (!hasMorePages || nextPageLoad != null) {
+            return;
+        }
+        NewsQuery pageQuery = new NewsQuery(query.getTopics(), query.getOrderBy(),
+                query.getPageSize(), nextPage);
+        nextPageLoad = load(new NewsLoader(getApplication(), pageQuery), false);
+    }
+
+    /**
+     * Returns true if there may be more pages after the ones loaded.
+     */
+    boolean hasMorePages() {
+        return hasMorePages && nextPageLoad == null;
+    }
+
+    @Override
+    protected void onCleared() {
+        cancelLoads();
+        // The loads that already posted their result are ignored too.
+        generation++;
+    }
+
+    // Forget the loads of the old query and start over with the current settings.
+    private void newQuery() {
+        cancelLoads();
+        generation++;
+        query = NewsQueryBuilder.buildQuery(getApplication(), 1);
+        nextPage = 2;
+        hasMorePages = false;
+        loading.setValue(true);
+    }
+
+    private void loadFirstPage(boolean refresh) {
+        firstPageLoad = load(new NewsLoader(getApplication(), query), refresh);
+    }
+
+    // Run the loader in the background and hand its result to the main thread.
+    private Future<?> load(final NewsLoader loader, final boolean refresh) {
+        final int loadGeneration = generation;
+        return LOAD_EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                final NewsRepository.Result result;
+                long start = Metrics.begin("page.load");
+                try {
+                    result = loader.load(refresh);
+                } finally {
+                    Metrics.end("page.load", start);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loadGeneration == generation) {
+                            onLoaded(loader.getQuery().getPage(), result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onLoaded(int page, NewsRepository.Result result) {
+        if (page == 1) {
+            onFirstPageLoaded(result);
+        } else {
+            onNextPageLoaded(result);
+        }
+    }
+
+    private void onFirstPageLoaded(NewsRepository.Result result) {
+        firstPageLoad = null;
+        loading.setValue(false);
+        refreshing.setValue(false);
+        if (result == null) {
+            // Keep showing the (stale) list we have if the refresh failed.
+            if (news.getValue() == null) {
+                news.setValue(new ArrayList<News>());
+            }
+            return;
+        }
+
+        // Any further page is loaded again, starting after the first one.
+        if (nextPageLoad != null) {
+            nextPageLoad.cancel(true);
+            nextPageLoad = null;
+        }
+        nextPage = 2;
+        savedAt = result.getSavedAt();
+        hasMorePages = isFullPage(result.getNews());
+        news.setValue(result.getNews());
+        // The list was replaced, so nothing is new in it anymore.
+        clearNewCount();
+        saveSnapshot(result.getNews(), result.getSavedAt());
+
+        // The stale list is on screen now, so refresh it in the background.
+        if (result.isStale()) {
+            refresh();
+        }
+    }
+
+    private void onNewerLoaded(NewsDelta delta) {
+        newerLoad = null;
+        if (delta != null && !delta.isComplete()) {
+            // Some new articles are missing, the first page shows them all.
+            Metrics.count("page.refresh.incomplete");
+            loadFirstPage(true);
+            return;
+        }
+        refreshing.setValue(false);
+        List<News> currentList = news.getValue();
+        if (delta == null || currentList == null) {
+            // Keep showing the list we have if the refresh failed.
+            return;
+        }
+
+        savedAt = System.currentTimeMillis();
+        List<News> added = delta.newArticles(currentList);
+        if (!added.isEmpty()) {
+            List<News> newList = NewsDelta.merge(currentList, added);
+            news.setValue(newList);
+            Integer count = newCount.getValue();
+            newCount.setValue((count == null ? 0 : count) + added.size());
+            currentList = newList;
+        }
+        // The saved first page is the top of the list, with its new download time.
+        saveSnapshot(currentList.subList(0, Math.min(currentList.size(), query.getPageSize())),
+                savedAt);
+    }
+
+    private void onNextPageLoaded(NewsRepository.Result result) {
+        nextPageLoad = null;
+        List<News> page = result == null ? null : result.getNews();
+        hasMorePages = isFullPage(page);
+        if (page == null || page.isEmpty()) {
+            return;
+        }
+
+        // Pages can overlap when new articles are published, so skip the ones already shown.
+        List<News> currentList = news.getValue() != null ? news.getValue() : new ArrayList<News>();
+        Set<String> shownUrls = new HashSet<>();
+        for (News item : currentList) {
+            shownUrls.add(item.getUrl());
+        }
+        List<News> newList = new ArrayList<>(currentList);
+        for (News item : page) {
+            if (shownUrls.add(item.getUrl())) {
+                newList.add(item);
+            }
+        }
+        news.setValue(newList);
+        nextPage++;
+    }
+
+    /* Show the saved first page of the same query, then load the first page. Both run as the
+     * first page load, so a reload or refreshIfStale() doesn't start another one meanwhile.
+     */
+    private void restoreSnapshotThenLoad() {
+        final int loadGeneration = generation;
+        final String key = snapshotKey(query);
+        firstPageLoad = LOAD_EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                final NewsSnapshot snapshot = readSnapshot(key);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loadGeneration != generation) {
+                            return;
+                        }
+                        if (snapshot != null && news.getValue() == null) {
+                            // The next pages wait for the first page to be loaded for real.
+                            hasMorePages = false;
+                            loading.setValue(false);
+                            news.setValue(snapshot.getNews());
+                        }
+                        loadFirstPage(false);
+                    }
+                });
+            }
+        });
+    }
+
+    // Returns the saved first page if it is for the query with the given key, else null.
+    private NewsSnapshot readSnapshot(String key) {
+        long start = Metrics.begin("snapshot.read");
+        try {
+            NewsSnapshot snapshot = NewsSnapshot.read(snapshotFile());
+            return key.equals(snapshot.getKey()) ? snapshot : null;
+        } catch (IOException e) {
+            // There is none yet, or it is from an older version of the app.
+            return null;
+        } finally {
+            Metrics.end("snapshot.read", start);
+        }
+    }
+
+    private void saveSnapshot(List<News> firstPage, long firstPageSavedAt) {
+        final NewsSnapshot snapshot = new NewsSnapshot(snapshotKey(query), firstPageSavedAt,
+                new ArrayList<>(firstPage));
+        LOAD_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    snapshot.write(snapshotFile());
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem saving the news snapshot", e);
+                }
+                // The widget shows the top of the same list.
+                NewsWidgetProvider.saveHeadlines(getApplication(), snapshot.getNews(),
+                        snapshot.getSavedAt());
+            }
+        });
+    }
+
+    private File snapshotFile() {
+        return new File(getApplication().getCacheDir(), SNAPSHOT_FILE_NAME);
+    }
+
+    // The snapshot is only shown for the same topics, order and page size.
+    private static String snapshotKey(NewsQuery query) {
+        return TextUtils.join(",", query.getTopics()) + "|" + query.getOrderBy() + "|"
+                + query.getPageSize();
+    }
+
+    // A page with fewer articles than the page size is the last one.
+    private boolean isFullPage(List<News> page) {
+        return page != null && page.size() >= query.getPageSize();
+    }
+
+    private void cancelLoads() {
+        if (firstPageLoad != null) {
+            firstPageLoad.cancel(true);
+            firstPageLoad = null;
+        }
+        if (nextPageLoad != null) {
+            nextPageLoad.cancel(true);
+            nextPageLoad = null;
+        }
+        if (newerLoad != null) {
+            newerLoad.cancel(true);
+            newerLoad = null;
+            refreshing.setValue(false);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.android.newsapp;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+import android.view.View;
+import android.widget.RemoteViews;
+
+import com.example.android.newsappproject.R;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The home-screen widget that shows the top headlines of the list.
+ * <p>
+ * The widget never downloads anything itself. Whenever the list is downloaded, the
+ * {@link NewsViewModel} or the {@link NewsSyncWorker} saves its top in the
+ * {@link NewsHeadlines} and redraws the widget, and only if the headlines changed. So the widget
+ * has no update period, and an update only reads a small file.
+ */
+public class NewsWidgetProvider extends AppWidgetProvider {
+
+    private static final String LOG_TAG = NewsWidgetProvider.class.getSimpleName();
+
+    // Name of the headlines file, in the app files directory so it isn't cleared with the cache.
+    private static final String HEADLINES_FILE_NAME = "widget-headlines.bin";
+
+    // The views of every headline row, from the top. There are NewsHeadlines.MAX_HEADLINES rows.
+    private static final int[] ROW_IDS =
+            {R.id.widget_headline_1, R.id.widget_headline_2, R.id.widget_headline_3};
+    private static final int[] TITLE_IDS =
+            {R.id.widget_title_1, R.id.widget_title_2, R.id.widget_title_3};
+    private static final int[] DETAILS_IDS =
+            {R.id.widget_details_1, R.id.widget_details_2, R.id.widget_details_3};
+
+    // Reads the headlines off the main thread, one update at a time.
+    private static final ExecutorService UPDATER =
+            MultiTopicFetcher.newExecutor("widget-update", 1);
+
+    /**
+     * Saves the top of the given list for the widget and redraws the widget if the headlines
+     * changed. It writes a file, so it must be called on a background thread.
+     *
+     * @param news    is the list as the {@link NewsAdapter} shows it, or null.
+     * @param savedAt is when the list was downloaded.
+     */
+    static void saveHeadlines(Context context, List<News> news, long savedAt) {
+        if (news == null || news.isEmpty()) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        try {
+            if (!NewsHeadlines.write(headlinesFile(appContext), news, savedAt)) {
+                return;
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem saving the headlines", e);
+            return;
+        }
+        AppWidgetManager manager = AppWidgetManager.getInstance(appContext);
+        int[] widgetIds = manager.getAppWidgetIds(
+                new ComponentName(appContext, NewsWidgetProvider.class));
+        if (widgetIds.length > 0) {
+            update(appContext, manager, widgetIds);
+        }
+    }
+
+    /**
+     * Called when widgets are added, and when the launcher asks for them to be redrawn.
+     */
+    @Override
+    public void onUpdate(final Context context, final AppWidgetManager appWidgetManager,
+                         final int[] appWidgetIds) {
+        // Keep the receiver alive until the file is read in the background.
+        final PendingResult pendingResult = goAsync();
+        UPDATER.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    update(context.getApplicationContext(), appWidgetManager, appWidgetIds);
+                } finally {
+                    pendingResult.finish();
+                }
+            }
+        });
+    }
+
+    // Redraw the given widgets with the saved headlines.
+    private static void update(Context context, AppWidgetManager manager, int[] widgetIds) {
+        long start = Metrics.begin("widget.update");
+        try {
+            NewsSnapshot headlines = NewsHeadlines.read(headlinesFile(context));
+            manager.updateAppWidget(widgetIds, buildViews(context,
+                    headlines == null ? null : headlines.getNews()));
+        } finally {
+            Metrics.end("widget.update", start);
+        }
+    }
+
+    // The widget layout filled with the given headlines, or with a message if there are none.
+    private static RemoteViews buildViews(Context context, List<News> headlines) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_headlines);
+
+        // The header opens the list.
+        Intent listIntent = new Intent(context, MainActivity.class);
+        views.setOnClickPendingIntent(R.id.widget_header,
+                PendingIntent.getActivity(context, 0, listIntent, 0));
+
+        int count = headlines == null ? 0 : Math.min(headlines.size(), ROW_IDS.length);
+        views.setViewVisibility(R.id.widget_empty, count == 0 ? View.VISIBLE : View.GONE);
+        for (int i = 0; i < ROW_IDS.length; i++) {
+            if (i >= count) {
+                views.setViewVisibility(ROW_IDS[i], View.GONE);
+                continue;
+            }
+            News item = headlines.get(i);
+            views.setViewVisibility(ROW_IDS[i], View.VISIBLE);
+            views.setTextViewText(TITLE_IDS[i], item.getTitle());
+            views.setTextViewText(DETAILS_IDS[i], context.getString(R.string.widget_details,
+                    item.getSection(), item.getDisplayDate()));
+
+            // Every row opens its article in the reader. The request code keeps them apart.
+            Intent articleIntent = ArticleActivity.newIntent(context, item);
+            views.setOnClickPendingIntent(ROW_IDS[i], PendingIntent.getActivity(context, i + 1,
+                    articleIntent, PendingIntent.FLAG_UPDATE_CURRENT));
+        }
+        return views;
+    }
+
+    private static File headlinesFile(Context context) {
+        return new File(context.getFilesDir(), HEADLINES_FILE_NAME);
+    }
+}
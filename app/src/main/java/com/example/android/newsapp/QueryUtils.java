@@ -1,29 +1,34 @@
 package com.example.android.newsapp;
 
-import androidx.appcompat.app.AppCompatActivity;
 import android.text.TextUtils;
 import android.util.Log;
 
+import androidx.core.os.CancellationSignal;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.Charset;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Helper methods related to requesting and receiving news data from theguardianopenplatform.
  */
-public final class QueryUtils extends AppCompatActivity {
+public final class QueryUtils {
 
     //Tag for the log messages.
     public static final String LOG_TAG = QueryUtils.class.getSimpleName();
@@ -37,22 +42,79 @@ public final class QueryUtils extends AppCompatActivity {
     }
 
     public static List<News> fetchNewsData(String requestUrl) {
-        // Create URL object
-        URL url = createUrl(requestUrl);
+        NewsResponse response = fetchNewsData(requestUrl, null, null);
+        return response == null ? null : response.getNews();
+    }
 
-        // Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
+    /**
+     * Fetch the news for the given URL, sending the validators of a cached copy (if there is
+     * one) so the server can answer "304 Not Modified" instead of sending the list again.
+     *
+     * @param requestUrl   is the URL to load data from.
+     * @param eTag         is the ETag of the cached copy, or null.
+     * @param lastModified is the Last-Modified date of the cached copy, or null.
+     * @return the response, or null if the request failed.
+     */
+    public static NewsResponse fetchNewsData(String requestUrl, String eTag,
+                                             String lastModified) {
+        return fetchNewsData(requestUrl, eTag, lastModified, null);
+    }
 
+    /**
+     * Fetch the news for the given URL like {@link #fetchNewsData(String, String, String)}, and
+     * stop as soon as the given signal is cancelled, even in the middle of reading the response.
+     *
+     * @param signal is cancelled when the response isn't needed anymore, or null.
+     * @return the response, or null if the request failed or was cancelled.
+     */
+    static NewsResponse fetchNewsData(String requestUrl, String eTag, String lastModified,
+                                      CancellationSignal signal) {
         try {
-            jsonResponse = makeHttpRequest(url);
+            return requestNewsData(requestUrl, eTag, lastModified, signal);
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem making the HTTP request.", e);
+            // Already logged, a failed request simply has no response.
+            return null;
         }
-        // Extract relevant fields from the JSON response and create a list of {@link News}
-        List<News> newsItem = extractFeatureFromJson(jsonResponse);
+    }
 
-        // Return the list of {@link News}
-        return newsItem;
+    /**
+     * Fetch the news for the given URL like {@link #fetchNewsData(String, String, String,
+     * CancellationSignal)}, but report why the request failed, so the {@link ResilientFetcher}
+     * can tell a failure worth retrying from one that would fail again.
+     *
+     * @param signal is cancelled when the response isn't needed anymore, or null.
+     * @return the response, or null if the URL is not valid.
+     * @throws HttpStatusException    if the server answered with an error status.
+     * @throws InterruptedIOException if the request was cancelled.
+     * @throws IOException            if the connection failed or timed out.
+     */
+    static NewsResponse requestNewsData(String requestUrl, String eTag, String lastModified,
+                                        CancellationSignal signal) throws IOException {
+        // Create URL object
+        URL url = createUrl(requestUrl);
+
+        // If the URL is null, then return early.
+        if (url == null) {
+            return null;
+        }
+
+        /* Perform HTTP request to the URL and decode the JSON response into a list of
+         * {@link News} while it is being received.
+         */
+        long start = Metrics.begin("http.request");
+        try {
+            HttpResult<List<News>> result = makeHttpRequest(url, eTag, lastModified, signal,
+                    "http", new BodyDecoder<List<News>>() {
+                        @Override
+                        public List<News> decode(InputStream body) throws IOException {
+                            return extractFeatureFromStream(body);
+                        }
+                    }, null);
+            return new NewsResponse(result.getBody(), result.isNotModified(), result.getETag(),
+                    result.getLastModified());
+        } finally {
+            Metrics.end("http.request", start);
+        }
     }
 
     /**
@@ -69,53 +131,227 @@ public final class QueryUtils extends AppCompatActivity {
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Make a GET request to the given URL and return the body of the response, decoded by the
+     * given decoder while it is received. Every request to the server goes through here: the
+     * lists of {@link News} and the bodies of the articles for the reader.
+     * <p>
+     * The connection is not disconnected: the response is read to the end and the stream is
+     * closed, which hands the socket back to the HttpURLConnection pool so the next request to
+     * the same host reuses it (HTTP keep-alive).
+     * <p>
+     * A blocked socket read doesn't stop when its thread is interrupted, so cancelling the signal
+     * disconnects the connection instead. The read then fails and nothing is returned, not even
+     * what was decoded so far.
+     * <p>
+     * Every failure is logged here, then thrown to the caller.
+     *
+     * @param eTag         is the ETag of the cached copy, or null.
+     * @param lastModified is the Last-Modified date of the cached copy, or null.
+     * @param signal       is cancelled to stop the request, or null if it can't be.
+     * @param metric       is the prefix of the metrics of the request, like "http".
+     * @param decoder      decodes the body of a successful response.
+     * @param received     counts the bytes of the body received, even when the request fails or
+     *                     is cancelled halfway, or null.
+     * @throws HttpStatusException    if the server answered with an error status.
+     * @throws InterruptedIOException if the request was cancelled.
+     * @throws IOException            if the connection failed or timed out.
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
-
-        // If the URL is null, then return early.
-        if (url == null) {
-            return jsonResponse;
-        }
-
+    static <T> HttpResult<T> makeHttpRequest(URL url, String eTag, String lastModified,
+                                             CancellationSignal signal, String metric,
+                                             BodyDecoder<T> decoder, AtomicLong received)
+            throws IOException {
+        HttpResult<T> result = null;
         HttpURLConnection urlConnection = null;
         InputStream inputStream = null;
+        CountingInputStream countingStream = null;
+        int errorCode = 0;
         try {
             urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000);
-            urlConnection.setConnectTimeout(15000);
+            if (signal != null) {
+                final HttpURLConnection connection = urlConnection;
+                signal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+                    @Override
+                    public void onCancel() {
+                        connection.disconnect();
+                    }
+                });
+                if (signal.isCanceled()) {
+                    throw new InterruptedIOException("The request was cancelled");
+                }
+            }
+            // Wait longer on a slow connection, so its small responses arrive.
+            FetchPolicy.Limits limits = FetchPolicy.getInstance().current();
+            urlConnection.setReadTimeout(limits.getReadTimeoutMillis());
+            urlConnection.setConnectTimeout(limits.getConnectTimeoutMillis());
             urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
+
+            /* Ask for a compressed response. Because the header is set here, HttpURLConnection
+             * leaves the decompression to us.
+             */
+            urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+
+            // Only send the response again if it changed since the cached copy.
+            if (eTag != null) {
+                urlConnection.setRequestProperty("If-None-Match", eTag);
+            }
+            if (lastModified != null) {
+                urlConnection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+            /* HttpURLConnection doesn't tell the DNS lookup, the TCP and the TLS handshakes
+             * apart, so they are measured together. It is close to 0 for a reused connection.
+             */
+            long connectStart = Metrics.begin(metric + ".connect");
+            try {
+                urlConnection.connect();
+            } finally {
+                Metrics.end(metric + ".connect", connectStart);
+            }
 
             /* If the request was successful (response code 200),
-             * then read the input stream and parse the response.
-             * When done, close the connection and input stream.
+             * then decode the response straight from the input stream.
+             * If the cached copy is still current (response code 304), there is nothing to read.
+             * When done, close the input stream.
              */
-            if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
+            // Time to first byte: sending the request and waiting for the status line.
+            int responseCode;
+            long ttfbStart = Metrics.begin(metric + ".ttfb");
+            try {
+                responseCode = urlConnection.getResponseCode();
+            } finally {
+                Metrics.end(metric + ".ttfb", ttfbStart);
+            }
+            long latencyNanos = System.nanoTime() - ttfbStart;
+            Metrics.count("http.status." + responseCode);
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                // Count the bytes received, before they are decompressed.
+                countingStream = new CountingInputStream(urlConnection.getInputStream());
+                inputStream = countingStream;
+                InputStream bodyStream = inputStream;
+                if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                    bodyStream = new GZIPInputStream(inputStream);
+                }
+                // The body is decoded while it is downloaded, so both are measured together.
+                T body;
+                long downloadStart = Metrics.begin(metric + ".download");
+                try {
+                    body = decoder.decode(bodyStream);
+                    // The decoder keeps what it read before the connection was closed, drop it.
+                    if (signal != null && signal.isCanceled()) {
+                        throw new InterruptedIOException("The request was cancelled");
+                    }
+                    drain(bodyStream);
+                } finally {
+                    Metrics.end(metric + ".download", downloadStart);
+                }
+                Metrics.record(metric + ".bytes", countingStream.getCount());
+                FetchPolicy.getInstance().onResponse(countingStream.getCount(), latencyNanos,
+                        System.nanoTime() - downloadStart);
+                result = new HttpResult<>(body, false, urlConnection.getHeaderField("ETag"),
+                        urlConnection.getHeaderField("Last-Modified"), countingStream.getCount());
+            } else if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                FetchPolicy.getInstance().onResponse(0, latencyNanos, 0);
+                result = new HttpResult<>(null, true, urlConnection.getHeaderField("ETag"),
+                        urlConnection.getHeaderField("Last-Modified"), 0);
             } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
+                Log.e(LOG_TAG, "Error response code: " + responseCode);
+                // Read the error body too, so the connection can still be reused.
+                inputStream = urlConnection.getErrorStream();
+                drain(inputStream);
+                errorCode = responseCode;
             }
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the news JSON results.", e);
-        } finally {
+            if (signal != null && signal.isCanceled()) {
+                Log.d(LOG_TAG, "The request was cancelled.");
+                // Whatever the disconnected read threw, it was cancelled.
+                if (!(e instanceof InterruptedIOException)) {
+                    InterruptedIOException cancelled =
+                            new InterruptedIOException("The request was cancelled");
+                    cancelled.initCause(e);
+                    e = cancelled;
+                }
+            } else if (e instanceof SocketTimeoutException) {
+                Log.e(LOG_TAG, "The request timed out.", e);
+                FetchPolicy.getInstance().onTimeout();
+            } else {
+                Log.e(LOG_TAG, "Problem retrieving the response.", e);
+            }
+            // The connection is in an unknown state, so don't let it be reused.
             if (urlConnection != null) {
                 urlConnection.disconnect();
             }
+            throw e;
+        } finally {
+            if (signal != null) {
+                signal.setOnCancelListener(null);
+            }
+            if (received != null && countingStream != null) {
+                received.addAndGet(countingStream.getCount());
+            }
             if (inputStream != null) {
                 inputStream.close();
             }
         }
-        return jsonResponse;
+        // Thrown once the error body is read, so the connection stays reusable.
+        if (errorCode != 0) {
+            throw new HttpStatusException(errorCode);
+        }
+        return result;
+    }
+
+    // Read the rest of the stream, the parser stops at the end of the results array.
+    private static void drain(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return;
+        }
+        byte[] buffer = new byte[1024];
+        while (inputStream.read(buffer) != -1) {
+            // Discard the bytes.
+        }
+    }
+
+    /**
+     * Return a list of {@link News} objects decoded from the given JSON stream, without keeping
+     * the whole response in memory. Returns null if the stream is empty.
+     * <p>
+     * Malformed JSON ends the list where it is. A stream that fails while it is read doesn't.
+     *
+     * @throws IOException if the stream can't be read to the end of the results.
+     */
+    static List<News> extractFeatureFromStream(InputStream inputStream) throws IOException {
+        NewsStreamParser parser = new NewsStreamParser(inputStream);
+        List<News> newsItem = new ArrayList<>();
+        long start = Metrics.begin("json.parse");
+        try {
+            News news = parser.next();
+            while (news != null) {
+                newsItem.add(news);
+                news = parser.next();
+            }
+        } catch (JsonStreamReader.MalformedJsonException e) {
+            /* Keep the articles decoded so far, like the JSON tree parser does. Any other
+             * IOException means the download failed, and is thrown so the request is retried
+             * instead of saving a partial list.
+             */
+            Log.e(LOG_TAG, "Problem parsing the news JSON results", e);
+        } finally {
+            Metrics.end("json.parse", start);
+        }
+        Metrics.record("json.items", newsItem.size());
+        // An empty response is treated the same as an empty JSON string.
+        if (parser.isEmpty()) {
+            return null;
+        }
+        return newsItem;
     }
 
     /**
      * Convert the {@link InputStream} into a String which contains the
      * whole JSON response from the server.
+     * <p>
+     * Not used when fetching anymore, {@link #extractFeatureFromStream} reads the connection
+     * directly. Kept together with {@link #extractFeatureFromJson} as the reference decoder.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
+    static String readFromStream(InputStream inputStream) throws IOException {
         StringBuilder output = new StringBuilder();
         if (inputStream != null) {
             InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset
@@ -134,7 +370,7 @@ public final class QueryUtils extends AppCompatActivity {
      * Return a list of {@link News} objects that has been built up from
      * parsing the given JSON response.
      */
-    private static List<News> extractFeatureFromJson(String newsJSON) {
+    static List<News> extractFeatureFromJson(String newsJSON) {
         // If the JSON string is empty or null, then return early.
         if (TextUtils.isEmpty(newsJSON)) {
             return null;
@@ -153,12 +389,22 @@ public final class QueryUtils extends AppCompatActivity {
                 String section = currentNewsItem.getString("sectionName");
                 String title = currentNewsItem.getString("webTitle");
                 String time = currentNewsItem.getString("webPublicationDate");
-                JSONArray tags = currentNewsItem.getJSONArray("tags");
-                JSONObject tagsDetails = tags.getJSONObject(0);
-                String author = tagsDetails.getString("webTitle");
                 String url = currentNewsItem.getString("webUrl");
+                JSONObject fields = currentNewsItem.optJSONObject("fields");
+                String thumbnail = fields == null ? null : fields.optString("thumbnail", null);
+                // The byline is the author when the contributor tags weren't asked for.
+                JSONArray tags = currentNewsItem.optJSONArray("tags");
+                String author;
+                if (tags != null && tags.length() > 0) {
+                    JSONObject tagsDetails = tags.getJSONObject(0);
+                    author = tagsDetails.getString("webTitle");
+                } else if (fields != null && fields.has("byline")) {
+                    author = fields.getString("byline");
+                } else {
+                    throw new JSONException("Article has no author");
+                }
 
-                News news = new News(section, title, time, author, url);
+                News news = new News(section, title, time, author, url, thumbnail);
                 newsItem.add(news);
             }
         } catch (JSONException e) {
@@ -171,4 +417,162 @@ public final class QueryUtils extends AppCompatActivity {
         // Return the list of news (to be displayed in the MainActivity ListView).
         return newsItem;
     }
+
+    // Counts the bytes read through it.
+    static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Decodes the body of a successful response while it is received.
+     *
+     * @param <T> is what the body is decoded into.
+     */
+    interface BodyDecoder<T> {
+        /**
+         * Returns what the given body decodes into. The body is already decompressed, and
+         * whatever is left of it once this returns is read and discarded.
+         *
+         * @throws IOException if the body can't be read.
+         */
+        T decode(InputStream body) throws IOException;
+    }
+
+    /**
+     * The decoded body of one response, or "not modified" if the cached copy is still current,
+     * together with the validators to send next time and the number of bytes received.
+     *
+     * @param <T> is what the body was decoded into.
+     */
+    static final class HttpResult<T> {
+
+        private final T body;
+        private final boolean notModified;
+        private final String eTag;
+        private final String lastModified;
+        private final long bytes;
+
+        HttpResult(T body, boolean notModified, String eTag, String lastModified, long bytes) {
+            this.body = body;
+            this.notModified = notModified;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the decoded body, or null if the response was "not modified".
+         */
+        T getBody() {
+            return body;
+        }
+
+        boolean isNotModified() {
+            return notModified;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns the number of bytes of the body received, compressed.
+         */
+        long getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Thrown when the server answers with an error status instead of the news.
+     */
+    static final class HttpStatusException extends IOException {
+
+        private final int statusCode;
+
+        HttpStatusException(int statusCode) {
+            super("Error response code: " + statusCode);
+            this.statusCode = statusCode;
+        }
+
+        int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    /**
+     * The result of one request: the list of {@link News}, or "not modified" if the cached copy
+     * is still current, together with the validators to send next time.
+     */
+    public static final class NewsResponse {
+
+        private final List<News> news;
+        private final boolean notModified;
+        private final String eTag;
+        private final String lastModified;
+
+        NewsResponse(List<News> news, boolean notModified, String eTag, String lastModified) {
+            this.news = news;
+            this.notModified = notModified;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns the list of {@link News}, or null if the response was "not modified" or
+         * could not be decoded.
+         */
+        public List<News> getNews() {
+            return news;
+        }
+
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
 }
@@ -0,0 +1,125 @@
+package com.example.android.newsapp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Helper methods that turn a guardian open platform request URL into a stable key, which is used
+ * to look up cached results for that request.
+ */
+final class RequestKeys {
+
+    // The API key is not part of the query itself, so it is never part of a key.
+    static final String API_KEY_PARAMETER = "api-key";
+
+    /**
+     * Create a private constructor because no one should ever create a {@link RequestKeys}
+     * object.
+     */
+    private RequestKeys() {
+    }
+
+    /**
+     * Returns the normalized form of the given URL: the "api-key" parameter is removed and the
+     * remaining query parameters are sorted, so the same query always gives the same key no
+     * matter in which order its parameters were appended.
+     */
+    static String normalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        // The fragment is never sent to the server.
+        int fragmentStart = url.indexOf('#');
+        if (fragmentStart >= 0) {
+            url = url.substring(0, fragmentStart);
+        }
+
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) {
+            return url;
+        }
+
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : url.substring(queryStart + 1).split("&")) {
+            if (parameter.isEmpty() || parameterName(parameter).equals(API_KEY_PARAMETER)) {
+                continue;
+            }
+            parameters.add(parameter);
+        }
+        Collections.sort(parameters);
+
+        StringBuilder key = new StringBuilder(url.length());
+        key.append(url, 0, queryStart);
+        for (int i = 0; i < parameters.size(); i++) {
+            key.append(i == 0 ? '?' : '&').append(parameters.get(i));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns a key built only from the given query parameters of the URL, in the given order.
+     * Parameters that are missing from the URL are part of the key with an empty value.
+     */
+    static String forParameters(String url, String... names) {
+        if (url == null) {
+            return null;
+        }
+        int queryStart = url.indexOf('?');
+        String[] parameters = queryStart < 0 ? new String[0]
+                : url.substring(queryStart + 1).split("[&#]");
+
+        StringBuilder key = new StringBuilder();
+        for (String name : names) {
+            if (key.length() > 0) {
+                key.append('&');
+            }
+            key.append(name).append('=');
+            for (String parameter : parameters) {
+                if (parameterName(parameter).equals(name)) {
+                    key.append(parameterValue(parameter));
+                    break;
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the decoded value of the given query parameter of the URL, or null if the URL
+     * doesn't have it.
+     */
+    static String parameter(String url, String name) {
+        if (url == null) {
+            return null;
+        }
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) {
+            return null;
+        }
+        for (String parameter : url.substring(queryStart + 1).split("[&#]")) {
+            if (parameterName(parameter).equals(name)) {
+                try {
+                    return URLDecoder.decode(parameterValue(parameter), "UTF-8");
+                } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                    return parameterValue(parameter);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Returns the (still encoded) name part of a "name=value" query parameter.
+    private static String parameterName(String parameter) {
+        int equals = parameter.indexOf('=');
+        return equals < 0 ? parameter : parameter.substring(0, equals);
+    }
+
+    // Returns the (still encoded) value part of a "name=value" query parameter.
+    private static String parameterValue(String parameter) {
+        int equals = parameter.indexOf('=');
+        return equals < 0 ? "" : parameter.substring(equals + 1);
+    }
+}
@@ -0,0 +1,396 @@
+package com.example.android.newsapp;
+
+import androidx.core.os.CancellationSignal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sends the requests to one server so that a short network blip or a slow response doesn't
+ * leave the user without news.
+ * <p>
+ * A request that fails in a way worth retrying (no connection, a timeout, a 5xx or 429 status)
+ * is sent again after an exponential backoff with random jitter, so the phones that saw the same
+ * outage don't all come back at the same moment. A request that takes longer than 95% of the
+ * recent ones is hedged: a second copy is sent, the first answer wins and the other one is
+ * cancelled. A {@link CircuitBreaker} refuses the requests right away while the server keeps
+ * failing, so the caller can show its cached copy instead of waiting.
+ * <p>
+ * Only idempotent requests, like the GET of the news, may be sent through it.
+ */
+final class ResilientFetcher {
+
+    // Tries of one request, the first one included.
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    // Backoff before the first retry, doubled for every retry after it.
+    static final long DEFAULT_BASE_BACKOFF_MILLIS = 250;
+
+    // The backoff never gets longer than this.
+    private static final long MAX_BACKOFF_MILLIS = 4000;
+
+    // Hedging delay until enough requests were measured for a percentile.
+    static final long DEFAULT_HEDGE_DELAY_MILLIS = 2000;
+
+    // Never hedge sooner than this, a second copy of a fast request only wastes data.
+    private static final long MIN_HEDGE_DELAY_MILLIS = 100;
+
+    // Latencies of the last successful requests, and how many are needed for a percentile.
+    private static final int LATENCY_SAMPLES = 64;
+    private static final int MIN_LATENCY_SAMPLES = 10;
+
+    private final ExecutorService executor;
+    private final CircuitBreaker breaker;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long defaultHedgeDelayMillis;
+    private final Random random = new Random();
+
+    // Ring buffer of the latencies, in milliseconds.
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount = 0;
+
+    /**
+     * One request, that may be sent several times, even at the same time.
+     *
+     * @param <V> is the result of the request.
+     */
+    interface Call<V> {
+        /**
+         * Sends the request and returns its result.
+         *
+         * @param signal is cancelled when this copy of the request isn't needed anymore.
+         * @throws IOException if the request failed.
+         */
+        V call(CancellationSignal signal) throws IOException;
+    }
+
+    /**
+     * Returns a fetcher with the default retries, hedging and circuit breaker.
+     *
+     * @param name names the threads that send the requests.
+     */
+    static ResilientFetcher newDefault(String name) {
+        // Up to two copies of every request run at the same time.
+        return new ResilientFetcher(
+                MultiTopicFetcher.newExecutor(name, 2 * MultiTopicFetcher.MAX_PARALLEL_REQUESTS),
+                new CircuitBreaker(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD,
+                        CircuitBreaker.DEFAULT_OPEN_MILLIS),
+                DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF_MILLIS, DEFAULT_HEDGE_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructs a new {@link ResilientFetcher}.
+     *
+     * @param executor                sends the requests. It needs two threads for every request
+     *                                sent at the same time, for the hedged copies.
+     * @param breaker                 refuses the requests while the server keeps failing.
+     * @param maxAttempts             is the number of tries of a request, the first included.
+     * @param baseBackoffMillis       is the backoff before the first retry.
+     * @param defaultHedgeDelayMillis is how long to wait before hedging, until enough requests
+     *                                were measured.
+     */
+    ResilientFetcher(ExecutorService executor, CircuitBreaker breaker, int maxAttempts,
+                     long baseBackoffMillis, long defaultHedgeDelayMillis) {
+        this.executor = executor;
+        this.breaker = breaker;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.defaultHedgeDelayMillis = defaultHedgeDelayMillis;
+    }
+
+    /**
+     * Sends the request, retrying and hedging it as needed, and returns its result. Blocks until
+     * it succeeds, fails for good or is cancelled.
+     *
+     * @param signal is cancelled when the result isn't needed anymore, or null.
+     * @throws CircuitBreaker.OpenException if the server keeps failing, nothing was sent.
+     * @throws InterruptedIOException       if the signal was cancelled or the thread interrupted.
+     * @throws IOException                  the failure of the last try.
+     */
+    <V> V fetch(Call<V> call, CancellationSignal signal) throws IOException {
+        if (!breaker.allowRequest()) {
+            Metrics.count("fetch.circuit.rejected");
+            throw new CircuitBreaker.OpenException();
+        }
+        final Exchange<V> exchange = new Exchange<>(call);
+        if (signal != null) {
+            signal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+                @Override
+                public void onCancel() {
+                    exchange.cancel();
+                }
+            });
+        }
+        try {
+            return send(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            breaker.onAbandoned();
+            throw new InterruptedIOException("The request was interrupted");
+        } finally {
+            if (signal != null) {
+                signal.setOnCancelListener(null);
+            }
+            // Stop the copy of the request that lost the race, if it still runs.
+            exchange.cancel();
+        }
+    }
+
+    /**
+     * Returns the state of the circuit breaker.
+     */
+    CircuitBreaker.State getCircuitState() {
+        return breaker.getState();
+    }
+
+    /**
+     * Returns how long a request may take before it is hedged: the 95th percentile of the last
+     * successful requests, or the default delay until enough of them were measured.
+     */
+    synchronized long hedgeDelayMillis() {
+        int count = Math.min(latencyCount, LATENCY_SAMPLES);
+        if (count < MIN_LATENCY_SAMPLES) {
+            return defaultHedgeDelayMillis;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(count * 0.95) - 1;
+        return Math.max(sorted[index], MIN_HEDGE_DELAY_MILLIS);
+    }
+
+    /**
+     * Returns the backoff before the given retry: half of the exponential delay, plus a random
+     * part of up to the other half.
+     *
+     * @param retry is 1 for the first retry.
+     */
+    static long backoffMillis(int retry, long baseBackoffMillis, Random random) {
+        long exponential = Math.min(baseBackoffMillis << Math.min(retry - 1, 16),
+                MAX_BACKOFF_MILLIS);
+        long half = exponential / 2;
+        return half + (long) (random.nextDouble() * (exponential - half));
+    }
+
+    /**
+     * Returns true if the failure may not happen again, so the request is worth sending again.
+     * A cancelled request and a client error like a wrong API key are not.
+     */
+    static boolean isRetryable(IOException failure) {
+        if (failure instanceof QueryUtils.HttpStatusException) {
+            int status = ((QueryUtils.HttpStatusException) failure).getStatusCode();
+            return status >= 500 || status == 429 || status == 408;
+        }
+        if (failure instanceof CircuitBreaker.OpenException) {
+            return false;
+        }
+        // A timeout is an interrupted read too, but the server may answer the next one.
+        return !(failure instanceof InterruptedIOException)
+                || failure instanceof SocketTimeoutException;
+    }
+
+    // Sends the tries of the request one after the other, each one hedged if it is slow.
+    private <V> V send(Exchange<V> exchange) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            exchange.start();
+            // Only hedge against a healthy server, a failing one doesn't need twice the load.
+            if (!exchange.await(hedgeDelayMillis())
+                    && breaker.getState() == CircuitBreaker.State.CLOSED && exchange.start()) {
+                Metrics.count("fetch.hedge");
+            }
+            exchange.await(0);
+
+            if (exchange.isCancelled()) {
+                breaker.onAbandoned();
+                throw new InterruptedIOException("The request was cancelled");
+            }
+            if (exchange.hasSucceeded()) {
+                breaker.onSuccess();
+                if (exchange.wasWonByHedge()) {
+                    Metrics.count("fetch.hedge.won");
+                }
+                return exchange.getResult();
+            }
+            IOException failure = exchange.getFailure();
+            if (!isRetryable(failure)) {
+                // The server answered, it is the request that is wrong.
+                breaker.onSuccess();
+                throw failure;
+            }
+            if (attempt >= maxAttempts) {
+                breaker.onFailure();
+                Metrics.count("fetch.failure");
+                throw failure;
+            }
+            Metrics.count("fetch.retry");
+            exchange.sleep(backoffMillis(attempt, baseBackoffMillis, random));
+            if (exchange.isCancelled()) {
+                breaker.onAbandoned();
+                throw new InterruptedIOException("The request was cancelled");
+            }
+            exchange.nextAttempt();
+        }
+    }
+
+    private synchronized void addLatency(long latencyMillis) {
+        latencies[latencyCount % LATENCY_SAMPLES] = latencyMillis;
+        latencyCount++;
+    }
+
+    /* The copies of one request: the first copy of every try and its hedge. They report to it
+     * when they end, and the thread of fetch() waits on it for the first success.
+     */
+    private final class Exchange<V> {
+        final Call<V> call;
+
+        // The signals of every copy started, to cancel the ones still running at the end.
+        final List<CancellationSignal> signals = new ArrayList<>();
+
+        // Copies of the current try that are still running.
+        int running = 0;
+        int started = 0;
+
+        boolean cancelled = false;
+        boolean succeeded = false;
+        boolean wonByHedge = false;
+        V result;
+        IOException failure;
+
+        Exchange(Call<V> call) {
+            this.call = call;
+        }
+
+        // Starts one more copy of the current try. Returns false if it was cancelled.
+        boolean start() {
+            final CancellationSignal signal = new CancellationSignal();
+            final boolean hedge;
+            synchronized (this) {
+                if (cancelled || succeeded) {
+                    return false;
+                }
+                signals.add(signal);
+                running++;
+                hedge = started++ > 0;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        long start = System.nanoTime();
+                        try {
+                            V value = call.call(signal);
+                            onSucceeded(value, hedge, (System.nanoTime() - start) / 1000000L);
+                        } catch (IOException e) {
+                            onFailed(e);
+                        } catch (RuntimeException e) {
+                            onFailed(new IOException(e));
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                onFailed(new IOException(e));
+            }
+            return true;
+        }
+
+        synchronized void onSucceeded(V value, boolean hedge, long latencyMillis) {
+            running--;
+            if (!succeeded && !cancelled) {
+                succeeded = true;
+                wonByHedge = hedge;
+                result = value;
+                addLatency(latencyMillis);
+            }
+            notifyAll();
+        }
+
+        synchronized void onFailed(IOException e) {
+            running--;
+            // The first failure is reported, the hedge usually fails the same way.
+            if (failure == null) {
+                failure = e;
+            }
+            notifyAll();
+        }
+
+        /* Waits until a copy succeeded, every copy failed or the request was cancelled, for no
+         * more than the given time (0 waits as long as needed). Returns true if one of those
+         * happened.
+         */
+        synchronized boolean await(long timeoutMillis) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+            while (!succeeded && !cancelled && running > 0) {
+                if (timeoutMillis <= 0) {
+                    wait();
+                } else {
+                    long leftMillis = (deadline - System.nanoTime()) / 1000000L;
+                    if (leftMillis <= 0) {
+                        return false;
+                    }
+                    wait(leftMillis);
+                }
+            }
+            return true;
+        }
+
+        // Waits for the backoff, or until the request is cancelled.
+        synchronized void sleep(long millis) throws InterruptedException {
+            long deadline = System.nanoTime() + millis * 1000000L;
+            long leftMillis = millis;
+            while (!cancelled && leftMillis > 0) {
+                wait(leftMillis);
+                leftMillis = (deadline - System.nanoTime()) / 1000000L;
+            }
+        }
+
+        // Forgets the failures of the try that just ended.
+        synchronized void nextAttempt() {
+            failure = null;
+            started = 0;
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        synchronized boolean hasSucceeded() {
+            return succeeded;
+        }
+
+        synchronized boolean wasWonByHedge() {
+            return wonByHedge;
+        }
+
+        synchronized V getResult() {
+            return result;
+        }
+
+        synchronized IOException getFailure() {
+            return failure;
+        }
+
+        // Cancels every copy that still runs. A copy that already succeeded keeps its result.
+        void cancel() {
+            List<CancellationSignal> toCancel;
+            synchronized (this) {
+                if (!succeeded) {
+                    cancelled = true;
+                }
+                toCancel = new ArrayList<>(signals);
+                signals.clear();
+                notifyAll();
+            }
+            // Outside the lock, cancelling disconnects the HTTP connection.
+            for (CancellationSignal signal : toCancel) {
+                signal.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.android.newsapp;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Pool of strings that repeat a lot, like the sections and contributors of the articles, so all
+ * the articles share one instance of each value instead of one copy per article.
+ * <p>
+ * The pool only holds its strings weakly: a value that no article uses anymore can be garbage
+ * collected, which makes room for new ones. It is also bounded, so values that are not repeated
+ * can't make it grow without limit: when it is full, new values are returned as they are and not
+ * pooled, while the pooled ones stay shared. It counts how often a value was already pooled.
+ */
+final class StringPool {
+
+    // The sections and contributors of the articles, shared by every News.
+    private static final StringPool NEWS_FIELDS = new StringPool(2048);
+
+    private final int maxSize;
+
+    // The key and the value are the same string. The value is weak too, so the key can go.
+    private final WeakHashMap<String, WeakReference<String>> pool = new WeakHashMap<>();
+
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    /**
+     * Returns the pool of the sections and contributors of the articles.
+     */
+    static StringPool newsFields() {
+        return NEWS_FIELDS;
+    }
+
+    /**
+     * Constructs a new {@link StringPool}.
+     *
+     * @param maxSize is the number of strings kept, new ones aren't pooled beyond it.
+     */
+    StringPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the pooled string equal to the given one, adding it to the pool if there is none
+     * and the pool isn't full.
+     */
+    synchronized String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        WeakReference<String> reference = pool.get(value);
+        String pooled = reference == null ? null : reference.get();
+        if (pooled != null) {
+            hitCount++;
+            return pooled;
+        }
+        missCount++;
+        // Clearing the pool would give the next articles a second copy of the values the
+        // articles alive still share, so a full pool only stops taking new values. The size
+        // leaves out the values already collected.
+        if (pool.size() < maxSize) {
+            pool.put(value, new WeakReference<>(value));
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of strings in the pool that may still be used.
+     */
+    synchronized int size() {
+        return pool.size();
+    }
+
+    synchronized int hitCount() {
+        return hitCount;
+    }
+
+    synchronized int missCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the part of the strings asked for that were already in the pool, between 0 and 1.
+     */
+    synchronized double hitRate() {
+        int total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ArticleBodyCacheTest {
+
+    private static final String URL = "https://www.theguardian.com/technology/2020/apr/21/a";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void putThenGet_returnsSameText() throws IOException {
+        ArticleBodyCache cache = new ArticleBodyCache(folder.newFolder(), 1024 * 1024);
+        String body = text(5000) + " café, naïve, 東京";
+        cache.put(URL, body);
+
+        assertTrue(cache.contains(URL));
+        assertEquals(body, cache.get(URL));
+        assertNull(cache.get("https://www.theguardian.com/technology/2020/apr/21/b"));
+        assertFalse(cache.contains("https://www.theguardian.com/technology/2020/apr/21/b"));
+    }
+
+    @Test
+    public void text_isStoredCompressed() throws IOException {
+        ArticleBodyCache cache = new ArticleBodyCache(folder.newFolder(), 1024 * 1024);
+        String body = text(20000);
+        cache.put(URL, body);
+
+        assertTrue(cache.size() > 0);
+        assertTrue("Stored " + cache.size() + " bytes", cache.size() < body.length() / 2);
+    }
+
+    @Test
+    public void overBudget_evictsLeastRecentlyUsed() throws IOException {
+        File directory = folder.newFolder();
+        ArticleBodyCache probe = new ArticleBodyCache(folder.newFolder(), 1024 * 1024);
+        probe.put(URL, random(2000, 1));
+        // Room for two articles, but not three.
+        ArticleBodyCache cache = new ArticleBodyCache(directory, probe.size() * 5 / 2);
+        cache.put("first", random(2000, 1));
+        cache.put("second", random(2000, 2));
+        // Reading the first one makes the second the least recently used.
+        assertNotNull(cache.get("first"));
+        cache.put("third", random(2000, 3));
+
+        assertTrue(cache.contains("first"));
+        assertFalse(cache.contains("second"));
+        assertTrue(cache.contains("third"));
+    }
+
+    @Test
+    public void damagedFile_isRemoved() throws IOException {
+        File directory = folder.newFolder();
+        ArticleBodyCache cache = new ArticleBodyCache(directory, 1024 * 1024);
+        cache.put(URL, text(1000));
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        OutputStream out = new FileOutputStream(files[0]);
+        out.write("not gzip".getBytes("UTF-8"));
+        out.close();
+
+        assertNull(cache.get(URL));
+        assertFalse(cache.contains(URL));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void newInstance_findsTheSavedArticles() throws IOException {
+        File directory = folder.newFolder();
+        new ArticleBodyCache(directory, 1024 * 1024).put(URL, text(1000));
+
+        // Like after the app restarted, offline.
+        ArticleBodyCache cache = new ArticleBodyCache(directory, 1024 * 1024);
+        assertEquals(text(1000), cache.get(URL));
+        assertTrue(cache.size() > 0);
+    }
+
+    // Text that compresses like the text of an article.
+    private static String text(int length) {
+        StringBuilder text = new StringBuilder();
+        String[] words = {"the", "phone", "network", "battery", "app", "update", "android"};
+        for (int i = 0; text.length() < length; i++) {
+            text.append(words[i % words.length]).append(i % 11 == 10 ? ". " : " ");
+        }
+        return text.substring(0, length);
+    }
+
+    // Text that doesn't compress, so its size on disk is known.
+    private static String random(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.android.newsapp;
+
+import androidx.core.os.CancellationSignal;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link ArticlePrefetcher} downloads only the first articles on screen, within
+ * its budget, and that the reader finds them offline. The bodies are downloaded and decoded by
+ * the {@link ArticleBodyFetcher}, from a local server.
+ */
+public class ArticlePrefetcherTest {
+
+    private static final String BASE = "https://www.theguardian.com/technology/2020/apr/21/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeGuardianServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void articleId_isThePathOfTheUrl() {
+        assertEquals("technology/2020/apr/21/a", ArticleBodyFetcher.articleId(BASE + "a"));
+        assertNull(ArticleBodyFetcher.articleId("https://www.theguardian.com/"));
+        assertNull(ArticleBodyFetcher.articleId("not a URL"));
+    }
+
+    @Test
+    public void extractBodies_keepsTheArticlesWithText() throws IOException {
+        String json = "{\"response\":{\"status\":\"ok\",\"results\":["
+                + "{\"id\":\"technology/2020/apr/21/a\",\"webUrl\":\"" + BASE + "a\","
+                + "\"fields\":{\"bodyText\":\"First \\\"quoted\\\" text\",\"wordcount\":3}},"
+                + "{\"webUrl\":\"" + BASE + "live\",\"fields\":{\"bodyText\":\"\"}},"
+                + "{\"webUrl\":\"" + BASE + "gallery\"},"
+                + "{\"webUrl\":\"" + BASE + "b\",\"fields\":{\"bodyText\":\"Second\"}}]}}";
+
+        Map<String, String> bodies = ArticleBodyFetcher.extractBodies(
+                new ByteArrayInputStream(json.getBytes("UTF-8")));
+
+        assertEquals(Arrays.asList(BASE + "a", BASE + "b"),
+                new ArrayList<>(bodies.keySet()));
+        assertEquals("First \"quoted\" text", bodies.get(BASE + "a"));
+        assertEquals("Second", bodies.get(BASE + "b"));
+        assertTrue(ArticleBodyFetcher.extractBodies(new ByteArrayInputStream(new byte[0]))
+                .isEmpty());
+    }
+
+    @Test
+    public void requestBodies_downloadsCompressedText() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request)
+                    throws IOException {
+                return FakeGuardianServer.Response.gzip(bodiesResponse(BASE + "a", BASE + "b"));
+            }
+        });
+
+        AtomicLong received = new AtomicLong();
+        Map<String, String> bodies = ArticleBodyFetcher.requestBodies(
+                server.url("ids=technology/2020/apr/21/a,technology/2020/apr/21/b"), null,
+                received);
+
+        assertEquals(2, bodies.size());
+        assertEquals(body(BASE + "a"), bodies.get(BASE + "a"));
+        assertTrue(received.get() > 0);
+        assertEquals("gzip", server.requests().get(0).header("Accept-Encoding"));
+    }
+
+    @Test
+    public void requestBodies_reportsErrorStatuses() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.status(429);
+            }
+        });
+
+        try {
+            ArticleBodyFetcher.requestBodies(server.url("ids=a"), null, null);
+            fail("The 429 response should have been reported");
+        } catch (QueryUtils.HttpStatusException e) {
+            assertEquals(429, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void networkSource_sendsNothingWhileTheServerKeepsFailing() throws IOException {
+        // The lists failed just before, and the circuit opened.
+        CircuitBreaker breaker = new CircuitBreaker(1, 60000);
+        breaker.onFailure();
+        ResilientFetcher fetcher = new ResilientFetcher(
+                MultiTopicFetcher.newExecutor("test-attempt", 2), breaker, 3, 10,
+                ResilientFetcher.DEFAULT_HEDGE_DELAY_MILLIS);
+
+        try {
+            ArticlePrefetcher.networkSource(fetcher).request(urls("a"), new CancellationSignal(),
+                    new AtomicLong());
+            fail("The open circuit should have refused the request");
+        } catch (CircuitBreaker.OpenException expected) {
+        }
+    }
+
+    @Test
+    public void prefetch_asksOnlyForTheFirstArticlesNotCached() throws IOException {
+        ArticleBodyCache cache = new ArticleBodyCache(folder.newFolder(), 1024 * 1024);
+        cache.put(BASE + "b", "Already here");
+        RecordingSource source = new RecordingSource(1000);
+        ArticlePrefetcher prefetcher = newPrefetcher(cache, source, 1024 * 1024);
+
+        int saved = prefetcher.prefetchNow(urls("a", "b", "c", "d", "e", "f"), 3,
+                new CancellationSignal());
+
+        assertEquals(3, saved);
+        assertEquals(Collections.singletonList(urls("a", "c", "d")), source.requests);
+        assertEquals(body(BASE + "c"), cache.get(BASE + "c"));
+        assertEquals("Already here", cache.get(BASE + "b"));
+        assertFalse(cache.contains(BASE + "e"));
+
+        // Everything on screen is cached now, nothing more is asked for.
+        assertEquals(0, prefetcher.prefetchNow(urls("a", "b", "c"), 3,
+                new CancellationSignal()));
+        assertEquals(1, source.requests.size());
+    }
+
+    @Test
+    public void prefetch_stopsAtTheDailyBudget() throws IOException {
+        ArticleBodyCache cache = new ArticleBodyCache(folder.newFolder(), 1024 * 1024);
+        // Every response costs as much as the whole budget.
+        RecordingSource source = new RecordingSource(2 * ArticlePrefetcher.ESTIMATED_BODY_BYTES);
+        ArticlePrefetcher prefetcher =
+                newPrefetcher(cache, source, 2 * ArticlePrefetcher.ESTIMATED_BODY_BYTES);
+        Metrics.reset();
+
+        // The budget only affords two articles.
+        assertEquals(2, prefetcher.prefetchNow(urls("a", "b", "c", "d"), 10,
+                new CancellationSignal()));
+        assertEquals(0, prefetcher.remainingBudget());
+        assertEquals(0, prefetcher.prefetchNow(urls("c", "d"), 10, new CancellationSignal()));
+
+        assertEquals(1, source.requests.size());
+        assertEquals(1, Metrics.counter("body.prefetch.overBudget"));
+    }
+
+    @Test
+    public void prefetch_chargesWhatACancelledDownloadReceived() throws IOException {
+        ArticleBodyCache cache = new ArticleBodyCache(folder.newFolder(), 1024 * 1024);
+        ArticlePrefetcher prefetcher = newPrefetcher(cache, new ArticlePrefetcher.Source() {
+            @Override
+            public Map<String, String> request(List<String> articleUrls,
+                                               CancellationSignal signal, AtomicLong received)
+                    throws IOException {
+                // The user scrolled away in the middle of the response.
+                received.addAndGet(3000);
+                throw new InterruptedIOException("The request was cancelled");
+            }
+        }, 1024 * 1024);
+
+        try {
+            prefetcher.prefetchNow(urls("a"), 3, new CancellationSignal());
+            fail("The cancelled prefetch should have been reported");
+        } catch (InterruptedIOException expected) {
+        }
+
+        assertEquals(1024 * 1024 - 3000, prefetcher.remainingBudget());
+    }
+
+    @Test
+    public void prefetch_isOffWhenThePolicyAllowsNoBody() throws IOException {
+        RecordingSource source = new RecordingSource(1000);
+        ArticlePrefetcher prefetcher = newPrefetcher(
+                new ArticleBodyCache(folder.newFolder(), 1024 * 1024), source, 1024 * 1024);
+
+        assertEquals(0, prefetcher.prefetchNow(urls("a", "b"), 0, new CancellationSignal()));
+        assertTrue(source.requests.isEmpty());
+    }
+
+    @Test
+    public void cancel_stopsTheDownloadAndSavesNothing() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.ok(bodiesResponse(BASE + "a"), 5000);
+            }
+        });
+        ArticleBodyCache cache = new ArticleBodyCache(folder.newFolder(), 1024 * 1024);
+        ArticlePrefetcher prefetcher = newPrefetcher(cache, new ArticlePrefetcher.Source() {
+            @Override
+            public Map<String, String> request(List<String> articleUrls,
+                                               CancellationSignal signal, AtomicLong received)
+                    throws IOException {
+                return ArticleBodyFetcher.requestBodies(server.url("ids=a"), signal, received);
+            }
+        }, 1024 * 1024);
+        final CancellationSignal signal = new CancellationSignal();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ignored) {
+                }
+                // The user scrolled away.
+                signal.cancel();
+            }
+        }).start();
+
+        long start = System.nanoTime();
+        try {
+            prefetcher.prefetchNow(urls("a"), 3, signal);
+            fail("The cancelled prefetch should have been reported");
+        } catch (InterruptedIOException expected) {
+        }
+
+        assertTrue(System.nanoTime() - start < 2000 * 1000000L);
+        assertFalse(cache.contains(BASE + "a"));
+    }
+
+    @Test
+    public void load_readsThePrefetchedArticleOffline() throws IOException {
+        ArticleBodyCache cache = new ArticleBodyCache(folder.newFolder(), 1024 * 1024);
+        RecordingSource source = new RecordingSource(1000);
+        newPrefetcher(cache, source, 1024 * 1024).prefetchNow(urls("a"), 3,
+                new CancellationSignal());
+
+        ArticlePrefetcher offline = newPrefetcher(cache, new ArticlePrefetcher.Source() {
+            @Override
+            public Map<String, String> request(List<String> articleUrls,
+                                               CancellationSignal signal, AtomicLong received)
+                    throws IOException {
+                throw new IOException("No connection");
+            }
+        }, 1024 * 1024);
+
+        assertEquals(body(BASE + "a"), offline.load(BASE + "a", new CancellationSignal()));
+        try {
+            offline.load(BASE + "b", new CancellationSignal());
+            fail("An article that wasn't prefetched needs the network");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void load_downloadsAndKeepsAnArticleNotPrefetched() throws IOException {
+        ArticleBodyCache cache = new ArticleBodyCache(folder.newFolder(), 1024 * 1024);
+        RecordingSource source = new RecordingSource(1000);
+        ArticlePrefetcher prefetcher = newPrefetcher(cache, source, 1024 * 1024);
+
+        assertEquals(body(BASE + "a"), prefetcher.load(BASE + "a", new CancellationSignal()));
+        assertEquals(body(BASE + "a"), prefetcher.load(BASE + "a", new CancellationSignal()));
+
+        assertEquals(1, source.requests.size());
+        // What the user opens isn't charged to the prefetch.
+        assertEquals(1024 * 1024, prefetcher.remainingBudget());
+    }
+
+    private static ArticlePrefetcher newPrefetcher(ArticleBodyCache cache,
+                                                   ArticlePrefetcher.Source source,
+                                                   long dailyBudgetBytes) {
+        return new ArticlePrefetcher(cache, source,
+                MultiTopicFetcher.newExecutor("test-prefetch", 1), dailyBudgetBytes, null);
+    }
+
+    private static List<String> urls(String... names) {
+        List<String> urls = new ArrayList<>();
+        for (String name : names) {
+            urls.add(BASE + name);
+        }
+        return urls;
+    }
+
+    private static String body(String url) {
+        return "The text of " + url + ".";
+    }
+
+    // A search response with the body of every given article.
+    private static String bodiesResponse(String... urls) {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+        for (int i = 0; i < urls.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(ArticleBodyFetcher.articleId(urls[i]))
+                    .append("\",\"webUrl\":\"").append(urls[i])
+                    .append("\",\"fields\":{\"bodyText\":\"").append(body(urls[i]))
+                    .append("\"}}");
+        }
+        return json.append("]}}").toString();
+    }
+
+    // Answers every request with a body per article, and remembers what was asked for.
+    private static final class RecordingSource implements ArticlePrefetcher.Source {
+
+        final List<List<String>> requests = new ArrayList<>();
+        private final long bytesPerResponse;
+
+        RecordingSource(long bytesPerResponse) {
+            this.bytesPerResponse = bytesPerResponse;
+        }
+
+        @Override
+        public Map<String, String> request(List<String> articleUrls, CancellationSignal signal,
+                                           AtomicLong received) {
+            requests.add(new ArrayList<>(articleUrls));
+            received.addAndGet(bytesPerResponse);
+            Map<String, String> texts = new LinkedHashMap<>();
+            for (String url : articleUrls) {
+                texts.put(url, body(url));
+            }
+            return texts;
+        }
+    }
+}
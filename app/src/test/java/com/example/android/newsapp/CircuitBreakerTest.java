@@ -0,0 +1,78 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how the {@link CircuitBreaker} opens, lets a trial request through and closes again.
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterTheFailuresInARow() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+
+        fail(breaker);
+        fail(breaker);
+        // A success in between starts the count over.
+        assertTrue(breaker.allowRequest());
+        breaker.onSuccess();
+        fail(breaker);
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void halfOpen_letsOneTrialThrough() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        fail(breaker);
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(80);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        // The other requests wait for the end of the trial.
+        assertFalse(breaker.allowRequest());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failedTrial_opensAgain() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(3, 50);
+        fail(breaker);
+        fail(breaker);
+        fail(breaker);
+        Thread.sleep(80);
+
+        // One failed trial is enough, the count of failures doesn't start over.
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void abandonedTrial_letsTheNextOneThrough() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        fail(breaker);
+        Thread.sleep(80);
+
+        assertTrue(breaker.allowRequest());
+        breaker.onAbandoned();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    // One request that is allowed, then fails.
+    private static void fail(CircuitBreaker breaker) {
+        assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for the guardian open platform search endpoint, for JVM unit tests.
+ * Every request is answered by the {@link Responder}, and the server keeps count of the requests,
+ * of the connections they came on and of how many were in flight at the same time.
+ * <p>
+ * The responder can also inject faults: error statuses, slow responses and connections dropped
+ * without any response.
+ */
+class FakeGuardianServer {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Builds the response for one request.
+     */
+    interface Responder {
+        Response respond(Request request) throws Exception;
+    }
+
+    /**
+     * A request received by the server.
+     */
+    static final class Request {
+        final String path;
+        final Map<String, String> parameters;
+        final Map<String, String> headers;
+        // The client port identifies the connection the request came on.
+        final int remotePort;
+
+        Request(String path, Map<String, String> parameters, Map<String, String> headers,
+                int remotePort) {
+            this.path = path;
+            this.parameters = parameters;
+            this.headers = headers;
+            this.remotePort = remotePort;
+        }
+
+        String parameter(String name) {
+            return parameters.get(name);
+        }
+
+        /**
+         * Returns the value of the given header, ignoring the case of its name.
+         */
+        String header(String name) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The response to send back.
+     */
+    static final class Response {
+        // Status of a connection closed without a response.
+        static final int DROP = -1;
+
+        final int status;
+        final byte[] body;
+        final long delayMillis;
+        final Map<String, String> headers = new LinkedHashMap<>();
+
+        Response(int status, byte[] body, long delayMillis) {
+            this.status = status;
+            this.body = body;
+            this.delayMillis = delayMillis;
+        }
+
+        static Response ok(String json) {
+            return new Response(200, json.getBytes(UTF_8), 0);
+        }
+
+        static Response ok(String json, long delayMillis) {
+            return new Response(200, json.getBytes(UTF_8), delayMillis);
+        }
+
+        static Response status(int status) {
+            return new Response(status, new byte[0], 0);
+        }
+
+        // Closes the connection after the given delay, without sending anything.
+        static Response drop(long delayMillis) {
+            return new Response(DROP, new byte[0], delayMillis);
+        }
+
+        // A gzip compressed 200 response.
+        static Response gzip(String json) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+            gzip.write(json.getBytes(UTF_8));
+            gzip.close();
+            return new Response(200, bytes.toByteArray(), 0).header("Content-Encoding", "gzip");
+        }
+
+        Response header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+    }
+
+    private final HttpServer server;
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    FakeGuardianServer(final Responder responder) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int current = inFlight.incrementAndGet();
+                while (true) {
+                    int max = maxInFlight.get();
+                    if (current <= max || maxInFlight.compareAndSet(max, current)) {
+                        break;
+                    }
+                }
+                try {
+                    Request request = toRequest(exchange);
+                    requests.add(request);
+                    Response response = responder.respond(request);
+                    if (response.delayMillis > 0) {
+                        Thread.sleep(response.delayMillis);
+                    }
+                    if (response.status == Response.DROP) {
+                        // Closed by the finally block, before any header was sent.
+                        return;
+                    }
+                    for (Map.Entry<String, String> header : response.headers.entrySet()) {
+                        exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+                    }
+                    boolean noBody = response.body.length == 0;
+                    exchange.sendResponseHeaders(response.status,
+                            noBody ? -1 : response.body.length);
+                    if (!noBody) {
+                        OutputStream out = exchange.getResponseBody();
+                        out.write(response.body);
+                        out.close();
+                    }
+                } catch (Exception e) {
+                    exchange.sendResponseHeaders(500, -1);
+                } finally {
+                    inFlight.decrementAndGet();
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Returns the URL of the search endpoint with the given query string.
+     */
+    String url(String query) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/search?" + query;
+    }
+
+    int requestCount() {
+        return requests.size();
+    }
+
+    List<Request> requests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    /**
+     * Returns the number of different connections the requests came on.
+     */
+    int connectionCount() {
+        Set<Integer> ports = new HashSet<>();
+        for (Request request : requests()) {
+            ports.add(request.remotePort);
+        }
+        return ports.size();
+    }
+
+    int maxConcurrentRequests() {
+        return maxInFlight.get();
+    }
+
+    void shutdown() {
+        server.stop(0);
+    }
+
+    private static Request toRequest(HttpExchange exchange) throws IOException {
+        URI uri = exchange.getRequestURI();
+        Map<String, String> parameters = new LinkedHashMap<>();
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = equals < 0 ? parameter : parameter.substring(0, equals);
+                String value = equals < 0 ? "" : parameter.substring(equals + 1);
+                parameters.put(URLDecoder.decode(name, "UTF-8"),
+                        URLDecoder.decode(value, "UTF-8"));
+            }
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            headers.put(header.getKey(), header.getValue().get(0));
+        }
+        return new Request(uri.getPath(), parameters, headers,
+                exchange.getRemoteAddress().getPort());
+    }
+
+    /**
+     * Returns a search response that contains the given articles.
+     */
+    static String searchResponse(News... news) {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+        for (int i = 0; i < news.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"sectionName\":\"").append(news[i].getSection())
+                    .append("\",\"webTitle\":\"").append(news[i].getTitle())
+                    .append("\",\"webPublicationDate\":\"").append(news[i].getTime())
+                    .append("\",\"webUrl\":\"").append(news[i].getUrl())
+                    .append("\",\"tags\":[{\"webTitle\":\"").append(news[i].getAuthor())
+                    .append("\"}]");
+            if (news[i].getThumbnail() != null) {
+                json.append(",\"fields\":{\"thumbnail\":\"").append(news[i].getThumbnail())
+                        .append("\"}");
+            }
+            json.append('}');
+        }
+        return json.append("]}}").toString();
+    }
+}
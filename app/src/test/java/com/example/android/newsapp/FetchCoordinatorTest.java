@@ -0,0 +1,254 @@
+package com.example.android.newsapp;
+
+import androidx.core.os.CancellationSignal;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Concurrency tests of {@link FetchCoordinator}: callers asking for the same key at the same time
+ * share one request, and a request nobody waits for anymore is cancelled.
+ */
+public class FetchCoordinatorTest {
+
+    private static final int CALLERS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService executor = MultiTopicFetcher.newExecutor("test-request", 4);
+    private FakeGuardianServer server;
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentCallers_shareOneRequest() throws Exception {
+        final FetchCoordinator<String> coordinator = new FetchCoordinator<>(executor);
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        FetchCoordinator.Task<String> task = new FetchCoordinator.Task<String>() {
+            @Override
+            public String run(CancellationSignal signal) throws Exception {
+                calls.incrementAndGet();
+                release.await();
+                return "result";
+            }
+        };
+
+        List<Caller<String>> callers = startCallers(coordinator, "key", task, CALLERS);
+        awaitWaiting(callers);
+        release.countDown();
+
+        for (Caller<String> caller : callers) {
+            assertEquals("result", caller.await());
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, coordinator.inFlightCount());
+    }
+
+    @Test
+    public void differentKeys_runSeparately() throws Exception {
+        FetchCoordinator<String> coordinator = new FetchCoordinator<>(executor);
+
+        assertEquals("a", coordinator.fetch("a", constant("a")));
+        assertEquals("b", coordinator.fetch("b", constant("b")));
+        // A finished request is not reused, the caches are there for that.
+        assertEquals("c", coordinator.fetch("a", constant("c")));
+    }
+
+    @Test
+    public void failure_isSharedThenForgotten() throws Exception {
+        final FetchCoordinator<String> coordinator = new FetchCoordinator<>(executor);
+        final CountDownLatch release = new CountDownLatch(1);
+        FetchCoordinator.Task<String> failing = new FetchCoordinator.Task<String>() {
+            @Override
+            public String run(CancellationSignal signal) throws Exception {
+                release.await();
+                throw new IOException("offline");
+            }
+        };
+
+        List<Caller<String>> callers = startCallers(coordinator, "key", failing, 3);
+        awaitWaiting(callers);
+        release.countDown();
+        for (Caller<String> caller : callers) {
+            caller.thread.join();
+            assertTrue(caller.error.get() instanceof ExecutionException);
+            assertTrue(caller.error.get().getCause() instanceof IOException);
+        }
+
+        assertEquals("retried", coordinator.fetch("key", constant("retried")));
+    }
+
+    @Test
+    public void request_isCancelledWhenTheLastCallerGivesUp() throws Exception {
+        final FetchCoordinator<String> coordinator = new FetchCoordinator<>(executor);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicReference<CancellationSignal> taskSignal = new AtomicReference<>();
+        FetchCoordinator.Task<String> slow = new FetchCoordinator.Task<String>() {
+            @Override
+            public String run(CancellationSignal signal) throws Exception {
+                taskSignal.set(signal);
+                started.countDown();
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return "too late";
+            }
+        };
+
+        List<Caller<String>> callers = startCallers(coordinator, "key", slow, 2);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        awaitWaiting(callers);
+
+        // One caller gives up, the other one still waits so the request keeps running.
+        callers.get(0).thread.interrupt();
+        callers.get(0).thread.join();
+        assertTrue(callers.get(0).error.get() instanceof InterruptedException);
+        assertEquals(1, coordinator.inFlightCount());
+        assertEquals(1, interrupted.getCount());
+        assertFalse(taskSignal.get().isCanceled());
+
+        // The last caller gives up, so the request is cancelled.
+        callers.get(1).thread.interrupt();
+        callers.get(1).thread.join();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(taskSignal.get().isCanceled());
+        assertEquals(0, coordinator.inFlightCount());
+    }
+
+    @Test
+    public void repository_concurrentLoadsOfTheSameUrlMakeOneHttpRequest() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.ok(FakeGuardianServer.searchResponse(
+                        new News("Technology", "Title", "2020-04-21T10:00:00Z", "Author",
+                                "https://www.theguardian.com/a")), 300);
+            }
+        });
+        final NewsRepository repository = new NewsRepository(
+                new NewsMemoryCache(NewsMemoryCache.DEFAULT_MAX_ARTICLES, 60000),
+                new NewsDiskCache(folder.newFolder(), 1024 * 1024, 60000), null,
+                new NewsSearchIndex());
+        final String url = server.url("q=android&page=1");
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<NewsRepository.Result> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    // Skip the caches, like a refresh, so every caller goes to the network.
+                    NewsRepository.Result result = repository.load(url, true);
+                    synchronized (results) {
+                        results.add(result);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, server.requestCount());
+        assertEquals(CALLERS, results.size());
+        for (NewsRepository.Result result : results) {
+            assertSame(results.get(0), result);
+        }
+    }
+
+    private static FetchCoordinator.Task<String> constant(final String value) {
+        return new FetchCoordinator.Task<String>() {
+            @Override
+            public String run(CancellationSignal signal) {
+                return value;
+            }
+        };
+    }
+
+    private static <V> List<Caller<V>> startCallers(FetchCoordinator<V> coordinator, String key,
+                                                    FetchCoordinator.Task<V> task, int count) {
+        List<Caller<V>> callers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Caller<V> caller = new Caller<>(coordinator, key, task);
+            caller.thread.start();
+            callers.add(caller);
+        }
+        return callers;
+    }
+
+    // Wait until every caller is blocked waiting for the shared request.
+    private static void awaitWaiting(List<? extends Caller<?>> callers)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        for (Caller<?> caller : callers) {
+            while (caller.thread.getState() != Thread.State.WAITING) {
+                assertTrue("caller never waited", System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    // A thread asking the coordinator for one key, with what it got back.
+    private static final class Caller<V> {
+        final AtomicReference<V> result = new AtomicReference<>();
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        final Thread thread;
+
+        Caller(final FetchCoordinator<V> coordinator, final String key,
+               final FetchCoordinator.Task<V> task) {
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        result.set(coordinator.fetch(key, task));
+                    } catch (Exception e) {
+                        error.set(e);
+                    }
+                }
+            });
+        }
+
+        V await() throws Exception {
+            thread.join();
+            if (error.get() != null) {
+                throw error.get();
+            }
+            return result.get();
+        }
+    }
+}
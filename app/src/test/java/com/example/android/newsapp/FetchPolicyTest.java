@@ -0,0 +1,167 @@
+package com.example.android.newsapp;
+
+import android.telephony.TelephonyManager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the limits the {@link FetchPolicy} sets for simulated network profiles and measures.
+ */
+public class FetchPolicyTest {
+
+    private static final long MILLIS = 1000000L;
+    private static final long SECONDS = 1000 * MILLIS;
+
+    private static final NetworkProfile WIFI =
+            new NetworkProfile(NetworkProfile.TYPE_WIFI, false, false);
+    private static final NetworkProfile LTE_METERED =
+            new NetworkProfile(NetworkProfile.TYPE_CELLULAR_4G, true, false);
+    private static final NetworkProfile EDGE_METERED =
+            new NetworkProfile(NetworkProfile.TYPE_CELLULAR_2G, true, false);
+    private static final NetworkProfile WIFI_POWER_SAVE =
+            new NetworkProfile(NetworkProfile.TYPE_WIFI, false, true);
+
+    @Test
+    public void fastWifi_getsFullPagesThumbnailsAndAnEarlyPrefetch() {
+        FetchPolicy policy = policy(WIFI);
+        // 200 KB in 100 ms, answered in 50 ms.
+        policy.onResponse(200 * 1024, 50 * MILLIS, 100 * MILLIS);
+
+        FetchPolicy.Limits limits = policy.current();
+        assertEquals(FetchPolicy.TIER_FAST, limits.getTier());
+        assertEquals(50, limits.limitPageSize(50));
+        assertTrue(limits.shouldDownloadThumbnails());
+        assertEquals(10, limits.getPrefetchDistance());
+        assertEquals(8, limits.getBodyPrefetchCount());
+        assertEquals(10000, limits.getReadTimeoutMillis());
+    }
+
+    @Test
+    public void meteredLte_getsModeratePages() {
+        FetchPolicy.Limits limits = policy(LTE_METERED).current();
+
+        assertEquals(FetchPolicy.TIER_MODERATE, limits.getTier());
+        assertEquals(20, limits.limitPageSize(50));
+        assertEquals(10, limits.limitPageSize(10));
+        assertTrue(limits.shouldDownloadThumbnails());
+    }
+
+    @Test
+    public void edge_getsSmallPagesWithoutThumbnailsAndLongerTimeouts() {
+        FetchPolicy.Limits limits = policy(EDGE_METERED).current();
+
+        assertEquals(FetchPolicy.TIER_SLOW, limits.getTier());
+        assertEquals(10, limits.limitPageSize(50));
+        assertFalse(limits.shouldDownloadThumbnails());
+        assertTrue(limits.getReadTimeoutMillis() > 10000);
+        assertTrue(limits.getPrefetchDistance() < 5);
+        assertEquals(0, limits.getBodyPrefetchCount());
+    }
+
+    @Test
+    public void slowHotspot_isSlowWhateverItsType() {
+        FetchPolicy policy = policy(WIFI);
+        // 40 KB in 2 seconds is 160 kbps.
+        policy.onResponse(40 * 1024, 300 * MILLIS, 2 * SECONDS);
+
+        FetchPolicy.Limits limits = policy.current();
+        assertEquals(FetchPolicy.TIER_SLOW, limits.getTier());
+        assertEquals(10, limits.limitPageSize(50));
+    }
+
+    @Test
+    public void highLatency_lengthensTheTimeouts() {
+        FetchPolicy policy = policy(WIFI);
+        policy.onResponse(0, 2500 * MILLIS, 0);
+
+        FetchPolicy.Limits limits = policy.current();
+        assertEquals(FetchPolicy.TIER_SLOW, limits.getTier());
+        assertEquals(20000, limits.getReadTimeoutMillis());
+        assertEquals(20000, limits.getConnectTimeoutMillis());
+
+        policy.onResponse(0, 3500 * MILLIS, 0);
+        // 2500 + 0.3 * 1000 = 2800 ms, times 8.
+        assertEquals(22400, policy.current().getReadTimeoutMillis());
+    }
+
+    @Test
+    public void smallResponses_dontMeasureTheBandwidth() {
+        FetchPolicy policy = policy(WIFI);
+        policy.onResponse(FetchPolicy.MIN_BANDWIDTH_SAMPLE_BYTES - 1, 20 * MILLIS, 1 * SECONDS);
+
+        assertEquals(-1, policy.getBandwidthKbps(), 0);
+        assertEquals(20, policy.getLatencyMillis(), 0.001);
+        assertEquals(FetchPolicy.TIER_FAST, policy.current().getTier());
+    }
+
+    @Test
+    public void oneOddResponse_doesntDecideAlone() {
+        FetchPolicy policy = policy(WIFI);
+        for (int i = 0; i < 5; i++) {
+            policy.onResponse(100 * 1024, 50 * MILLIS, 100 * MILLIS);
+        }
+        // Ten times slower once.
+        policy.onResponse(100 * 1024, 50 * MILLIS, SECONDS);
+
+        assertEquals(FetchPolicy.TIER_FAST, policy.current().getTier());
+    }
+
+    @Test
+    public void timeout_makesTheConnectionSlow() {
+        FetchPolicy policy = policy(WIFI);
+        policy.onResponse(100 * 1024, 50 * MILLIS, 100 * MILLIS);
+
+        policy.onTimeout();
+
+        FetchPolicy.Limits limits = policy.current();
+        assertEquals(FetchPolicy.TIER_SLOW, limits.getTier());
+        assertTrue(limits.getReadTimeoutMillis() > 10000);
+    }
+
+    @Test
+    public void newNetwork_forgetsTheMeasures() {
+        FetchPolicy policy = policy(WIFI);
+        policy.onResponse(40 * 1024, 300 * MILLIS, 2 * SECONDS);
+
+        policy.setNetworkProfile(LTE_METERED);
+        assertEquals(-1, policy.getBandwidthKbps(), 0);
+        assertEquals(FetchPolicy.TIER_MODERATE, policy.current().getTier());
+
+        // Only the metered flag changed: the same network, the measures stay.
+        policy.onResponse(40 * 1024, 300 * MILLIS, 2 * SECONDS);
+        policy.setNetworkProfile(new NetworkProfile(NetworkProfile.TYPE_CELLULAR_4G, false,
+                false));
+        assertEquals(FetchPolicy.TIER_SLOW, policy.current().getTier());
+    }
+
+    @Test
+    public void batterySaver_stopsThumbnailsAndMostOfThePrefetch() {
+        FetchPolicy.Limits limits = policy(WIFI_POWER_SAVE).current();
+
+        assertEquals(FetchPolicy.TIER_FAST, limits.getTier());
+        assertEquals(50, limits.limitPageSize(50));
+        assertFalse(limits.shouldDownloadThumbnails());
+        assertEquals(2, limits.getPrefetchDistance());
+        assertEquals(0, limits.getBodyPrefetchCount());
+    }
+
+    @Test
+    public void cellularGenerations() {
+        assertEquals(NetworkProfile.TYPE_CELLULAR_2G,
+                NetworkProfile.cellularType(TelephonyManager.NETWORK_TYPE_EDGE));
+        assertEquals(NetworkProfile.TYPE_CELLULAR_3G,
+                NetworkProfile.cellularType(TelephonyManager.NETWORK_TYPE_HSDPA));
+        assertEquals(NetworkProfile.TYPE_CELLULAR_4G,
+                NetworkProfile.cellularType(TelephonyManager.NETWORK_TYPE_LTE));
+        assertEquals(NetworkProfile.TYPE_UNKNOWN,
+                NetworkProfile.cellularType(TelephonyManager.NETWORK_TYPE_UNKNOWN));
+    }
+
+    private static FetchPolicy policy(NetworkProfile profile) {
+        FetchPolicy policy = new FetchPolicy();
+        policy.setNetworkProfile(profile);
+        return policy;
+    }
+}
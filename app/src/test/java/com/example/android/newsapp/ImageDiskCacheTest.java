@@ -0,0 +1,105 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ImageDiskCacheTest {
+
+    private static final String URL = "https://media.guim.co.uk/a/500.jpg";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void putThenGet_returnsSameBytes() throws IOException {
+        ImageDiskCache cache = new ImageDiskCache(folder.newFolder(), 1024 * 1024);
+        cache.put(URL, stream(bytes(1000, 7)));
+
+        File file = cache.get(URL);
+        assertNotNull(file);
+        assertArrayEquals(bytes(1000, 7), read(file));
+        assertEquals(1000, cache.size());
+        assertNull(cache.get("https://media.guim.co.uk/b/500.jpg"));
+    }
+
+    @Test
+    public void failedRead_savesNothing() throws IOException {
+        File directory = folder.newFolder();
+        ImageDiskCache cache = new ImageDiskCache(directory, 1024 * 1024);
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+
+        try {
+            cache.put(URL, broken);
+            fail("The read error must reach the caller");
+        } catch (IOException expected) {
+            // The caller logs it and shows no image.
+        }
+        assertNull(cache.get(URL));
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void overBudget_evictsLeastRecentlyUsed() throws IOException {
+        // Room for two images, but not three.
+        ImageDiskCache cache = new ImageDiskCache(folder.newFolder(), 2500);
+        cache.put("first", stream(bytes(1000, 1)));
+        cache.put("second", stream(bytes(1000, 2)));
+        // Reading "first" makes "second" the least recently used image.
+        assertNotNull(cache.get("first"));
+        cache.put("third", stream(bytes(1000, 3)));
+
+        assertNotNull(cache.get("first"));
+        assertNull(cache.get("second"));
+        assertNotNull(cache.get("third"));
+        assertEquals(2000, cache.size());
+    }
+
+    @Test
+    public void remove_deletesTheImage() throws IOException {
+        ImageDiskCache cache = new ImageDiskCache(folder.newFolder(), 1024 * 1024);
+        cache.put(URL, stream(bytes(10, 1)));
+        cache.remove(URL);
+
+        assertNull(cache.get(URL));
+        assertEquals(0, cache.size());
+    }
+
+    private static byte[] bytes(int count, int value) {
+        byte[] bytes = new byte[count];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private static InputStream stream(byte[] bytes) {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
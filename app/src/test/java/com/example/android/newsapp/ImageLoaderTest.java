@@ -0,0 +1,24 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImageLoaderTest {
+
+    @Test
+    public void inSampleSize_isTheLargestPowerOfTwoThatCoversTheView() {
+        // A Guardian thumbnail in a 90dp x 54dp view on a xxhdpi screen (270 x 162 px).
+        assertEquals(1, ImageLoader.calculateInSampleSize(500, 300, 270, 162));
+        // On a mdpi screen (90 x 54 px).
+        assertEquals(4, ImageLoader.calculateInSampleSize(500, 300, 90, 54));
+        // Both sides must still cover the view.
+        assertEquals(2, ImageLoader.calculateInSampleSize(1000, 300, 100, 100));
+    }
+
+    @Test
+    public void inSampleSize_neverScalesUp() {
+        assertEquals(1, ImageLoader.calculateInSampleSize(100, 60, 270, 162));
+        assertEquals(1, ImageLoader.calculateInSampleSize(500, 300, 0, 0));
+    }
+}
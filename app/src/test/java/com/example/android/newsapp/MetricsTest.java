@@ -0,0 +1,75 @@
+package com.example.android.newsapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @Before
+    public void setUp() {
+        Metrics.reset();
+    }
+
+    @Test
+    public void buckets_coverEveryValueInOrder() {
+        assertEquals(0, Metrics.Histogram.bucketOf(0));
+        assertEquals(3, Metrics.Histogram.bucketOf(3));
+        int previous = 0;
+        for (long value = 1; value < 100000; value++) {
+            int bucket = Metrics.Histogram.bucketOf(value);
+            assertTrue(bucket == previous || bucket == previous + 1);
+            assertTrue(value <= Metrics.Histogram.upperBound(bucket));
+            // Buckets are at most 25% wide.
+            assertTrue(Metrics.Histogram.upperBound(bucket) <= value * 1.25 + 1);
+            previous = bucket;
+        }
+        assertEquals(Long.MAX_VALUE,
+                Metrics.Histogram.upperBound(Metrics.Histogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void histogram_keepsExactStatsAndApproximatePercentiles() {
+        for (int value = 1; value <= 1000; value++) {
+            Metrics.record("values", value);
+        }
+        Metrics.Histogram histogram = Metrics.histogram("values");
+
+        assertFalse(histogram.isTimer());
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 0);
+        assertEquals(1, histogram.getMin());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500, histogram.getPercentile(0.5), 500 * 0.25);
+        assertEquals(900, histogram.getPercentile(0.9), 900 * 0.25);
+        assertEquals(1000, histogram.getPercentile(1));
+    }
+
+    @Test
+    public void timer_recordsTheElapsedTime() throws InterruptedException {
+        long start = Metrics.begin("sleep");
+        Thread.sleep(5);
+        Metrics.end("sleep", start);
+
+        Metrics.Histogram timer = Metrics.histogram("sleep");
+        assertTrue(timer.isTimer());
+        assertEquals(1, timer.getCount());
+        assertTrue(timer.getMax() >= 5000000);
+    }
+
+    @Test
+    public void report_listsTimersValuesCountersAndHitRates() {
+        Metrics.end("http.connect", System.nanoTime());
+        Metrics.record("json.items", 10);
+        Metrics.count("news.memory.hit", 3);
+        Metrics.count("news.memory.miss");
+
+        String report = Metrics.report();
+
+        assertTrue(report.contains("http.connect"));
+        assertTrue(report.contains("json.items"));
+        assertTrue(report.matches("(?s).*news\\.memory\\.hit\\s+3\\n.*"));
+        assertTrue(report.matches("(?s).*news\\.memory\\s+75\\.0\\s+\\(3 of 4\\).*"));
+    }
+}
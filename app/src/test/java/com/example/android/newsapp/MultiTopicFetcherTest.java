@@ -0,0 +1,119 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MultiTopicFetcherTest {
+
+    private static final long DELAY_MILLIS = 400;
+
+    private FakeGuardianServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void fetch_mergesTopicsByDateAndRemovesDuplicates() throws Exception {
+        final Map<String, String> responses = new HashMap<>();
+        responses.put("android", FakeGuardianServer.searchResponse(
+                news("2020-04-21T10:00:00Z", "a"), news("2020-04-19T10:00:00Z", "b")));
+        responses.put("apple", FakeGuardianServer.searchResponse(
+                news("2020-04-20T10:00:00Z", "c"), news("2020-04-19T10:00:00Z", "b")));
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.ok(responses.get(request.parameter("q")));
+            }
+        });
+
+        List<News> merged = fetcher().fetch(
+                Arrays.asList(server.url("q=android"), server.url("q=apple")),
+                MultiTopicFetcher.NETWORK, true);
+
+        assertEquals(2, server.requestCount());
+        assertEquals(3, merged.size());
+        assertEquals("https://www.theguardian.com/a", merged.get(0).getUrl());
+        assertEquals("https://www.theguardian.com/c", merged.get(1).getUrl());
+        assertEquals("https://www.theguardian.com/b", merged.get(2).getUrl());
+    }
+
+    @Test
+    public void fetch_runsTopicsInParallel() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                String topic = request.parameter("q");
+                return FakeGuardianServer.Response.ok(FakeGuardianServer.searchResponse(
+                        news("2020-04-21T10:00:00Z", topic)), DELAY_MILLIS);
+            }
+        });
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < MultiTopicFetcher.MAX_PARALLEL_REQUESTS; i++) {
+            urls.add(server.url("q=topic" + i));
+        }
+
+        long start = System.nanoTime();
+        List<News> merged = fetcher().fetch(urls, MultiTopicFetcher.NETWORK, true);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(urls.size(), merged.size());
+        assertEquals(urls.size(), server.maxConcurrentRequests());
+        // Close to one request, far from the sum of all of them.
+        assertTrue("Took " + elapsedMillis + "ms",
+                elapsedMillis < DELAY_MILLIS * urls.size() / 2);
+    }
+
+    @Test
+    public void fetch_keepsTopicsThatLoaded() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                if (request.parameter("q").equals("broken")) {
+                    return FakeGuardianServer.Response.status(500);
+                }
+                return FakeGuardianServer.Response.ok(FakeGuardianServer.searchResponse(
+                        news("2020-04-21T10:00:00Z", "a")));
+            }
+        });
+
+        List<News> merged = fetcher().fetch(
+                Arrays.asList(server.url("q=working"), server.url("q=broken")),
+                MultiTopicFetcher.NETWORK, true);
+
+        assertEquals(1, merged.size());
+    }
+
+    @Test
+    public void merge_oldestFirst() {
+        List<List<News>> lists = new ArrayList<>();
+        lists.add(Arrays.asList(news("2020-04-21T10:00:00Z", "a")));
+        lists.add(Arrays.asList(news("2020-04-20T10:00:00Z", "b")));
+
+        List<News> merged = MultiTopicFetcher.merge(lists, false);
+
+        assertEquals("https://www.theguardian.com/b", merged.get(0).getUrl());
+        assertEquals("https://www.theguardian.com/a", merged.get(1).getUrl());
+    }
+
+    private static MultiTopicFetcher fetcher() {
+        return new MultiTopicFetcher(
+                MultiTopicFetcher.newExecutor(MultiTopicFetcher.MAX_PARALLEL_REQUESTS));
+    }
+
+    private static News news(String time, String slug) {
+        return new News("Technology", "Title " + slug, time, "Author",
+                "https://www.theguardian.com/" + slug);
+    }
+}
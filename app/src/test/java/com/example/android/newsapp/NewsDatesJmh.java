@@ -0,0 +1,78 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the date handling of one row of the list, for the 200 articles of a recorded
+ * response. Run it with {@code ./gradlew jmh}.
+ * <p>
+ * The adapter used to parse and format the date with two new SimpleDateFormats on every bind.
+ * Now the date is parsed and formatted once by {@link NewsDates} when the {@link News} is
+ * created, and the bind only reads it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class NewsDatesJmh {
+
+    private List<News> news;
+    private TimeZone timeZone;
+
+    // The article of the next operation, so every operation doesn't read the same date.
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        news = QueryUtils.extractFeatureFromStream(
+                NewsStreamParserTest.openFixture("guardian_search_200.json"));
+        timeZone = TimeZone.getDefault();
+    }
+
+    // What every bind did before.
+    @Benchmark
+    public String bindWithSimpleDateFormat() throws ParseException {
+        SimpleDateFormat originalDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ",
+                Locale.US);
+        Date date = originalDateFormat.parse(nextNews().getTime().replaceAll("Z$", "+0000"));
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        return dateFormat.format(date);
+    }
+
+    // What creating a News does now, once per article.
+    @Benchmark
+    public String parseAndFormatOnce() {
+        return NewsDates.formatDate(NewsDates.parse(nextNews().getTime()), timeZone);
+    }
+
+    // What every bind does now.
+    @Benchmark
+    public String bindWithDisplayDate() {
+        return nextNews().getDisplayDate();
+    }
+
+    private News nextNews() {
+        next = (next + 1) % news.size();
+        return news.get(next);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class NewsDatesTest {
+
+    @Test
+    public void parse_matchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US);
+        String[] times = {"2020-04-21T10:00:00Z", "1970-01-01T00:00:00Z", "1969-12-31T23:59:59Z",
+                "2000-02-29T12:34:56Z", "2019-12-31T23:59:59Z", "2100-03-01T00:00:00Z"};
+        for (String time : times) {
+            assertEquals(time, format.parse(time.replaceAll("Z$", "+0000")).getTime(),
+                    NewsDates.parse(time));
+        }
+    }
+
+    @Test
+    public void parse_offsetsAndFractions() {
+        long utc = NewsDates.parse("2020-04-21T10:00:00Z");
+        assertEquals(utc, NewsDates.parse("2020-04-21T11:00:00+01:00"));
+        assertEquals(utc, NewsDates.parse("2020-04-21T05:30:00-0430"));
+        assertEquals(utc + 250, NewsDates.parse("2020-04-21T10:00:00.25Z"));
+    }
+
+    @Test
+    public void parse_invalid_returnsUnknownTime() {
+        assertEquals(NewsDates.UNKNOWN_TIME, NewsDates.parse(null));
+        assertEquals(NewsDates.UNKNOWN_TIME, NewsDates.parse(""));
+        assertEquals(NewsDates.UNKNOWN_TIME, NewsDates.parse("yesterday"));
+        assertEquals(NewsDates.UNKNOWN_TIME, NewsDates.parse("2020-13-21T10:00:00Z"));
+        assertEquals(NewsDates.UNKNOWN_TIME, NewsDates.parse("2020-04-21T10:00:00"));
+    }
+
+    @Test
+    public void formatDate_matchesSimpleDateFormatInEveryTimeZone() throws Exception {
+        String[] zones = {"UTC", "America/Los_Angeles", "Asia/Kolkata", "Pacific/Kiritimati",
+                "Pacific/Pago_Pago"};
+        String[] times = {"2020-04-21T10:00:00Z", "2020-12-31T23:30:00Z", "2020-01-01T00:30:00Z",
+                "1969-12-31T23:59:59Z", "2024-02-29T08:00:00Z"};
+        for (String zone : zones) {
+            TimeZone timeZone = TimeZone.getTimeZone(zone);
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+            format.setTimeZone(timeZone);
+            for (String time : times) {
+                long millis = NewsDates.parse(time);
+                assertEquals(zone + " " + time, format.format(millis),
+                        NewsDates.formatDate(millis, timeZone));
+            }
+        }
+    }
+
+    @Test
+    public void formatTimestamp_roundTripsThroughParse() {
+        String[] times = {"2020-04-21T10:00:00Z", "1999-12-31T23:59:59Z", "2024-02-29T00:00:07Z"};
+        for (String time : times) {
+            assertEquals(time, NewsDates.formatTimestamp(NewsDates.parse(time)));
+        }
+        // The milliseconds are dropped.
+        assertEquals("2020-04-21T10:00:00Z",
+                NewsDates.formatTimestamp(NewsDates.parse("2020-04-21T10:00:00.999Z")));
+    }
+
+    @Test
+    public void displayDate_matchesWhatTheBindUsedToFormat() throws IOException, ParseException {
+        List<News> news = QueryUtils.extractFeatureFromStream(
+                NewsStreamParserTest.openFixture("guardian_search_200.json"));
+        for (News item : news) {
+            // The date handling the adapter used to do on every bind.
+            SimpleDateFormat originalDateFormat =
+                    new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US);
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            assertEquals(dateFormat.format(originalDateFormat.parse(
+                    item.getTime().replaceAll("Z$", "+0000"))), item.getDisplayDate());
+        }
+    }
+
+    @Test
+    public void news_unparsableTime_hasEmptyDisplayDate() {
+        News news = new News("Section", "Title", "not a date", "Author", "https://example.com");
+        assertEquals(NewsDates.UNKNOWN_TIME, news.getTimeInMillis());
+        assertEquals("", news.getDisplayDate());
+    }
+}
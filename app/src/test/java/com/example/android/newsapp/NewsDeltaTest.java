@@ -0,0 +1,77 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks where the incremental refresh starts from and how its articles are merged into the list.
+ */
+public class NewsDeltaTest {
+
+    private static final News OLD = news("old", "2020-04-21T08:00:00Z");
+    private static final News NEWEST_SHOWN = news("shown", "2020-04-21T10:00:00Z");
+    private static final News NEW = news("new", "2020-04-21T11:30:00Z");
+    private static final News NEWER = news("newer", "2020-04-21T12:00:00Z");
+
+    @Test
+    public void fromTime_isTheNewestArticleShown() {
+        long savedAt = NewsDates.parse("2020-04-21T10:05:00Z");
+
+        assertEquals("2020-04-21T10:00:00Z",
+                NewsDelta.fromTime(Arrays.asList(OLD, NEWEST_SHOWN), savedAt));
+    }
+
+    @Test
+    public void fromTime_isNeverAfterTheDownload() {
+        // One topic was downloaded at 9:00, before the newest article of another topic.
+        long savedAt = NewsDates.parse("2020-04-21T09:00:00Z");
+
+        assertEquals("2020-04-21T09:00:00Z",
+                NewsDelta.fromTime(Arrays.asList(OLD, NEWEST_SHOWN), savedAt));
+    }
+
+    @Test
+    public void fromTime_needsAListThatWasDownloaded() {
+        long savedAt = NewsDates.parse("2020-04-21T10:05:00Z");
+
+        assertNull(NewsDelta.fromTime(null, savedAt));
+        assertNull(NewsDelta.fromTime(Collections.<News>emptyList(), savedAt));
+        assertNull(NewsDelta.fromTime(
+                Collections.singletonList(news("undated", "not a date")), savedAt));
+        // The time of a list that failed to download isn't known.
+        assertNull(NewsDelta.fromTime(Arrays.asList(OLD, NEWEST_SHOWN), 0));
+    }
+
+    @Test
+    public void newArticles_leavesOutTheOnesShown() {
+        // The server includes the article published at the time the refresh starts from.
+        NewsDelta delta = new NewsDelta(Arrays.asList(NEWER, NEW, NEWEST_SHOWN), true);
+
+        assertEquals(Arrays.asList(NEWER, NEW),
+                delta.newArticles(Arrays.asList(NEWEST_SHOWN, OLD)));
+        assertTrue(new NewsDelta(Collections.singletonList(NEWEST_SHOWN), true)
+                .newArticles(Arrays.asList(NEWEST_SHOWN, OLD)).isEmpty());
+    }
+
+    @Test
+    public void merge_addsTheNewArticlesAtTheTop() {
+        List<News> shown = new ArrayList<>(Arrays.asList(NEWEST_SHOWN, OLD));
+
+        List<News> merged = NewsDelta.merge(shown, Arrays.asList(NEWER, NEW));
+
+        assertEquals(Arrays.asList(NEWER, NEW, NEWEST_SHOWN, OLD), merged);
+        // The list on screen is left as it was, for the adapter to compare.
+        assertEquals(Arrays.asList(NEWEST_SHOWN, OLD), shown);
+    }
+
+    private static News news(String name, String time) {
+        return new News("Technology", name, time, "Author",
+                "https://www.theguardian.com/technology/" + name);
+    }
+}
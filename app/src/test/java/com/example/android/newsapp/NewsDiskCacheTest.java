@@ -0,0 +1,87 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NewsDiskCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void putThenGet_returnsSameNews() throws IOException {
+        NewsDiskCache cache = new NewsDiskCache(folder.newFolder(), 1024 * 1024, 60000);
+        List<News> news = Arrays.asList(
+                new News("Technology", "Title – one", "2020-04-21T10:00:00Z", "Alex Hern",
+                        "https://www.theguardian.com/a"),
+                new News("Business", "Title two", "2020-04-20T10:00:00Z", "Kari Paul",
+                        "https://www.theguardian.com/b", "https://media.guim.co.uk/b/500.jpg"));
+        cache.put("key", news);
+
+        NewsDiskCache.Entry entry = cache.get("key");
+        assertNotNull(entry);
+        assertFalse(entry.isStale());
+        assertEquals(news.size(), entry.getNews().size());
+        for (int i = 0; i < news.size(); i++) {
+            NewsStreamParserTest.assertSameNews(news.get(i), entry.getNews().get(i));
+        }
+        assertNull(cache.get("other key"));
+    }
+
+    @Test
+    public void put_keepsValidators() throws IOException {
+        NewsDiskCache cache = new NewsDiskCache(folder.newFolder(), 1024 * 1024, 60000);
+        cache.put("with", articles("a", 1), "\"v1\"", "Tue, 21 Apr 2020 10:00:00 GMT");
+        cache.put("without", articles("a", 1));
+
+        assertEquals("\"v1\"", cache.get("with").getETag());
+        assertEquals("Tue, 21 Apr 2020 10:00:00 GMT", cache.get("with").getLastModified());
+        assertNull(cache.get("without").getETag());
+        assertNull(cache.get("without").getLastModified());
+    }
+
+    @Test
+    public void entryOlderThanMaxAge_isStale() throws IOException {
+        NewsDiskCache cache = new NewsDiskCache(folder.newFolder(), 1024 * 1024, -1);
+        cache.put("key", articles("a", 1));
+        assertTrue(cache.get("key").isStale());
+    }
+
+    @Test
+    public void overBudget_evictsLeastRecentlyUsed() throws IOException {
+        NewsDiskCache probe = new NewsDiskCache(folder.newFolder(), Long.MAX_VALUE, 60000);
+        probe.put("probe", articles("probe", 10));
+        long entrySize = probe.size();
+
+        // Room for two entries, but not three.
+        NewsDiskCache cache = new NewsDiskCache(folder.newFolder(), entrySize * 2 + 10, 60000);
+        cache.put("first", articles("first", 10));
+        cache.put("second", articles("second", 10));
+        // Reading "first" makes "second" the least recently used entry.
+        assertNotNull(cache.get("first"));
+        cache.put("third", articles("third", 10));
+
+        assertNotNull(cache.get("first"));
+        assertNull(cache.get("second"));
+        assertNotNull(cache.get("third"));
+        assertTrue(cache.size() <= entrySize * 2 + 10);
+    }
+
+    private static List<News> articles(String prefix, int count) {
+        List<News> news = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Same length for every prefix of the same length.
+            news.add(new News("Section", prefix.charAt(0) + " title " + i, "2020-04-21T10:00:00Z",
+                    "Author", "https://www.theguardian.com/" + i));
+        }
+        return news;
+    }
+}
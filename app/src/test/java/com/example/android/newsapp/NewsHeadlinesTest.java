@@ -0,0 +1,102 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the headlines the list saves for the home-screen widget.
+ */
+public class NewsHeadlinesTest {
+
+    private static final List<News> LIST = Arrays.asList(
+            news("a", "First", "2020-04-21T10:00:00Z"),
+            news("b", "Second", "2020-04-20T10:00:00Z"),
+            news("c", "Third", "2020-04-19T10:00:00Z"),
+            news("d", "Fourth", "2020-04-18T10:00:00Z"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void write_savesTheTopOfTheListAsTheAdapterShowsIt() throws IOException {
+        File file = new File(folder.getRoot(), "headlines");
+
+        assertTrue(NewsHeadlines.write(file, LIST, 1234L));
+
+        NewsSnapshot headlines = NewsHeadlines.read(file);
+        assertEquals(1234L, headlines.getSavedAt());
+        assertEquals(NewsHeadlines.MAX_HEADLINES, headlines.getNews().size());
+        for (int i = 0; i < NewsHeadlines.MAX_HEADLINES; i++) {
+            News shown = LIST.get(i);
+            News saved = headlines.getNews().get(i);
+            assertEquals(shown.getUrl(), saved.getUrl());
+            assertEquals(shown.getTitle(), saved.getTitle());
+            assertEquals(shown.getSection(), saved.getSection());
+            assertEquals(shown.getDisplayDate(), saved.getDisplayDate());
+        }
+        // A few hundred bytes, read without a request or any JSON.
+        assertTrue(file.length() < 512);
+    }
+
+    @Test
+    public void write_skipsTheSameHeadlines() throws IOException {
+        File file = new File(folder.getRoot(), "headlines");
+        NewsHeadlines.write(file, LIST, 1L);
+
+        // A refresh that found nothing new doesn't redraw the widget.
+        assertFalse(NewsHeadlines.write(file, LIST, 2L));
+        assertEquals(1L, NewsHeadlines.read(file).getSavedAt());
+
+        // Articles further down the list don't change the headlines either.
+        assertFalse(NewsHeadlines.write(file, LIST.subList(0, 3), 3L));
+    }
+
+    @Test
+    public void write_replacesChangedHeadlines() throws IOException {
+        File file = new File(folder.getRoot(), "headlines");
+        NewsHeadlines.write(file, LIST, 1L);
+
+        // A new article at the top.
+        News newest = news("e", "Newest", "2020-04-22T10:00:00Z");
+        assertTrue(NewsHeadlines.write(file, Arrays.asList(newest, LIST.get(0), LIST.get(1)), 2L));
+        assertEquals("Newest", NewsHeadlines.read(file).getNews().get(0).getTitle());
+
+        // An article whose title was corrected.
+        assertTrue(NewsHeadlines.write(file, Arrays.asList(news("e", "Newest, corrected",
+                "2020-04-22T10:00:00Z"), LIST.get(0), LIST.get(1)), 3L));
+        assertEquals("Newest, corrected", NewsHeadlines.read(file).getNews().get(0).getTitle());
+    }
+
+    @Test
+    public void read_returnsNullWithoutHeadlines() throws IOException {
+        assertNull(NewsHeadlines.read(new File(folder.getRoot(), "missing")));
+
+        // Another snapshot, or a damaged file.
+        File other = new File(folder.getRoot(), "other");
+        new NewsSnapshot("android|newest|10", 1, LIST).write(other);
+        assertNull(NewsHeadlines.read(other));
+
+        File damaged = new File(folder.getRoot(), "damaged");
+        FileOutputStream out = new FileOutputStream(damaged);
+        try {
+            out.write(new byte[]{1, 2, 3});
+        } finally {
+            out.close();
+        }
+        assertNull(NewsHeadlines.read(damaged));
+    }
+
+    private static News news(String name, String title, String time) {
+        return new News("Technology", title, time, "Author",
+                "https://www.theguardian.com/technology/" + name);
+    }
+}
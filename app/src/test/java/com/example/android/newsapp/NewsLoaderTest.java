@@ -0,0 +1,49 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks when the {@link NewsLoader} shows the page of the store without going further.
+ */
+public class NewsLoaderTest {
+
+    private static final long SYNCED_AT = 1587463200000L;
+
+    @Test
+    public void isServedFromStore_fullPageOfSyncedTopics() {
+        assertTrue(NewsLoader.isServedFromStore(query(10, 1), articles(10), SYNCED_AT));
+        assertTrue(NewsLoader.isServedFromStore(query(10, 2), articles(10), SYNCED_AT));
+    }
+
+    @Test
+    public void isServedFromStore_notWhenThePageSizeGrewSinceTheSync() {
+        // Synced with pages of 10 on a slow connection, opened on Wi-Fi with pages of 50.
+        assertFalse(NewsLoader.isServedFromStore(query(50, 1), articles(10), SYNCED_AT));
+    }
+
+    @Test
+    public void isServedFromStore_notForTopicsNeverDownloaded() {
+        assertFalse(NewsLoader.isServedFromStore(query(10, 1), articles(10), 0));
+        assertFalse(NewsLoader.isServedFromStore(query(10, 1), articles(0), 0));
+    }
+
+    private static NewsQuery query(int pageSize, int page) {
+        return new NewsQuery(Collections.singletonList("android"), NewsQuery.ORDER_NEWEST,
+                pageSize, page);
+    }
+
+    private static List<News> articles(int count) {
+        List<News> news = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            news.add(new News("Technology", "Title " + i, "2020-04-21T10:00:00Z", "Author",
+                    "https://www.theguardian.com/technology/" + i));
+        }
+        return news;
+    }
+}
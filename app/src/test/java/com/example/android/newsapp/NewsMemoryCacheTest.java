@@ -0,0 +1,65 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NewsMemoryCacheTest {
+
+    @Test
+    public void keyFor_usesOnlyQueryParameters() {
+        String first = "https://content.guardianapis.com/search?q=Android&tag=technology"
+                + "%2Ftechnology&order-by=newest&page-size=10&show-tags=contributor&api-key=a";
+        String second = "https://content.guardianapis.com/search?api-key=b&page-size=10"
+                + "&order-by=newest&tag=technology%2Ftechnology&q=Android";
+        assertEquals(NewsMemoryCache.keyFor(first), NewsMemoryCache.keyFor(second));
+        assertEquals("q=Android&order-by=newest&page-size=10&page=&tag=technology%2Ftechnology",
+                NewsMemoryCache.keyFor(first));
+        assertNotEquals(NewsMemoryCache.keyFor(first),
+                NewsMemoryCache.keyFor(first.replace("newest", "relevance")));
+        assertNotEquals(NewsMemoryCache.keyFor(first + "&page=1"),
+                NewsMemoryCache.keyFor(first + "&page=2"));
+    }
+
+    @Test
+    public void get_returnsTheListPut() {
+        NewsMemoryCache cache = new NewsMemoryCache(100, 60000);
+        assertNull(cache.get("key"));
+        cache.put("key", articles(3), System.currentTimeMillis());
+        assertEquals(3, cache.get("key").getNews().size());
+    }
+
+    @Test
+    public void get_dropsExpiredEntries() {
+        NewsMemoryCache cache = new NewsMemoryCache(100, 1000);
+        cache.put("key", articles(3), System.currentTimeMillis() - 2000);
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedOverArticleLimit() {
+        NewsMemoryCache cache = new NewsMemoryCache(10, 60000);
+        long now = System.currentTimeMillis();
+        cache.put("first", articles(4), now);
+        cache.put("second", articles(4), now);
+        cache.get("first");
+        cache.put("third", articles(4), now);
+
+        assertNotNull(cache.get("first"));
+        assertNull(cache.get("second"));
+        assertNotNull(cache.get("third"));
+    }
+
+    private static List<News> articles(int count) {
+        List<News> news = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            news.add(new News("Section", "Title " + i, "2020-04-21T10:00:00Z", "Author",
+                    "https://www.theguardian.com/" + i));
+        }
+        return news;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.android.newsapp;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the decoding of the recorded search responses, against the same responses
+ * asked for with the parameters of {@link NewsProjection#LIST}, at three page sizes. Run it with
+ * {@code ./gradlew jmh}.
+ * <p>
+ * The projected responses are derived from the recorded ones by
+ * {@link NewsProjectionTest#project}, which also checks that they are smaller.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class NewsProjectionJmh {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"10", "50", "200"})
+    public int pageSize;
+
+    private byte[] recorded;
+    private byte[] projected;
+
+    @Setup
+    public void setUp() throws IOException, JSONException {
+        // Both sides are written the same way, so only their content differs.
+        String json = new JSONObject(QueryUtils.readFromStream(NewsStreamParserTest.openFixture(
+                "guardian_search_" + pageSize + ".json"))).toString();
+        recorded = json.getBytes(UTF_8);
+        projected = NewsProjectionTest.project(json, NewsProjection.LIST).getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public List<News> decodeRecorded() throws IOException {
+        return QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(recorded));
+    }
+
+    @Benchmark
+    public List<News> decodeProjected() throws IOException {
+        return QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(projected));
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.android.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the request parameters a {@link NewsProjection} derives from the properties it shows,
+ * and that the responses asked for with them are smaller and give the same articles.
+ * <p>
+ * The recorded search responses were asked for with "show-tags=contributor" and
+ * "show-fields=thumbnail". The projected responses are derived from them the way the server
+ * builds them: the contributor tags are left out, and the "fields" object gets the byline, which
+ * is made of the names of the contributors.
+ */
+public class NewsProjectionTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] FIXTURES = {
+            "guardian_search_10.json", "guardian_search_50.json", "guardian_search_200.json"};
+
+    @Test
+    public void list_asksForTheBylineAndThumbnailInOneParameter() {
+        // The author comes from the byline, so the contributor tags are never asked for.
+        assertEquals("byline,thumbnail", NewsProjection.LIST.getShowFields());
+    }
+
+    @Test
+    public void list_neverAsksForTheBodies() {
+        assertFalse(NewsProjection.LIST.getProperties().contains(NewsProjection.Property.BODY));
+    }
+
+    @Test
+    public void bodies_asksOnlyForTheText() {
+        assertEquals("bodyText", NewsProjection.BODIES.getShowFields());
+    }
+
+    @Test
+    public void textOnly_leavesTheThumbnailOut() {
+        NewsProjection projection = new NewsProjection(EnumSet.complementOf(EnumSet.of(
+                NewsProjection.Property.THUMBNAIL, NewsProjection.Property.BODY)));
+
+        assertEquals("byline", projection.getShowFields());
+    }
+
+    @Test
+    public void baseProperties_needNoParameter() {
+        NewsProjection projection = new NewsProjection(EnumSet.of(
+                NewsProjection.Property.SECTION, NewsProjection.Property.TITLE,
+                NewsProjection.Property.PUBLICATION_DATE, NewsProjection.Property.URL));
+
+        assertNull(projection.getShowFields());
+    }
+
+    @Test
+    public void listPayload_isSmallerAndGivesTheSameArticles() throws Exception {
+        for (String fixture : FIXTURES) {
+            // Both sides are written the same way, so only their content differs.
+            String recorded = new JSONObject(
+                    QueryUtils.readFromStream(NewsStreamParserTest.openFixture(fixture)))
+                    .toString();
+            String projected = project(recorded, NewsProjection.LIST);
+            byte[] recordedBytes = recorded.getBytes(UTF_8);
+            byte[] projectedBytes = projected.getBytes(UTF_8);
+
+            assertTrue(fixture, projectedBytes.length < recordedBytes.length);
+            assertTrue(fixture, gzip(projectedBytes).length < gzip(recordedBytes).length);
+            assertSameArticles(decode(recordedBytes), decode(projectedBytes));
+            // The reference decoder reads the projected response the same way.
+            List<News> tree = QueryUtils.extractFeatureFromJson(projected);
+            List<News> stream = decode(projectedBytes);
+            for (int i = 0; i < tree.size(); i++) {
+                NewsStreamParserTest.assertSameNews(tree.get(i), stream.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the recorded response as the server would send it for the given projection.
+     */
+    static String project(String recorded, NewsProjection projection) throws JSONException {
+        String showFields = projection.getShowFields();
+        JSONObject response = new JSONObject(recorded);
+        JSONArray results = response.getJSONObject("response").getJSONArray("results");
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            JSONArray tags = result.optJSONArray("tags");
+            JSONObject recordedFields = result.optJSONObject("fields");
+            JSONObject fields = new JSONObject();
+            if (showFields != null) {
+                for (String field : showFields.split(",")) {
+                    if (field.equals("byline") && tags != null) {
+                        fields.put("byline", byline(tags));
+                    } else if (recordedFields != null && recordedFields.has(field)) {
+                        fields.put(field, recordedFields.getString(field));
+                    }
+                }
+            }
+            result.remove("fields");
+            if (showFields != null) {
+                result.put("fields", fields);
+            }
+            result.remove("tags");
+        }
+        return response.toString();
+    }
+
+    // The names of the contributors, like "A, B and C".
+    private static String byline(JSONArray tags) throws JSONException {
+        StringBuilder byline = new StringBuilder();
+        for (int i = 0; i < tags.length(); i++) {
+            if (i > 0) {
+                byline.append(i == tags.length() - 1 ? " and " : ", ");
+            }
+            byline.append(tags.getJSONObject(i).getString("webTitle"));
+        }
+        return byline.toString();
+    }
+
+    // The byline names every contributor, it starts with the one of the contributor tag.
+    private static void assertSameArticles(List<News> recorded, List<News> projected) {
+        assertEquals(recorded.size(), projected.size());
+        for (int i = 0; i < recorded.size(); i++) {
+            News expected = recorded.get(i);
+            News actual = projected.get(i);
+            assertEquals(expected.getSection(), actual.getSection());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getTime(), actual.getTime());
+            assertEquals(expected.getUrl(), actual.getUrl());
+            assertEquals(expected.getThumbnail(), actual.getThumbnail());
+            assertTrue(actual.getAuthor().startsWith(expected.getAuthor()));
+        }
+    }
+
+    private static List<News> decode(byte[] json) throws IOException {
+        return QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(json));
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(bytes);
+        gzip.close();
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how {@link NewsRepository} goes through the caches and the network, the way the
+ * background sync and the loader use it.
+ */
+public class NewsRepositoryTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private static final String RESPONSE = FakeGuardianServer.searchResponse(
+            new News("Technology", "Title", "2020-04-21T10:00:00Z", "Author",
+                    "https://www.theguardian.com/a"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeGuardianServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void sync_downloadsOnceWhileTheListIsFresh() throws Exception {
+        server = new FakeGuardianServer(okResponder());
+        File directory = folder.newFolder();
+        String url = server.url("q=android&page=1");
+
+        NewsRepository repository = newRepository(directory, 60000);
+        assertEquals(1, repository.sync(url).size());
+        assertEquals(1, repository.sync(url).size());
+        assertEquals(1, server.requestCount());
+
+        // A new process (empty memory cache) still finds the synced list on disk.
+        NewsRepository.Result result = newRepository(directory, 60000).load(url, false);
+        assertNotNull(result);
+        assertFalse(result.isStale());
+        assertEquals("Title", result.getNews().get(0).getTitle());
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    public void sync_revalidatesStaleListWithConditionalRequest() throws Exception {
+        server = new FakeGuardianServer(okResponder());
+        File directory = folder.newFolder();
+        String url = server.url("q=android&page=1");
+
+        assertNotNull(newRepository(directory, -1).sync(url));
+        List<News> news = newRepository(directory, -1).sync(url);
+
+        assertEquals(2, server.requestCount());
+        assertEquals(ETAG, server.requests().get(1).header("If-None-Match"));
+        assertEquals(1, news.size());
+        assertEquals("Title", news.get(0).getTitle());
+    }
+
+    @Test
+    public void load_servesStaleListWhenTheNetworkFails() throws Exception {
+        server = new FakeGuardianServer(okResponder());
+        File directory = folder.newFolder();
+        String url = server.url("q=android&page=1");
+        assertNotNull(newRepository(directory, -1).sync(url));
+        server.shutdown();
+        server = null;
+
+        NewsRepository offline = newRepository(directory, -1);
+        NewsRepository.Result result = offline.load(url, false);
+        assertNotNull(result);
+        assertTrue(result.isStale());
+        assertEquals(1, result.getNews().size());
+
+        // The sync reports the failure so it can be retried later.
+        assertNull(offline.sync(url));
+    }
+
+    @Test
+    public void refresh_servesTheCachedCopyWhileTheServerFails() throws Exception {
+        final AtomicBoolean failing = new AtomicBoolean(false);
+        final FakeGuardianServer.Responder okResponder = okResponder();
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request)
+                    throws Exception {
+                return failing.get() ? FakeGuardianServer.Response.status(503)
+                        : okResponder.respond(request);
+            }
+        });
+        String url = server.url("q=android&page=1");
+        NewsRepository repository = newRepository(folder.newFolder(), -1);
+        assertNotNull(repository.sync(url));
+        failing.set(true);
+
+        // Every try failed, so the copy on disk is served, and isn't flagged for a refresh.
+        NewsRepository.Result result = repository.load(url, true);
+        assertTrue(result.isFallback());
+        assertFalse(result.isStale());
+        assertEquals("Title", result.getNews().get(0).getTitle());
+        int requests = server.requestCount();
+
+        // Now the circuit is open: the copy is served right away, without any request.
+        long start = System.nanoTime();
+        result = repository.load(url, true);
+        assertTrue(System.nanoTime() - start < 100 * 1000000L);
+        assertTrue(result.isFallback());
+        assertEquals(requests, server.requestCount());
+    }
+
+    @Test
+    public void sync_returnsNullOnServerError() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.status(500);
+            }
+        });
+
+        assertNull(newRepository(folder.newFolder(), 60000).sync(server.url("q=android")));
+    }
+
+    @Test
+    public void loadNewer_returnsTheNewArticlesWithoutTouchingTheCaches() throws Exception {
+        server = new FakeGuardianServer(okResponder());
+        NewsRepository repository = newRepository(folder.newFolder(), 60000);
+        String url = server.url("q=android&order-by=newest&from-date=2020-04-21T09:00:00Z");
+
+        List<News> news = repository.loadNewer(url);
+        assertEquals(1, news.size());
+        assertEquals("Title", news.get(0).getTitle());
+        // Every refresh asks again, the list of a time is never served from a cache.
+        assertEquals(1, repository.loadNewer(url).size());
+        assertEquals(2, server.requestCount());
+        assertNull(server.requests().get(1).header("If-None-Match"));
+    }
+
+    @Test
+    public void loadNewer_returnsNullOnServerError() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.status(500);
+            }
+        });
+
+        assertNull(newRepository(folder.newFolder(), 60000).loadNewer(server.url("q=android")));
+    }
+
+    // A repository with its own caches. The memory cache is disabled when maxAgeMillis < 0.
+    private static NewsRepository newRepository(File directory, long maxAgeMillis) {
+        NewsMemoryCache memoryCache = new NewsMemoryCache(NewsMemoryCache.DEFAULT_MAX_ARTICLES,
+                Math.max(maxAgeMillis, 0));
+        NewsDiskCache diskCache = new NewsDiskCache(directory, 1024 * 1024, maxAgeMillis);
+        // A short backoff, and a circuit that opens after one failed load.
+        ResilientFetcher fetcher = new ResilientFetcher(
+                MultiTopicFetcher.newExecutor("test-attempt", 4), new CircuitBreaker(1, 60000),
+                3, 10, ResilientFetcher.DEFAULT_HEDGE_DELAY_MILLIS);
+        return new NewsRepository(memoryCache, diskCache, null, new NewsSearchIndex(), fetcher);
+    }
+
+    // Answers every request with the same list and an ETag, or 304 when the ETag matches.
+    private static FakeGuardianServer.Responder okResponder() {
+        return new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                if (ETAG.equals(request.header("If-None-Match"))) {
+                    return FakeGuardianServer.Response.status(304);
+                }
+                return FakeGuardianServer.Response.ok(RESPONSE).header("ETag", ETAG);
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of {@link NewsSearchIndex} as the corpus grows to tens of thousands of articles.
+ * Run it with {@code ./gradlew jmh}.
+ * <p>
+ * The articles are made up from the words of the real titles, sections and contributors of a
+ * recorded response, so the words are as common or as rare as in real results. The queries are
+ * what the user types: a common word, a rarer word, two words, and a word being typed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class NewsSearchIndexJmh {
+
+    @Param({"1000", "10000", "50000"})
+    public int corpusSize;
+
+    @Param({"technology", "google ", "apple iphone ", "tec"})
+    public String query;
+
+    private List<News> corpus;
+    private NewsSearchIndex index;
+    private NewsQuery page;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<News> real = QueryUtils.extractFeatureFromStream(
+                NewsStreamParserTest.openFixture("guardian_search_200.json"));
+        List<String> titleWords = new ArrayList<>();
+        for (News news : real) {
+            titleWords.addAll(NewsSearchIndex.tokenize(news.getTitle()));
+        }
+        corpus = makeCorpus(corpusSize, real, titleWords, new Random(corpusSize));
+        index = newIndex();
+        page = new NewsQuery(Collections.singletonList(query), NewsQuery.ORDER_RELEVANCE, 50, 1);
+        if (index.search(page).isEmpty()) {
+            throw new IllegalStateException("\"" + query + "\" finds no article");
+        }
+    }
+
+    // One page of results, as the loader asks for it.
+    @Benchmark
+    public List<News> search() {
+        return index.search(page);
+    }
+
+    // Indexing the whole corpus, as when the index is seeded from the store.
+    @Benchmark
+    public NewsSearchIndex index() {
+        return newIndex();
+    }
+
+    // The corpus is larger than what the store keeps, so nothing is removed.
+    private NewsSearchIndex newIndex() {
+        NewsSearchIndex newIndex = new NewsSearchIndex(Integer.MAX_VALUE);
+        newIndex.addAll(corpus);
+        return newIndex;
+    }
+
+    // Make up articles whose titles are random words of the real titles.
+    private static List<News> makeCorpus(int size, List<News> real, List<String> titleWords,
+                                         Random random) {
+        List<News> corpus = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            News model = real.get(random.nextInt(real.size()));
+            // Make sure every query finds something, in about one article out of a hundred.
+            StringBuilder title = new StringBuilder(i % 100 == 0 ? "Google Apple iPhone" : "");
+            int wordCount = 5 + random.nextInt(8);
+            for (int w = 0; w < wordCount; w++) {
+                title.append(title.length() == 0 ? "" : " ")
+                        .append(titleWords.get(random.nextInt(titleWords.size())));
+            }
+            corpus.add(new News(model.getSection(), title.toString(), model.getTime(),
+                    model.getAuthor(), "https://www.theguardian.com/article/" + i));
+        }
+        return corpus;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NewsSearchIndexTest {
+
+    private static final News PHONES = new News("Technology", "Android phones get faster",
+            "2020-04-21T10:00:00Z", "Alex Hern", "https://www.theguardian.com/phones");
+    private static final News SALES = new News("Business", "Phone sales drop",
+            "2020-04-20T10:00:00Z", "Kari Paul", "https://www.theguardian.com/sales");
+    private static final News ROBOTS = new News("Technology", "Robots at work",
+            "2020-04-19T10:00:00Z", "Android Jones", "https://www.theguardian.com/robots");
+
+    @Test
+    public void search_matchesEveryWordInAnyField() {
+        NewsSearchIndex index = newIndex();
+
+        assertEquals(urls(PHONES, ROBOTS), urls(index.search("android ", 10)));
+        assertEquals(urls(SALES), urls(index.search("business ", 10)));
+        assertEquals(urls(PHONES), urls(index.search("Android, faster!", 10)));
+        assertTrue(index.search("android business", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void search_ranksTitleMatchesBeforeContributorMatches() {
+        List<NewsSearchIndex.Hit> hits = newIndex().search("android ", 10);
+
+        assertEquals(PHONES.getUrl(), hits.get(0).getNews().getUrl());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    @Test
+    public void search_treatsLastWordAsPrefixWhileTyping() {
+        NewsSearchIndex index = newIndex();
+
+        assertEquals(urls(PHONES, SALES), urls(index.search("phone", 10)));
+        assertEquals(urls(SALES), urls(index.search("phone ", 10)));
+        assertEquals(urls(PHONES), urls(index.search("faster andr", 10)));
+    }
+
+    @Test
+    public void search_returnsAtMostLimitHits() {
+        assertEquals(urls(PHONES), urls(newIndex().search("android", 1)));
+    }
+
+    @Test
+    public void add_replacesArticleWithSameUrl() {
+        NewsSearchIndex index = newIndex();
+        index.add(new News("Technology", "Robots at rest", ROBOTS.getTime(), "Alex Hern",
+                ROBOTS.getUrl()));
+
+        assertEquals(3, index.size());
+        assertTrue(index.search("work ", 10).isEmpty());
+        assertEquals(urls(PHONES), urls(index.search("android ", 10)));
+        assertEquals("Robots at rest", index.search("rest", 10).get(0).getNews().getTitle());
+    }
+
+    @Test
+    public void add_keepsWorkingAfterManyReplacements() {
+        NewsSearchIndex index = new NewsSearchIndex();
+        for (int i = 0; i < 100; i++) {
+            index.add(new News("Technology", "Version " + i, PHONES.getTime(), "Alex Hern",
+                    PHONES.getUrl()));
+        }
+
+        assertEquals(1, index.size());
+        assertEquals("Version 99", index.search("version", 10).get(0).getNews().getTitle());
+        assertTrue(index.search("98 ", 10).isEmpty());
+    }
+
+    @Test
+    public void searchQuery_mergesTopicsAndSortsInTheQueryOrder() {
+        NewsSearchIndex index = newIndex();
+
+        NewsQuery oldest = new NewsQuery(Arrays.asList("android", "business"), "oldest", 10, 1);
+        assertEquals(Arrays.asList(ROBOTS, SALES, PHONES), index.search(oldest));
+
+        NewsQuery newest = new NewsQuery(Arrays.asList("android", "business"), "newest", 2, 1);
+        assertEquals(Arrays.asList(PHONES, SALES), index.search(newest));
+
+        // The second page comes with the first one, the caller skips the offset.
+        NewsQuery secondPage = new NewsQuery(Collections.singletonList("technology"), "newest",
+                1, 2);
+        assertEquals(Arrays.asList(PHONES, ROBOTS), index.search(secondPage));
+    }
+
+    @Test
+    public void seed_keepsNewerArticles() {
+        NewsSearchIndex index = new NewsSearchIndex();
+        index.add(PHONES);
+        index.seed(Arrays.asList(new News("Technology", "Old title", PHONES.getTime(),
+                "Alex Hern", PHONES.getUrl()), SALES));
+
+        assertTrue(index.isSeeded());
+        assertEquals(2, index.size());
+        assertTrue(index.search("old ", 10).isEmpty());
+    }
+
+    @Test
+    public void addAll_keepsOnlyTheNewestArticles() {
+        NewsSearchIndex index = new NewsSearchIndex(2);
+        index.addAll(Arrays.asList(PHONES, SALES, ROBOTS));
+
+        // Like the store, the oldest article is forgotten.
+        assertEquals(2, index.size());
+        assertTrue(index.search("robots ", 10).isEmpty());
+        assertEquals(urls(PHONES), urls(index.search("android ", 10)));
+
+        // An older article is forgotten as soon as it is added, a newer one takes a place.
+        index.add(new News("Technology", "Android history", "2020-04-01T10:00:00Z", "Alex Hern",
+                "https://www.theguardian.com/history"));
+        assertTrue(index.search("history ", 10).isEmpty());
+        for (int i = 0; i < 100; i++) {
+            index.add(new News("Technology", "Update " + i, "2020-04-22T10:00:00Z", "Alex Hern",
+                    "https://www.theguardian.com/update" + i));
+        }
+        assertEquals(2, index.size());
+        assertTrue(index.search("phones ", 10).isEmpty());
+        assertEquals(2, index.search("update", 10).size());
+    }
+
+    @Test
+    public void tokenize_splitsOnAnythingButLettersAndDigits() {
+        assertEquals(Arrays.asList("ça", "va", "4g", "o", "brien"),
+                NewsSearchIndex.tokenize("Ça va? 4G-O'Brien"));
+    }
+
+    private static NewsSearchIndex newIndex() {
+        NewsSearchIndex index = new NewsSearchIndex();
+        index.addAll(Arrays.asList(PHONES, SALES, ROBOTS));
+        return index;
+    }
+
+    private static List<String> urls(News... news) {
+        List<String> urls = new ArrayList<>();
+        for (News item : news) {
+            urls.add(item.getUrl());
+        }
+        return urls;
+    }
+
+    private static List<String> urls(List<NewsSearchIndex.Hit> hits) {
+        List<String> urls = new ArrayList<>();
+        for (NewsSearchIndex.Hit hit : hits) {
+            urls.add(hit.getNews().getUrl());
+        }
+        return urls;
+    }
+}
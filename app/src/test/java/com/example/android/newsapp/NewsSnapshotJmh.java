@@ -0,0 +1,75 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of restoring a list of {@link News} from a {@link NewsSnapshot} file, compared
+ * with decoding the same list from the JSON responses it came from. Run it with
+ * {@code ./gradlew jmh}.
+ * <p>
+ * The list is three copies of a recorded response of 200 articles, like a long scrolled list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class NewsSnapshotJmh {
+
+    private static final int COPIES = 3;
+
+    private byte[] json;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = QueryUtils.readFromStream(
+                NewsStreamParserTest.openFixture("guardian_search_200.json"))
+                .getBytes(Charset.forName("UTF-8"));
+        List<News> list = new ArrayList<>();
+        for (int copy = 0; copy < COPIES; copy++) {
+            list.addAll(QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(json)));
+        }
+        file = File.createTempFile("snapshot", ".bin");
+        new NewsSnapshot("key", 1, list).write(file);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    // What the app did before the snapshot: decode the responses again.
+    @Benchmark
+    public List<News> decodeJson() throws IOException {
+        List<News> list = new ArrayList<>();
+        for (int copy = 0; copy < COPIES; copy++) {
+            list.addAll(QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(json)));
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<News> readSnapshot() throws IOException {
+        return NewsSnapshot.read(file).getNews();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NewsSnapshotTest {
+
+    private static final List<News> NEWS = Arrays.asList(
+            new News("Technology", "Café \"review\" / 5★", "2020-04-21T10:00:00Z", "Alex Hern",
+                    "https://www.theguardian.com/a", "https://media.guim.co.uk/a/500.jpg"),
+            new News("Technology", "Second", "2020-04-20T10:00:00Z", "Alex Hern",
+                    "https://www.theguardian.com/b"),
+            new News("Business", "Third", "2020-04-19T10:00:00Z", "",
+                    "https://www.theguardian.com/c"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void encodeThenDecode_returnsSameSnapshot() throws IOException {
+        NewsSnapshot snapshot = NewsSnapshot.decode(ByteBuffer.wrap(
+                new NewsSnapshot("android|newest|10", 1234567890123L, NEWS).encode()));
+
+        assertEquals("android|newest|10", snapshot.getKey());
+        assertEquals(1234567890123L, snapshot.getSavedAt());
+        assertSameNews(NEWS, snapshot.getNews());
+    }
+
+    @Test
+    public void writeThenRead_goesThroughTheMappedFile() throws IOException {
+        File file = new File(folder.getRoot(), "snapshot");
+        new NewsSnapshot("key", 1, NEWS).write(file);
+
+        NewsSnapshot snapshot = NewsSnapshot.read(file);
+        assertSameNews(NEWS, snapshot.getNews());
+        // Written once, shared by every article that has them.
+        assertSame(snapshot.getNews().get(0).getAuthor(), snapshot.getNews().get(1).getAuthor());
+        assertSame(snapshot.getNews().get(0).getSection(),
+                snapshot.getNews().get(1).getSection());
+    }
+
+    @Test
+    public void write_fromSeveralThreadsAtOnce_leavesOneWholeSnapshot() throws Exception {
+        final File file = new File(folder.getRoot(), "snapshot");
+        final List<News> longer = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            longer.addAll(NEWS);
+        }
+        Thread[] writers = new Thread[8];
+        final IOException[] failure = new IOException[1];
+        for (int t = 0; t < writers.length; t++) {
+            final List<News> news = t % 2 == 0 ? NEWS : longer;
+            writers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20; i++) {
+                            new NewsSnapshot("key", i, news).write(file);
+                        }
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertNull(failure[0]);
+        // Whichever write was renamed last, the file is whole, and no temporary file is left.
+        int size = NewsSnapshot.read(file).getNews().size();
+        assertTrue(size == NEWS.size() || size == longer.size());
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void realResponse_roundTripsAndIsSmallerThanTheJson() throws IOException {
+        String json = QueryUtils.readFromStream(
+                NewsStreamParserTest.openFixture("guardian_search_200.json"));
+        List<News> news = QueryUtils.extractFeatureFromJson(json);
+
+        byte[] bytes = new NewsSnapshot("key", 1, news).encode();
+        assertSameNews(news, NewsSnapshot.decode(ByteBuffer.wrap(bytes)).getNews());
+        assertTrue(bytes.length < json.length() / 2);
+    }
+
+    @Test
+    public void emptyList_roundTrips() throws IOException {
+        NewsSnapshot snapshot = NewsSnapshot.decode(ByteBuffer.wrap(
+                new NewsSnapshot(null, 0, Collections.<News>emptyList()).encode()));
+
+        assertNull(snapshot.getKey());
+        assertTrue(snapshot.getNews().isEmpty());
+    }
+
+    @Test
+    public void truncatedOrDamagedSnapshot_isRejected() throws IOException {
+        byte[] bytes = new NewsSnapshot("key", 1, NEWS).encode();
+
+        for (int length = 0; length < bytes.length; length++) {
+            assertRejected(Arrays.copyOf(bytes, length));
+        }
+        byte[] longer = Arrays.copyOf(bytes, bytes.length + 1);
+        assertRejected(longer);
+        byte[] otherVersion = bytes.clone();
+        otherVersion[7]++;
+        assertRejected(otherVersion);
+        byte[] notASnapshot = bytes.clone();
+        notASnapshot[0] = '{';
+        assertRejected(notASnapshot);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFile_isRejected() throws IOException {
+        byte[] bytes = new NewsSnapshot("key", 1, NEWS).encode();
+        File file = new File(folder.getRoot(), "snapshot");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(bytes, 0, bytes.length / 2);
+        out.close();
+
+        NewsSnapshot.read(file);
+    }
+
+    private static void assertRejected(byte[] bytes) {
+        try {
+            NewsSnapshot.decode(ByteBuffer.wrap(bytes));
+            fail("Read a damaged snapshot of " + bytes.length + " bytes");
+        } catch (IOException expected) {
+            // The caller loads the list again.
+        }
+    }
+
+    private static void assertSameNews(List<News> expected, List<News> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            NewsStreamParserTest.assertSameNews(expected.get(i), actual.get(i));
+        }
+    }
+}
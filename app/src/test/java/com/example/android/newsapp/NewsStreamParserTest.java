@@ -0,0 +1,188 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the streaming decoder gives the same {@link News} list as the JSON tree parser on
+ * recorded guardian open platform responses.
+ */
+public class NewsStreamParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void streamMatchesTreeParser_pageSize10() throws IOException {
+        assertSameAsTreeParser("guardian_search_10.json", 10);
+    }
+
+    @Test
+    public void streamMatchesTreeParser_pageSize50() throws IOException {
+        assertSameAsTreeParser("guardian_search_50.json", 50);
+    }
+
+    @Test
+    public void streamMatchesTreeParser_pageSize200() throws IOException {
+        assertSameAsTreeParser("guardian_search_200.json", 200);
+    }
+
+    @Test
+    public void streamMatchesTreeParser_missingTagKeepsEarlierArticles() throws IOException {
+        assertSameAsTreeParser("guardian_search_missing_tag.json", 3);
+    }
+
+    @Test
+    public void emptyResponse_returnsNull() throws IOException {
+        assertNull(QueryUtils.extractFeatureFromStream(stream("")));
+    }
+
+    @Test
+    public void malformedJson_keepsEarlierArticles() throws IOException {
+        String json = "{\"response\":{\"results\":[{"
+                + "\"sectionName\":\"Tech\",\"webTitle\":\"Complete\","
+                + "\"webPublicationDate\":\"2020-04-21T10:00:00Z\","
+                + "\"tags\":[{\"webTitle\":\"Jane Doe\"}],\"webUrl\":\"https://example.com/a\""
+                + "},{\"sectionName\" \"Tech\"}]}}";
+        List<News> news = QueryUtils.extractFeatureFromStream(stream(json));
+        assertEquals(1, news.size());
+        assertEquals("Complete", news.get(0).getTitle());
+    }
+
+    @Test(expected = IOException.class)
+    public void streamFailingMidResponse_throws() throws IOException {
+        byte[] json = ("{\"response\":{\"results\":[{"
+                + "\"sectionName\":\"Tech\",\"webTitle\":\"Complete\","
+                + "\"webPublicationDate\":\"2020-04-21T10:00:00Z\","
+                + "\"tags\":[{\"webTitle\":\"Jane Doe\"}],\"webUrl\":\"https://example.com/a\""
+                + "},{\"sectionName\":").getBytes(UTF_8);
+        // The connection is reset after the first article, it isn't saved as the whole list.
+        final InputStream start = new ByteArrayInputStream(json);
+        QueryUtils.extractFeatureFromStream(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                int b = start.read();
+                if (b == -1) {
+                    throw new IOException("Connection reset");
+                }
+                return b;
+            }
+        });
+    }
+
+    @Test
+    public void responseWithoutResults_returnsEmptyList() throws IOException {
+        List<News> news = QueryUtils.extractFeatureFromStream(
+                stream("{\"response\":{\"status\":\"error\",\"message\":\"bad key\"}}"));
+        assertNotNull(news);
+        assertTrue(news.isEmpty());
+    }
+
+    @Test
+    public void skipsUnusedNestedValuesAndDecodesEscapes() throws IOException {
+        String json = "{\"response\":{\"total\":1,\"results\":[{"
+                + "\"fields\":{\"a\":[1,2,{\"b\":null}],\"c\":true},"
+                + "\"sectionName\":\"Tech\","
+                + "\"webTitle\":\"Caf\\u00e9 \\\"review\\\" \\/ 5\\u2605\","
+                + "\"webPublicationDate\":\"2020-04-21T10:00:00Z\","
+                + "\"tags\":[{\"webTitle\":\"Jane Doe\",\"references\":[]},{\"webTitle\":\"X\"}],"
+                + "\"webUrl\":\"https://example.com/a\","
+                + "\"score\":-1.5e3}]}}";
+        List<News> news = QueryUtils.extractFeatureFromStream(stream(json));
+        assertEquals(1, news.size());
+        assertEquals("Tech", news.get(0).getSection());
+        assertEquals("Café \"review\" / 5★", news.get(0).getTitle());
+        assertEquals("Jane Doe", news.get(0).getAuthor());
+        assertEquals("https://example.com/a", news.get(0).getUrl());
+    }
+
+    @Test
+    public void readsThumbnailField() throws IOException {
+        String json = "{\"response\":{\"results\":[{"
+                + "\"sectionName\":\"Tech\",\"webTitle\":\"With\","
+                + "\"webPublicationDate\":\"2020-04-21T10:00:00Z\","
+                + "\"tags\":[{\"webTitle\":\"Jane Doe\"}],\"webUrl\":\"https://example.com/a\","
+                + "\"fields\":{\"headline\":\"x\","
+                + "\"thumbnail\":\"https://media.example.com/1.jpg\"}"
+                + "},{"
+                + "\"sectionName\":\"Tech\",\"webTitle\":\"Without\","
+                + "\"webPublicationDate\":\"2020-04-21T10:00:00Z\","
+                + "\"tags\":[{\"webTitle\":\"Jane Doe\"}],\"webUrl\":\"https://example.com/b\""
+                + "}]}}";
+        List<News> news = QueryUtils.extractFeatureFromStream(stream(json));
+        assertEquals(2, news.size());
+        assertEquals("https://media.example.com/1.jpg", news.get(0).getThumbnail());
+        assertNull(news.get(1).getThumbnail());
+
+        List<News> expected = QueryUtils.extractFeatureFromJson(json);
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameNews(expected.get(i), news.get(i));
+        }
+    }
+
+    @Test
+    public void readsTheAuthorFromTheBylineWithoutTags() throws IOException {
+        String json = "{\"response\":{\"results\":[{"
+                + "\"sectionName\":\"Tech\",\"webTitle\":\"Byline\","
+                + "\"webPublicationDate\":\"2020-04-21T10:00:00Z\","
+                + "\"webUrl\":\"https://example.com/a\","
+                + "\"fields\":{\"byline\":\"Jane Doe and John Roe\","
+                + "\"thumbnail\":\"https://media.example.com/1.jpg\"}"
+                + "},{"
+                // The contributor tag wins over the byline when both were asked for.
+                + "\"sectionName\":\"Tech\",\"webTitle\":\"Both\","
+                + "\"webPublicationDate\":\"2020-04-21T10:00:00Z\","
+                + "\"fields\":{\"byline\":\"Jane Doe and John Roe\"},"
+                + "\"tags\":[{\"webTitle\":\"Jane Doe\"}],\"webUrl\":\"https://example.com/b\""
+                + "}]}}";
+        List<News> news = QueryUtils.extractFeatureFromStream(stream(json));
+        assertEquals(2, news.size());
+        assertEquals("Jane Doe and John Roe", news.get(0).getAuthor());
+        assertEquals("https://media.example.com/1.jpg", news.get(0).getThumbnail());
+        assertEquals("Jane Doe", news.get(1).getAuthor());
+
+        List<News> expected = QueryUtils.extractFeatureFromJson(json);
+        assertEquals(2, expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameNews(expected.get(i), news.get(i));
+        }
+    }
+
+    private void assertSameAsTreeParser(String fixture, int expectedSize) throws IOException {
+        List<News> expected = QueryUtils.extractFeatureFromJson(
+                QueryUtils.readFromStream(openFixture(fixture)));
+        List<News> actual = QueryUtils.extractFeatureFromStream(openFixture(fixture));
+
+        assertEquals(expectedSize, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameNews(expected.get(i), actual.get(i));
+        }
+    }
+
+    static void assertSameNews(News expected, News actual) {
+        assertEquals(expected.getSection(), actual.getSection());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getTime(), actual.getTime());
+        assertEquals(expected.getAuthor(), actual.getAuthor());
+        assertEquals(expected.getUrl(), actual.getUrl());
+        assertEquals(expected.getThumbnail(), actual.getThumbnail());
+    }
+
+    static InputStream openFixture(String name) {
+        InputStream inputStream = NewsStreamParserTest.class.getClassLoader()
+                .getResourceAsStream(name);
+        assertNotNull("Missing test fixture " + name, inputStream);
+        return inputStream;
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(UTF_8));
+    }
+}
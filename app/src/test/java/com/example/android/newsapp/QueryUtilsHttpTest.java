@@ -0,0 +1,212 @@
+package com.example.android.newsapp;
+
+import androidx.core.os.CancellationSignal;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the HTTP behavior of {@link QueryUtils} against a local server: compression,
+ * conditional requests, connection reuse, cancellation and the metrics of a request.
+ */
+public class QueryUtilsHttpTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Tue, 21 Apr 2020 10:00:00 GMT";
+
+    private static final String RESPONSE = FakeGuardianServer.searchResponse(
+            new News("Technology", "Title", "2020-04-21T10:00:00Z", "Author",
+                    "https://www.theguardian.com/a"));
+
+    private FakeGuardianServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void asksForGzipAndDecodesIt() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request)
+                    throws Exception {
+                if ("gzip".equals(request.header("Accept-Encoding"))) {
+                    return FakeGuardianServer.Response.gzip(RESPONSE);
+                }
+                return FakeGuardianServer.Response.ok(RESPONSE);
+            }
+        });
+
+        List<News> news = QueryUtils.fetchNewsData(server.url("q=android"));
+
+        assertEquals("gzip", server.requests().get(0).header("Accept-Encoding"));
+        assertEquals(1, news.size());
+        assertEquals("Title", news.get(0).getTitle());
+    }
+
+    @Test
+    public void sendsValidatorsAndHandlesNotModified() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                if (ETAG.equals(request.header("If-None-Match"))) {
+                    return FakeGuardianServer.Response.status(304);
+                }
+                return FakeGuardianServer.Response.ok(RESPONSE).header("ETag", ETAG)
+                        .header("Last-Modified", LAST_MODIFIED);
+            }
+        });
+
+        QueryUtils.NewsResponse first = QueryUtils.fetchNewsData(server.url("q=android"),
+                null, null);
+        assertFalse(first.isNotModified());
+        assertEquals(1, first.getNews().size());
+        assertEquals(ETAG, first.getETag());
+        assertEquals(LAST_MODIFIED, first.getLastModified());
+
+        QueryUtils.NewsResponse second = QueryUtils.fetchNewsData(server.url("q=android"),
+                first.getETag(), first.getLastModified());
+        assertTrue(second.isNotModified());
+        assertNull(second.getNews());
+
+        FakeGuardianServer.Request conditional = server.requests().get(1);
+        assertEquals(ETAG, conditional.header("If-None-Match"));
+        assertEquals(LAST_MODIFIED, conditional.header("If-Modified-Since"));
+    }
+
+    @Test
+    public void recordsEveryPhaseOfTheRequest() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request)
+                    throws Exception {
+                return FakeGuardianServer.Response.gzip(RESPONSE);
+            }
+        });
+        Metrics.reset();
+
+        QueryUtils.fetchNewsData(server.url("q=android"));
+
+        for (String timer : new String[]{"http.request", "http.connect", "http.ttfb",
+                "http.download", "json.parse"}) {
+            assertEquals(timer, 1, Metrics.histogram(timer).getCount());
+        }
+        assertEquals(1, Metrics.histogram("json.items").getMax());
+        // The compressed size, not the size of the JSON.
+        long bytes = Metrics.histogram("http.bytes").getMax();
+        assertEquals(FakeGuardianServer.Response.gzip(RESPONSE).body.length, bytes);
+        assertEquals(1, Metrics.counter("http.status.200"));
+    }
+
+    @Test
+    public void measuresTheConnectionForTheFetchPolicy() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.ok(RESPONSE, 100);
+            }
+        });
+        // Another network, so the measures of the other tests are forgotten.
+        FetchPolicy policy = FetchPolicy.getInstance();
+        policy.setNetworkProfile(new NetworkProfile(NetworkProfile.TYPE_NONE, false, false));
+        policy.setNetworkProfile(new NetworkProfile(NetworkProfile.TYPE_WIFI, false, false));
+
+        QueryUtils.fetchNewsData(server.url("q=android"));
+
+        assertTrue(policy.getLatencyMillis() >= 100);
+        // The response is too small to measure the bandwidth.
+        assertEquals(-1, policy.getBandwidthKbps(), 0);
+    }
+
+    @Test
+    public void reusesTheConnection() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.ok(RESPONSE);
+            }
+        });
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(1, QueryUtils.fetchNewsData(server.url("q=android&page=" + i)).size());
+        }
+
+        assertEquals(5, server.requestCount());
+        assertEquals(1, server.connectionCount());
+    }
+
+    @Test
+    public void errorResponse_returnsNullAndKeepsTheConnection() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                if (request.parameter("q").equals("broken")) {
+                    // With an error body, which must be read for the connection to be reused.
+                    return new FakeGuardianServer.Response(500,
+                            "{\"response\":{\"status\":\"error\"}}".getBytes(), 0);
+                }
+                return FakeGuardianServer.Response.ok(RESPONSE);
+            }
+        });
+
+        assertNull(QueryUtils.fetchNewsData(server.url("q=broken")));
+        assertEquals(1, QueryUtils.fetchNewsData(server.url("q=android")).size());
+
+        assertEquals(2, server.requestCount());
+        assertEquals(1, server.connectionCount());
+    }
+
+    @Test
+    public void cancel_abortsTheBlockedRead() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.ok(RESPONSE, 5000);
+            }
+        });
+        final CancellationSignal signal = new CancellationSignal();
+        final AtomicReference<QueryUtils.NewsResponse> response = new AtomicReference<>();
+        Thread request = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                response.set(QueryUtils.fetchNewsData(server.url("q=android"), null, null,
+                        signal));
+            }
+        });
+        request.start();
+        while (server.requestCount() == 0) {
+            Thread.sleep(5);
+        }
+
+        // The server answers in 5 seconds, the cancelled request must not wait for it.
+        long start = System.currentTimeMillis();
+        signal.cancel();
+        request.join(2000);
+        assertFalse(request.isAlive());
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertNull(response.get());
+    }
+
+    @Test
+    public void cancelledSignal_sendsNoRequest() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.ok(RESPONSE);
+            }
+        });
+        CancellationSignal signal = new CancellationSignal();
+        signal.cancel();
+
+        assertNull(QueryUtils.fetchNewsData(server.url("q=android"), null, null, signal));
+        assertEquals(0, server.requestCount());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the decoding of one page of search results, at three page sizes, from the
+ * recorded responses of the unit tests. Run it with {@code ./gradlew jmh}.
+ * <p>
+ * {@link QueryUtils#readFromStream} and {@link QueryUtils#extractFeatureFromJson} are the old
+ * way, reading the whole response into a String then into a JSON tree.
+ * {@link QueryUtils#extractFeatureFromStream} is what the app does now.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class QueryUtilsJmh {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"10", "50", "200"})
+    public int pageSize;
+
+    private byte[] response;
+    private String json;
+
+    @Setup
+    public void setUp() throws IOException {
+        InputStream in = NewsStreamParserTest.openFixture(
+                "guardian_search_" + pageSize + ".json");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, count);
+        }
+        in.close();
+        response = bytes.toByteArray();
+        json = new String(response, UTF_8);
+    }
+
+    @Benchmark
+    public String readFromStream() throws IOException {
+        return QueryUtils.readFromStream(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public List<News> extractFeatureFromJson() {
+        return QueryUtils.extractFeatureFromJson(json);
+    }
+
+    // Both steps of the old way together, from the bytes to the list.
+    @Benchmark
+    public List<News> readAndExtractFromJson() throws IOException {
+        return QueryUtils.extractFeatureFromJson(
+                QueryUtils.readFromStream(new ByteArrayInputStream(response)));
+    }
+
+    @Benchmark
+    public List<News> extractFeatureFromStream() throws IOException {
+        return QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(response));
+    }
+}
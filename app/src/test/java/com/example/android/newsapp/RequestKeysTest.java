@@ -0,0 +1,41 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RequestKeysTest {
+
+    @Test
+    public void normalize_removesApiKey() {
+        assertEquals("https://content.guardianapis.com/search?page-size=10&q=Android",
+                RequestKeys.normalize("https://content.guardianapis.com/search?q=Android"
+                        + "&api-key=secret&page-size=10"));
+    }
+
+    @Test
+    public void normalize_ignoresParameterOrder() {
+        String base = "https://content.guardianapis.com/search";
+        assertEquals(RequestKeys.normalize(base + "?q=a&order-by=newest"),
+                RequestKeys.normalize(base + "?order-by=newest&q=a"));
+    }
+
+    @Test
+    public void normalize_keepsUrlWithoutQuery() {
+        assertEquals("https://content.guardianapis.com/search",
+                RequestKeys.normalize("https://content.guardianapis.com/search"));
+        assertEquals("https://content.guardianapis.com/search",
+                RequestKeys.normalize("https://content.guardianapis.com/search?api-key=x"));
+    }
+
+    @Test
+    public void parameter_returnsDecodedValue() {
+        String url = "https://content.guardianapis.com/search?q=android%20apps&page=2"
+                + "&order-by=relevance#top";
+        assertEquals("android apps", RequestKeys.parameter(url, "q"));
+        assertEquals("2", RequestKeys.parameter(url, "page"));
+        assertEquals("relevance", RequestKeys.parameter(url, "order-by"));
+        assertNull(RequestKeys.parameter(url, "page-size"));
+        assertNull(RequestKeys.parameter("https://content.guardianapis.com/search", "q"));
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.android.newsapp;
+
+import androidx.core.os.CancellationSignal;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the retries, the hedging and the circuit breaker of {@link ResilientFetcher} against a
+ * local server that injects faults: error statuses, dropped connections and slow responses.
+ */
+public class ResilientFetcherTest {
+
+    private static final String RESPONSE = FakeGuardianServer.searchResponse(
+            new News("Technology", "Title", "2020-04-21T10:00:00Z", "Author",
+                    "https://www.theguardian.com/a"));
+
+    private FakeGuardianServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void retriesServerErrorsUntilTheServerAnswers() throws Exception {
+        server = new FakeGuardianServer(failFirst(2, FakeGuardianServer.Response.status(503)));
+        Metrics.reset();
+
+        QueryUtils.NewsResponse response = fetch(newFetcher(3, 60000), server.url("q=android"));
+
+        assertEquals(1, response.getNews().size());
+        assertEquals(3, server.requestCount());
+        assertEquals(2, Metrics.counter("fetch.retry"));
+    }
+
+    @Test
+    public void retriesDroppedConnections() throws Exception {
+        server = new FakeGuardianServer(failFirst(1, FakeGuardianServer.Response.drop(0)));
+
+        QueryUtils.NewsResponse response = fetch(newFetcher(3, 60000), server.url("q=android"));
+
+        assertEquals(1, response.getNews().size());
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() throws Exception {
+        server = new FakeGuardianServer(failFirst(1, FakeGuardianServer.Response.status(403)));
+
+        try {
+            fetch(newFetcher(3, 60000), server.url("q=android"));
+            fail("The 403 response should have been reported");
+        } catch (QueryUtils.HttpStatusException e) {
+            assertEquals(403, e.getStatusCode());
+        }
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    public void givesUpAfterTheLastAttempt() throws Exception {
+        server = new FakeGuardianServer(failFirst(100, FakeGuardianServer.Response.status(500)));
+
+        try {
+            fetch(newFetcher(3, 60000), server.url("q=android"));
+            fail("The 500 response should have been reported");
+        } catch (QueryUtils.HttpStatusException e) {
+            assertEquals(500, e.getStatusCode());
+        }
+        assertEquals(3, server.requestCount());
+    }
+
+    @Test
+    public void backoff_growsExponentiallyWithJitter() {
+        Random random = new Random(42);
+        Set<Long> delays = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            long first = ResilientFetcher.backoffMillis(1, 250, random);
+            long second = ResilientFetcher.backoffMillis(2, 250, random);
+            long tenth = ResilientFetcher.backoffMillis(10, 250, random);
+            assertTrue(first >= 125 && first <= 250);
+            assertTrue(second >= 250 && second <= 500);
+            // Capped, however many retries came before.
+            assertTrue(tenth >= 2000 && tenth <= 4000);
+            delays.add(second);
+        }
+        // The jitter spreads the retries of different phones.
+        assertTrue(delays.size() > 50);
+    }
+
+    @Test
+    public void hedging_cutsTheTailLatency() throws Exception {
+        // The first copy of every fifth request is stuck, its hedge is answered right away.
+        final AtomicInteger count = new AtomicInteger();
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return count.incrementAndGet() % 5 == 0
+                        ? FakeGuardianServer.Response.ok(RESPONSE, 5000)
+                        : FakeGuardianServer.Response.ok(RESPONSE);
+            }
+        });
+        Metrics.reset();
+        ResilientFetcher fetcher = newFetcher(1, 300);
+
+        long slowest = 0;
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            assertEquals(1, fetch(fetcher, server.url("q=android")).getNews().size());
+            slowest = Math.max(slowest, (System.nanoTime() - start) / 1000000L);
+        }
+
+        // Without the hedges, four of the requests would have taken 5 seconds.
+        assertTrue("The slowest request took " + slowest + " ms", slowest < 2500);
+        assertTrue(Metrics.counter("fetch.hedge.won") >= 1);
+        assertEquals(Metrics.counter("fetch.hedge") + 20, server.requestCount());
+    }
+
+    @Test
+    public void hedgeDelay_isThe95thPercentileOfTheRecentRequests() throws Exception {
+        ResilientFetcher fetcher = newFetcher(1, 1234);
+        assertEquals(1234, fetcher.hedgeDelayMillis());
+
+        for (int i = 0; i < 20; i++) {
+            // 19 quick requests and a slow one, which is above the 95th percentile.
+            fetcher.fetch(sleeping(i == 0 ? 500 : 110), null);
+        }
+
+        long delay = fetcher.hedgeDelayMillis();
+        assertTrue("The hedge delay is " + delay + " ms", delay >= 110 && delay < 500);
+    }
+
+    @Test
+    public void openCircuit_refusesRequestsWithoutSendingThem() throws Exception {
+        server = new FakeGuardianServer(failFirst(100, FakeGuardianServer.Response.status(503)));
+        ResilientFetcher fetcher = new ResilientFetcher(
+                MultiTopicFetcher.newExecutor("test-attempt", 4), new CircuitBreaker(2, 60000),
+                2, 10, 60000);
+        String url = server.url("q=android");
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                fetch(fetcher, url);
+                fail("The 503 response should have been reported");
+            } catch (QueryUtils.HttpStatusException expected) {
+            }
+        }
+        assertEquals(CircuitBreaker.State.OPEN, fetcher.getCircuitState());
+        assertEquals(4, server.requestCount());
+
+        long start = System.nanoTime();
+        try {
+            fetch(fetcher, url);
+            fail("The open circuit should have refused the request");
+        } catch (CircuitBreaker.OpenException expected) {
+        }
+        assertTrue(System.nanoTime() - start < 100 * 1000000L);
+        assertEquals(4, server.requestCount());
+    }
+
+    @Test
+    public void cancel_stopsTheRequestAndItsRetries() throws Exception {
+        server = new FakeGuardianServer(new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return FakeGuardianServer.Response.ok(RESPONSE, 5000);
+            }
+        });
+        final ResilientFetcher fetcher = newFetcher(3, 60000);
+        final CancellationSignal signal = new CancellationSignal();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ignored) {
+                }
+                signal.cancel();
+            }
+        }).start();
+
+        long start = System.nanoTime();
+        try {
+            fetch(fetcher, server.url("q=android"), signal);
+            fail("The cancelled request should have been reported");
+        } catch (InterruptedIOException expected) {
+        }
+
+        assertTrue(System.nanoTime() - start < 2000 * 1000000L);
+        assertEquals(1, server.requestCount());
+        // A cancelled request says nothing about the server.
+        assertEquals(CircuitBreaker.State.CLOSED, fetcher.getCircuitState());
+    }
+
+    // A fetcher that never opens its circuit, with a short backoff.
+    private static ResilientFetcher newFetcher(int maxAttempts, long hedgeDelayMillis) {
+        return new ResilientFetcher(MultiTopicFetcher.newExecutor("test-attempt", 4),
+                new CircuitBreaker(1000, 60000), maxAttempts, 10, hedgeDelayMillis);
+    }
+
+    private static QueryUtils.NewsResponse fetch(ResilientFetcher fetcher, String url)
+            throws IOException {
+        return fetch(fetcher, url, null);
+    }
+
+    private static QueryUtils.NewsResponse fetch(ResilientFetcher fetcher, final String url,
+                                                 CancellationSignal signal) throws IOException {
+        return fetcher.fetch(new ResilientFetcher.Call<QueryUtils.NewsResponse>() {
+            @Override
+            public QueryUtils.NewsResponse call(CancellationSignal attemptSignal)
+                    throws IOException {
+                return QueryUtils.requestNewsData(url, null, null, attemptSignal);
+            }
+        }, signal);
+    }
+
+    // Answers the first requests with the given fault, then with the list.
+    private static FakeGuardianServer.Responder failFirst(final int failures,
+                                                         final FakeGuardianServer.Response fault) {
+        final AtomicInteger count = new AtomicInteger();
+        return new FakeGuardianServer.Responder() {
+            @Override
+            public FakeGuardianServer.Response respond(FakeGuardianServer.Request request) {
+                return count.incrementAndGet() <= failures
+                        ? fault : FakeGuardianServer.Response.ok(RESPONSE);
+            }
+        };
+    }
+
+    // A request that takes the given time.
+    private static ResilientFetcher.Call<String> sleeping(final long millis) {
+        return new ResilientFetcher.Call<String>() {
+            @Override
+            public String call(CancellationSignal signal) throws IOException {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return "done";
+            }
+        };
+    }
+}
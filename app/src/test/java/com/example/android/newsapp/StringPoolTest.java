@@ -0,0 +1,80 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class StringPoolTest {
+
+    @Test
+    public void intern_returnsTheFirstInstanceOfEqualStrings() {
+        StringPool pool = new StringPool(10);
+        String first = new String("Technology");
+        String second = new String("Technology");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertNull(pool.intern(null));
+        assertEquals(1, pool.hitCount());
+        assertEquals(1, pool.missCount());
+        assertEquals(0.5, pool.hitRate(), 0);
+    }
+
+    @Test
+    public void fullPool_keepsSharingItsStringsAndPoolsNoMore() {
+        StringPool pool = new StringPool(2);
+        String a = new String("a");
+        String b = new String("b");
+        String c = new String("c");
+        pool.intern(a);
+        pool.intern(b);
+
+        assertSame(c, pool.intern(c));
+        assertEquals(2, pool.size());
+        // The strings pooled before are still the ones handed out.
+        assertSame(a, pool.intern(new String("a")));
+        assertSame(b, pool.intern(new String("b")));
+        // The one that didn't fit isn't pooled.
+        String otherC = new String("c");
+        assertSame(otherC, pool.intern(otherC));
+        assertEquals(2, pool.hitCount());
+    }
+
+    @Test
+    public void unusedStrings_canBeCollected() throws InterruptedException {
+        StringPool pool = new StringPool(10);
+        pool.intern(new String("Only used here"));
+
+        for (int attempt = 0; attempt < 50 && pool.size() > 0; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void parsedArticles_shareSectionsAndContributors() throws Exception {
+        List<News> news = QueryUtils.extractFeatureFromStream(
+                NewsStreamParserTest.openFixture("guardian_search_200.json"));
+
+        // As many instances as distinct values: equal values are the same instance.
+        Set<String> sections = new HashSet<>();
+        IdentityHashMap<String, Boolean> sectionInstances = new IdentityHashMap<>();
+        Set<String> authors = new HashSet<>();
+        IdentityHashMap<String, Boolean> authorInstances = new IdentityHashMap<>();
+        for (News item : news) {
+            sections.add(item.getSection());
+            sectionInstances.put(item.getSection(), true);
+            authors.add(item.getAuthor());
+            authorInstances.put(item.getAuthor(), true);
+        }
+        assertEquals(sections.size(), sectionInstances.size());
+        assertEquals(authors.size(), authorInstances.size());
+        assertTrue(sections.size() < news.size());
+    }
+}
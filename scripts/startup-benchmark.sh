@@ -0,0 +1,55 @@
+#!/bin/sh
+# Measures the cold start of the app on the connected device or emulator.
+#
+# The app is stopped before every launch, so each run starts a new process. For every run it
+# prints the time to initial display (the first frame, "TotalTime" of am start) and the time to
+# full display (the first list on screen, when MainActivity calls reportFullyDrawn()), then the
+# median of both. Install the benchmark or release build first for meaningful numbers.
+#
+# Usage: scripts/startup-benchmark.sh [runs]
+
+PACKAGE=com.example.android.newsapp
+RUNS=${1:-10}
+
+# "+1s234ms" or "+812ms" to milliseconds.
+to_millis() {
+    echo "$1" | sed -e 's/^+//' -e 's/ms$//' | awk -F's' '{ if (NF == 2) print $1 * 1000 + $2; else print $1 }'
+}
+
+median() {
+    sort -n | awk '{ values[NR] = $1 } END { if (NR == 0) print "-"; else print values[int((NR + 1) / 2)] }'
+}
+
+initial_file=$(mktemp)
+full_file=$(mktemp)
+trap 'rm -f "$initial_file" "$full_file"' EXIT
+
+run=1
+while [ "$run" -le "$RUNS" ]; do
+    adb shell am force-stop "$PACKAGE"
+    sleep 1
+    adb logcat -c
+    initial=$(adb shell am start -W -a android.intent.action.MAIN \
+            -c android.intent.category.LAUNCHER -p "$PACKAGE" \
+            | tr -d '\r' | sed -n 's/^TotalTime: //p')
+
+    # The full display is logged once the list is on screen, which may take a little longer.
+    full=""
+    tries=0
+    while [ -z "$full" ] && [ "$tries" -lt 20 ]; do
+        sleep 0.5
+        full=$(adb logcat -d | tr -d '\r' | grep "Fully drawn $PACKAGE" \
+                | sed -n 's/.*: \(+[0-9sm]*\).*/\1/p' | head -n 1)
+        tries=$((tries + 1))
+    done
+    if [ -n "$full" ]; then
+        full=$(to_millis "$full")
+        echo "$full" >> "$full_file"
+    fi
+    echo "$initial" >> "$initial_file"
+    echo "run $run: initial display ${initial} ms, full display ${full:--} ms"
+    run=$((run + 1))
+done
+
+echo "median: initial display $(median < "$initial_file") ms," \
+        "full display $(median < "$full_file") ms"